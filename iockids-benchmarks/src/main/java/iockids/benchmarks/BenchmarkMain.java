@@ -0,0 +1,36 @@
+package iockids.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * benchmarks.jar的入口，接受JMH的所有命令行参数
+ * 未指定-rf和-rff时结果以JSON格式写入target/jmh-result.json，便于比较两次运行
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+		CommandLineOptions options = new CommandLineOptions(args);
+		if (options.shouldHelp() || options.shouldList() || options.shouldListWithParams()
+				|| options.shouldListProfilers() || options.shouldListResultFormats()) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+		if (!options.getResultFormat().hasValue()) {
+			builder.resultFormat(ResultFormatType.JSON);
+		}
+		if (!options.getResult().hasValue()) {
+			builder.result("target/jmh-result.json");
+		}
+		new Runner(builder.build()).run();
+	}
+
+}
@@ -0,0 +1,134 @@
+package iockids.benchmarks;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * 基准测试用的对象图，与demo中Root/NodeA/NodeB/Leaf的结构相同:
+ * 1. Root -> Node(@Named("a"), @Named("b")) -> Leaf，单例，用于测试单例命中和限定注入
+ * 2. Tree -> Branch x2 -> Twig x2 -> Leaf，全部为普通类，每次创建整棵树（1 + 2 + 4 + 4个对象）
+ * 3. Consumer，构造器参数带@Named，每次创建时经过createFromQualified
+ * 4. Target，只有带@Inject的成员变量，用于测试injectMembers
+ */
+public final class Graph {
+
+	private Graph() {
+	}
+
+	public interface Node {
+
+		String name();
+
+	}
+
+	@Singleton
+	public static class Leaf {
+	}
+
+	@Singleton
+	public static class Root {
+
+		@Inject
+		@Named("a")
+		Node a;
+
+		@Inject
+		@Named("b")
+		Node b;
+
+	}
+
+	@Singleton
+	@Named("a")
+	public static class NodeA implements Node {
+
+		@Inject
+		Leaf leaf;
+
+		@Override
+		public String name() {
+			return "a";
+		}
+
+	}
+
+	@Singleton
+	@Named("b")
+	public static class NodeB implements Node {
+
+		final Leaf leaf;
+
+		@Inject
+		public NodeB(Leaf leaf) {
+			this.leaf = leaf;
+		}
+
+		@Override
+		public String name() {
+			return "b";
+		}
+
+	}
+
+	public static class Twig {
+
+		@Inject
+		Leaf leaf;
+
+	}
+
+	public static class Branch {
+
+		final Twig left;
+
+		final Twig right;
+
+		@Inject
+		public Branch(Twig left, Twig right) {
+			this.left = left;
+			this.right = right;
+		}
+
+	}
+
+	public static class Tree {
+
+		final Branch left;
+
+		final Branch right;
+
+		@Inject
+		public Tree(Branch left, Branch right) {
+			this.left = left;
+			this.right = right;
+		}
+
+	}
+
+	public static class Consumer {
+
+		final Node node;
+
+		@Inject
+		public Consumer(@Named("a") Node node) {
+			this.node = node;
+		}
+
+	}
+
+	public static class Target {
+
+		@Inject
+		Root root;
+
+		@Inject
+		Leaf leaf;
+
+		@Inject
+		@Named("b")
+		Node b;
+
+	}
+
+}
@@ -0,0 +1,89 @@
+package iockids.benchmarks;
+
+import iockids.InjectBackend;
+import iockids.Injector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Injector热路径的基准测试，每种创建方式（InjectBackend）分别测试，可选在冻结（freeze()）后测试:
+ * 1. singletonHit，已创建的单例
+ * 2. prototypeGraph，每次创建一整棵普通对象树
+ * 3. qualified，构造器参数带@Named的普通对象，经过createFromQualified
+ * 4. injectMembers，向已创建的对象注入成员变量
+ * 5. contendedSingletonHit，多个线程同时获取同一个单例
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InjectorBenchmark {
+
+	@Param({"REFLECTION", "METHOD_HANDLE", "GENERATED"})
+	public String backend;
+
+	@Param({"false", "true"})
+	public boolean frozen;
+
+	private Injector injector;
+
+	private Graph.Target target;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		injector = new Injector(false).useBackend(InjectBackend.valueOf(backend));
+		injector.registerQualifiedClass(Graph.Node.class, Graph.NodeA.class);
+		injector.registerQualifiedClass(Graph.Node.class, Graph.NodeB.class);
+		// 先创建一次，使单例、限定对象和注入计划都已缓存
+		injector.getInstance(Graph.Root.class);
+		injector.getInstance(Graph.Tree.class);
+		injector.getInstance(Graph.Consumer.class);
+		if (frozen) {
+			injector.freeze();
+		}
+		target = new Graph.Target();
+	}
+
+	@Benchmark
+	public Object singletonHit() {
+		return injector.getInstance(Graph.Root.class);
+	}
+
+	@Benchmark
+	public Object prototypeGraph() {
+		return injector.getInstance(Graph.Tree.class);
+	}
+
+	@Benchmark
+	public Object qualified() {
+		return injector.getInstance(Graph.Consumer.class);
+	}
+
+	@Benchmark
+	public Object injectMembers() {
+		injector.injectMembers(target);
+		return target;
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Object contendedSingletonHit() {
+		return injector.getInstance(Graph.Root.class);
+	}
+
+}
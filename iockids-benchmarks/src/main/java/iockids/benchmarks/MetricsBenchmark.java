@@ -0,0 +1,64 @@
+package iockids.benchmarks;
+
+import iockids.InjectBackend;
+import iockids.Injector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 运行统计（Injector.enableMetrics()）在热路径上的开销:
+ * 1. never，从未开启
+ * 2. disabled，开启后又关闭，与never的差别即关闭时的开销
+ * 3. enabled，开启
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+	@Param({"never", "disabled", "enabled"})
+	public String metrics;
+
+	private Injector injector;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		injector = new Injector(false).useBackend(InjectBackend.GENERATED);
+		injector.registerQualifiedClass(Graph.Node.class, Graph.NodeA.class);
+		injector.registerQualifiedClass(Graph.Node.class, Graph.NodeB.class);
+		if (!metrics.equals("never")) {
+			injector.enableMetrics();
+		}
+		if (metrics.equals("disabled")) {
+			injector.disableMetrics();
+		}
+		injector.getInstance(Graph.Root.class);
+		injector.getInstance(Graph.Tree.class);
+	}
+
+	@Benchmark
+	public Object singletonHit() {
+		return injector.getInstance(Graph.Root.class);
+	}
+
+	@Benchmark
+	public Object prototypeGraph() {
+		return injector.getInstance(Graph.Tree.class);
+	}
+
+}
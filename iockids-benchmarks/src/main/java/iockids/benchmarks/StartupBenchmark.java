@@ -0,0 +1,130 @@
+package iockids.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 合成classpath上的启动耗时测试，每次测量都启动新的JVM，测得的是冷启动耗时:
+ * 1. 按参数生成合成classpath（SyntheticClasspath）
+ * 2. 重复repeats次，分别测量Scanner.getClasses，以及Injector.scanInit和第一次getInstance
+ * 3. 输出各阶段的最小值、平均值、p50、p90、p99、最大值（毫秒），并以JSON格式写入结果文件
+ * 参数为key=value，-D开头的参数传给被测JVM（如-Diockids.scan.cache=...）:
+ * <pre>
+ * java -cp target/benchmarks.jar iockids.benchmarks.StartupBenchmark packages=200 classes=20000 jars=20 annotated=10 depth=10
+ * </pre>
+ */
+public class StartupBenchmark {
+
+	private static final Map<String, String> DEFAULTS = Map.of("packages", "100", "classes", "10000", "jars", "10",
+			"annotated", "10", "depth", "10", "fanout", "4", "repeats", "10", "dir", "target/synthetic",
+			"result", "target/startup-result.json");
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> params = new LinkedHashMap<>(DEFAULTS);
+		List<String> jvmArgs = new ArrayList<>();
+		for (var arg : args) {
+			if (arg.startsWith("-D")) {
+				jvmArgs.add(arg);
+				continue;
+			}
+			var i = arg.indexOf('=');
+			if (i < 0 || !DEFAULTS.containsKey(arg.substring(0, i))) {
+				throw new IllegalArgumentException("unknown argument " + arg + ", expected key=value with keys "
+						+ DEFAULTS.keySet());
+			}
+			params.put(arg.substring(0, i), arg.substring(i + 1));
+		}
+		var classpath = new SyntheticClasspath(intOf(params, "packages"), intOf(params, "classes"),
+				intOf(params, "jars"), intOf(params, "annotated"), intOf(params, "depth"), intOf(params, "fanout"));
+		System.out.println("generating synthetic classpath " + classpath.name());
+		var jars = classpath.generate(Path.of(params.get("dir")));
+
+		var repeats = intOf(params, "repeats");
+		Map<String, List<Long>> samples = new LinkedHashMap<>();
+		for (int i = 0; i < repeats; i++) {
+			probe(jars, jvmArgs, "scan", samples);
+			probe(jars, jvmArgs, "startup", samples);
+		}
+
+		var json = new StringBuilder("{\n  \"classpath\": \"").append(classpath.name()).append("\",\n");
+		json.append("  \"repeats\": ").append(repeats).append(",\n  \"phases\": {");
+		System.out.printf("%-12s %10s %10s %10s %10s %10s %10s%n", "phase(ms)", "min", "mean", "p50", "p90", "p99", "max");
+		var first = true;
+		for (var entry : samples.entrySet()) {
+			var sorted = entry.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+			var mean = Arrays.stream(sorted).average().orElse(0);
+			double[] stats = {sorted[0], mean, percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+					sorted[sorted.length - 1]};
+			System.out.printf("%-12s %10.2f %10.2f %10.2f %10.2f %10.2f %10.2f%n", entry.getKey(),
+					stats[0] / 1e6, stats[1] / 1e6, stats[2] / 1e6, stats[3] / 1e6, stats[4] / 1e6, stats[5] / 1e6);
+			json.append(first ? "\n" : ",\n").append("    \"").append(entry.getKey()).append("\": {");
+			json.append(String.format("\"min\": %.3f, \"mean\": %.3f, \"p50\": %.3f, \"p90\": %.3f, \"p99\": %.3f, \"max\": %.3f, ",
+					stats[0] / 1e6, stats[1] / 1e6, stats[2] / 1e6, stats[3] / 1e6, stats[4] / 1e6, stats[5] / 1e6));
+			json.append("\"samples\": [").append(Arrays.stream(sorted).mapToObj(Long::toString)
+					.collect(Collectors.joining(", "))).append("]}");
+			first = false;
+		}
+		json.append("\n  }\n}\n");
+		var result = Path.of(params.get("result"));
+		if (result.toAbsolutePath().getParent() != null) {
+			Files.createDirectories(result.toAbsolutePath().getParent());
+		}
+		Files.writeString(result, json);
+		System.out.println("result written to " + result);
+	}
+
+	private static int intOf(Map<String, String> params, String key) {
+		return Integer.parseInt(params.get(key));
+	}
+
+	/**
+	 * nearest-rank percentile, in nanoseconds
+	 */
+	private static double percentile(long[] sorted, int p) {
+		var rank = (int) Math.ceil(p / 100.0 * sorted.length);
+		return sorted[Math.max(rank, 1) - 1];
+	}
+
+	/**
+	 * run StartupProbe in a new JVM with the synthetic jars on its classpath, collecting the phases it prints
+	 */
+	private static void probe(List<Path> jars, List<String> jvmArgs, String mode, Map<String, List<Long>> samples)
+			throws IOException, InterruptedException {
+		List<String> command = new ArrayList<>();
+		command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(jvmArgs);
+		command.add("-cp");
+		command.add(jars.stream().map(Path::toString).collect(Collectors.joining(File.pathSeparator))
+				+ File.pathSeparator + System.getProperty("java.class.path"));
+		command.add(StartupProbe.class.getName());
+		command.add(mode);
+		var process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		List<String> lines = new ArrayList<>();
+		try (var in = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				lines.add(line);
+			}
+		}
+		if (process.waitFor() != 0) {
+			throw new IllegalStateException("probe " + mode + " failed:\n" + String.join("\n", lines));
+		}
+		for (var line : lines) {
+			var parts = line.split(" ");
+			if (parts.length >= 2 && parts[1].matches("\\d+")) {
+				samples.computeIfAbsent(parts[0], (k) -> new ArrayList<>()).add(Long.parseLong(parts[1]));
+			}
+		}
+	}
+
+}
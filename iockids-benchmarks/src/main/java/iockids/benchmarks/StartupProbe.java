@@ -0,0 +1,33 @@
+package iockids.benchmarks;
+
+import iockids.Injector;
+import utils.Scanner;
+
+/**
+ * 在新启动的JVM中执行一次启动过程并输出各阶段耗时（纳秒），由StartupBenchmark启动:
+ * 1. scan: Scanner.getClasses(syn)
+ * 2. startup: Injector.scanInit(syn)，然后第一次（冷）getInstance(syn.Root)
+ */
+public class StartupProbe {
+
+	public static void main(String[] args) throws Exception {
+		var mode = args[0];
+		if (mode.equals("scan")) {
+			var t0 = System.nanoTime();
+			var classes = Scanner.getClasses(SyntheticClasspath.ROOT_PACKAGE);
+			var t1 = System.nanoTime();
+			System.out.println("getClasses " + (t1 - t0) + " " + classes.size());
+			return;
+		}
+		var t0 = System.nanoTime();
+		var injector = new Injector(false);
+		injector.scanInit(SyntheticClasspath.ROOT_PACKAGE);
+		var t1 = System.nanoTime();
+		injector.getInstance(Class.forName(SyntheticClasspath.ROOT_CLASS));
+		var t2 = System.nanoTime();
+		System.out.println("scanInit " + (t1 - t0));
+		System.out.println("getInstance " + (t2 - t1));
+		System.out.println("startup " + (t2 - t0));
+	}
+
+}
@@ -0,0 +1,185 @@
+package iockids.benchmarks;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * 生成合成的classpath，用于测试启动耗时与classpath规模的关系:
+ * 1. packages个包（syn.p0, syn.p1...），共classes个类，按包轮流分配到jars个jar中
+ * 2. annotated%的类带有注解，其中一半为@Singleton，另一半为@Named("cN")并实现syn.Service
+ * 3. 类按编号串成长度为depth的构造器依赖链：cN依赖cN+1，syn.Root依赖前fanout条链的链头
+ * 生成的源文件用JDK自带的编译器编译，同样参数的classpath只生成一次
+ */
+public final class SyntheticClasspath {
+
+	static final String ROOT_PACKAGE = "syn";
+
+	static final String ROOT_CLASS = "syn.Root";
+
+	final int packages;
+
+	final int classes;
+
+	final int jars;
+
+	final int annotated;
+
+	final int depth;
+
+	final int fanout;
+
+	/**
+	 *
+	 * @param packages the number of packages
+	 * @param classes the number of classes in all packages
+	 * @param jars the number of jars
+	 * @param annotated the percentage of classes decorated with @Singleton or @Named
+	 * @param depth the length of each constructor dependency chain
+	 * @param fanout the number of chains syn.Root depends on
+	 */
+	public SyntheticClasspath(int packages, int classes, int jars, int annotated, int depth, int fanout) {
+		if (packages < 1 || classes < packages || jars < 1 || annotated < 0 || annotated > 100 || depth < 1
+				|| fanout < 1 || (long) fanout * depth > classes) {
+			throw new IllegalArgumentException("invalid synthetic classpath " + this.name(packages, classes, jars,
+					annotated, depth, fanout));
+		}
+		this.packages = packages;
+		this.classes = classes;
+		this.jars = jars;
+		this.annotated = annotated;
+		this.depth = depth;
+		this.fanout = fanout;
+	}
+
+	private String name(int packages, int classes, int jars, int annotated, int depth, int fanout) {
+		return String.format("p%d-c%d-j%d-a%d-d%d-f%d", packages, classes, jars, annotated, depth, fanout);
+	}
+
+	/**
+	 * @return the name of the directory holding the jars, unique for the parameters
+	 */
+	String name() {
+		return name(packages, classes, jars, annotated, depth, fanout);
+	}
+
+	/**
+	 * generate the jars under dir, unless they are already generated with the same parameters
+	 * @param dir the parent directory
+	 * @return the jars
+	 */
+	public List<Path> generate(Path dir) throws IOException {
+		var out = dir.resolve(name());
+		var done = out.resolve("done");
+		if (!Files.exists(done)) {
+			var sources = out.resolve("src");
+			var compiled = out.resolve("classes");
+			writeSources(sources);
+			compile(sources, compiled);
+			for (int i = 0; i < jars; i++) {
+				writeJar(compiled, out.resolve("syn-" + i + ".jar"), i);
+			}
+			Files.writeString(done, name());
+		}
+		List<Path> list = new ArrayList<>();
+		for (int i = 0; i < jars; i++) {
+			list.add(out.resolve("syn-" + i + ".jar"));
+		}
+		return list;
+	}
+
+	private String packageOf(int index) {
+		return ROOT_PACKAGE + ".p" + (index % packages);
+	}
+
+	private void writeSources(Path sources) throws IOException {
+		var service = sources.resolve("syn/Service.java");
+		Files.createDirectories(service.getParent());
+		Files.writeString(service, "package syn;\npublic interface Service {\n}\n");
+		var root = new StringBuilder("package syn;\npublic class Root {\n\t@javax.inject.Inject\n\tpublic Root(");
+		for (int i = 0; i < fanout; i++) {
+			var head = i * depth;
+			root.append(i == 0 ? "" : ", ").append(packageOf(head)).append(".C").append(head).append(" c").append(i);
+		}
+		root.append(") {\n\t}\n}\n");
+		Files.writeString(sources.resolve("syn/Root.java"), root);
+		for (int i = 0; i < classes; i++) {
+			var pkg = packageOf(i);
+			var source = new StringBuilder("package ").append(pkg).append(";\n");
+			// 按比例均匀分布带注解的类
+			var isAnnotated = (long) i * annotated / 100 != (long) (i + 1) * annotated / 100;
+			var isNamed = isAnnotated && i % 2 == 1;
+			if (isAnnotated) {
+				source.append(isNamed ? "@javax.inject.Named(\"c" + i + "\")\n" : "@javax.inject.Singleton\n");
+			}
+			source.append("public class C").append(i).append(isNamed ? " implements syn.Service" : "").append(" {\n");
+			source.append("\t@javax.inject.Inject\n\tpublic C").append(i).append("(");
+			if ((i + 1) % depth != 0 && i + 1 < classes) {
+				source.append(packageOf(i + 1)).append(".C").append(i + 1).append(" next");
+			}
+			source.append(") {\n\t}\n}\n");
+			var file = sources.resolve(pkg.replace('.', '/')).resolve("C" + i + ".java");
+			Files.createDirectories(file.getParent());
+			Files.writeString(file, source);
+		}
+	}
+
+	private void compile(Path sources, Path compiled) throws IOException {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			throw new IllegalStateException("a JDK is required to compile the synthetic classpath");
+		}
+		List<String> args = new ArrayList<>(List.of("-nowarn", "-proc:none", "-d", compiled.toString(),
+				"-cp", System.getProperty("java.class.path")));
+		try (Stream<Path> files = Files.walk(sources)) {
+			files.filter((p) -> p.toString().endsWith(".java")).forEach((p) -> args.add(p.toString()));
+		}
+		if (compiler.run(null, null, null, args.toArray(new String[0])) != 0) {
+			throw new IllegalStateException("compile synthetic classpath error");
+		}
+	}
+
+	/**
+	 * package syn and the packages syn.pN with N % jars == index into a jar, with entries for directories
+	 */
+	private void writeJar(Path compiled, Path jar, int index) throws IOException {
+		try (var out = new JarOutputStream(Files.newOutputStream(jar))) {
+			// 目录也需要条目，ClassLoader.getResources("syn")才能找到该jar
+			putDirectory(out, "syn/");
+			if (index == 0) {
+				putFile(out, compiled, "syn/Service.class");
+				putFile(out, compiled, "syn/Root.class");
+			}
+			for (int p = index; p < packages; p += jars) {
+				var dir = "syn/p" + p + "/";
+				putDirectory(out, dir);
+				try (Stream<Path> files = Files.list(compiled.resolve(dir))) {
+					for (var file : (Iterable<Path>) files.sorted()::iterator) {
+						putFile(out, compiled, dir + file.getFileName());
+					}
+				}
+			}
+		}
+	}
+
+	private static void putDirectory(JarOutputStream out, String name) throws IOException {
+		out.putNextEntry(new JarEntry(name));
+		out.closeEntry();
+	}
+
+	private static void putFile(JarOutputStream out, Path compiled, String name) throws IOException {
+		out.putNextEntry(new JarEntry(name));
+		try (var in = Files.newInputStream(compiled.resolve(name))) {
+			in.transferTo(out);
+		}
+		out.closeEntry();
+	}
+
+}
@@ -0,0 +1,131 @@
+package iockids.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 在编译期为utils.Scanner生成类索引 META-INF/iockids/class-index，运行时有索引的classpath条目无需再遍历
+ * 索引按包分组，每个类一行，列出类上的注解:
+ * <pre>
+ * demo.mvc.dao
+ * 	demo.mvc.dao.UserMapper javax.inject.Named javax.inject.Singleton
+ * </pre>
+ * 增量编译时只会处理部分源文件，因此先读入上次的索引，保留仍然存在的类
+ */
+@SupportedAnnotationTypes("*")
+public class ClassIndexProcessor extends AbstractProcessor {
+
+	static final String INDEX = "META-INF/iockids/class-index";
+
+	/**
+	 * class name -> annotation names, sorted by package and then class name
+	 */
+	private final Map<String, List<String>> classes = new TreeMap<>(
+			Comparator.comparing(ClassIndexProcessor::packageOf).thenComparing(Comparator.naturalOrder()));
+
+	private boolean loaded;
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if (!loaded) {
+			loaded = true;
+			readPrevious();
+		}
+		if (roundEnv.processingOver()) {
+			write();
+			return false;
+		}
+		for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+			collect(type);
+		}
+		return false;
+	}
+
+	private void collect(TypeElement type) {
+		var annotationNames = new ArrayList<String>();
+		for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+			annotationNames.add(InjectProcessor.nameOf(mirror));
+		}
+		classes.put(processingEnv.getElementUtils().getBinaryName(type).toString(), annotationNames);
+		for (TypeElement member : ElementFilter.typesIn(type.getEnclosedElements())) {
+			collect(member);
+		}
+	}
+
+	private void readPrevious() {
+		try {
+			FileObject previous = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX);
+			try (BufferedReader reader = new BufferedReader(previous.openReader(true))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (!line.startsWith("\t")) {
+						continue;
+					}
+					var parts = line.trim().split(" ");
+					// 已被删除的类不再保留
+					if (processingEnv.getElementUtils().getTypeElement(parts[0].replace('$', '.')) == null) {
+						continue;
+					}
+					classes.put(parts[0], new ArrayList<>(List.of(parts).subList(1, parts.length)));
+				}
+			}
+		} catch (IOException | IllegalArgumentException ignored) {
+			// 没有上次的索引
+		}
+	}
+
+	private static String packageOf(String className) {
+		var index = className.lastIndexOf('.');
+		return index == -1 ? "" : className.substring(0, index);
+	}
+
+	private void write() {
+		if (classes.isEmpty()) {
+			return;
+		}
+		try (Writer writer = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX).openWriter()) {
+			String currentPackage = null;
+			for (var entry : classes.entrySet()) {
+				var className = entry.getKey();
+				var packageName = packageOf(className);
+				if (!packageName.equals(currentPackage)) {
+					currentPackage = packageName;
+					writer.write(packageName);
+					writer.write("\n");
+				}
+				writer.write("\t");
+				writer.write(className);
+				for (String annotation : entry.getValue()) {
+					writer.write(" ");
+					writer.write(annotation);
+				}
+				writer.write("\n");
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "failed to write " + INDEX + ": " + e.getMessage());
+		}
+	}
+
+}
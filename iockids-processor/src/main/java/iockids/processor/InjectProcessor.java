@@ -0,0 +1,482 @@
+package iockids.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * JSR-269注解处理器，在编译期完成原本由Injector.scanInit()在运行时完成的工作:
+ * 1. 读取类上的@Qualifier限定器（如@Named），生成 接口->限定器->实现类 的分类绑定，并记录带@Singleton的类供eagerInit()使用
+ * 2. 为带@Inject/@Singleton/限定器的类生成工厂（CompiledFactory），直接调用构造器和直接赋值成员变量，并携带完整的注入计划
+ * 3. 每个包生成一个BindingRegistry，并写入META-INF/services，由Injector.registryInit()加载
+ * 含有私有构造器、私有成员变量、不可访问类型或构造器声明了受检异常的类不生成工厂，运行时仍通过反射解析
+ */
+@SupportedAnnotationTypes("*")
+public class InjectProcessor extends AbstractProcessor {
+
+	static final String INJECT = "javax.inject.Inject";
+	static final String SINGLETON = "javax.inject.Singleton";
+	static final String NAMED = "javax.inject.Named";
+	static final String QUALIFIER = "javax.inject.Qualifier";
+	static final String SCOPE = "javax.inject.Scope";
+	static final String PROVIDER = "javax.inject.Provider";
+	static final String LAZY = "iockids.Lazy";
+
+	private static final String FACTORY_SUFFIX = "$$IocFactory";
+	private static final String BINDINGS_NAME = "IocKids$$Bindings";
+
+	private final Set<String> registries = new TreeSet<>();
+
+	private int round;
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if (roundEnv.processingOver()) {
+			writeServices();
+			return false;
+		}
+		round++;
+		Map<PackageElement, List<TypeElement>> packages = new LinkedHashMap<>();
+		for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+			collect(type, packages);
+		}
+		for (var entry : packages.entrySet()) {
+			writeBindings(entry.getKey(), entry.getValue());
+		}
+		// 不占用任何注解，其他处理器仍可处理
+		return false;
+	}
+
+	private void collect(TypeElement type, Map<PackageElement, List<TypeElement>> packages) {
+		if (type.getKind() == ElementKind.CLASS && isRelevant(type)) {
+			packages.computeIfAbsent(packageOf(type), (k) -> new ArrayList<>()).add(type);
+		}
+		for (TypeElement member : ElementFilter.typesIn(type.getEnclosedElements())) {
+			collect(member, packages);
+		}
+	}
+
+	/**
+	 * @return whether the class is qualified, singleton, or has constructors or fields decorated with @Inject
+	 */
+	private boolean isRelevant(TypeElement type) {
+		if (qualifierOf(type) != null || hasAnnotation(type, SINGLETON)) {
+			return true;
+		}
+		for (Element element : type.getEnclosedElements()) {
+			if ((element.getKind() == ElementKind.CONSTRUCTOR || element.getKind() == ElementKind.FIELD)
+					&& hasAnnotation(element, INJECT)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void writeBindings(PackageElement pkg, List<TypeElement> types) {
+		var packageName = pkg.getQualifiedName().toString();
+		var simpleName = round == 1 ? BINDINGS_NAME : BINDINGS_NAME + round;
+		var registryName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+		var body = new StringBuilder();
+		for (TypeElement type : types) {
+			if (!isAccessible(type, pkg)) {
+				// 私有内部类在运行时仍通过反射解析，但其分类绑定无法在编译期注册
+				if (qualifierOf(type) != null || hasAnnotation(type, SINGLETON)) {
+					warn(type, "qualified or singleton class is not accessible from its package, binding skipped by iockids");
+				}
+				continue;
+			}
+			var factory = writeFactory(pkg, type);
+			if (factory != null) {
+				body.append("\t\tinjector.registerFactory(new ").append(factory).append("());\n");
+			}
+			// 与scanInit()一致：非抽象的@Singleton类记录为单例类
+			if (hasAnnotation(type, SINGLETON) && !type.getModifiers().contains(Modifier.ABSTRACT)) {
+				body.append("\t\tinjector.registerSingletonClass(").append(erasure(type.asType())).append(".class);\n");
+			}
+			var qualifier = qualifierOf(type);
+			if (qualifier == null) {
+				continue;
+			}
+			var qualifierCode = qualifierCode(qualifier, type);
+			for (TypeMirror inter : type.getInterfaces()) {
+				var interType = (TypeElement) processingEnv.getTypeUtils().asElement(inter);
+				if (!isAccessible(interType, pkg)) {
+					warn(type, "interface " + interType + " is not accessible, qualified binding skipped by iockids");
+					continue;
+				}
+				body.append("\t\tinjector.registerQualifiedClass(").append(erasure(inter)).append(".class, ")
+						.append(qualifierCode).append(", ").append(erasure(type.asType())).append(".class);\n");
+			}
+		}
+		if (body.length() == 0) {
+			return;
+		}
+		try (Writer writer = processingEnv.getFiler().createSourceFile(registryName, types.toArray(new Element[0])).openWriter()) {
+			var out = new PrintWriter(writer);
+			if (!packageName.isEmpty()) {
+				out.println("package " + packageName + ";");
+				out.println();
+			}
+			out.println("@javax.annotation.processing.Generated(\"" + InjectProcessor.class.getName() + "\")");
+			out.println("public final class " + simpleName + " implements iockids.BindingRegistry {");
+			out.println();
+			out.println("\t@Override");
+			out.println("\tpublic void registerTo(iockids.Injector injector) {");
+			out.print(body);
+			out.println("\t}");
+			out.println();
+			out.println("}");
+			out.flush();
+			registries.add(registryName);
+		} catch (IOException e) {
+			error(pkg, "failed to write " + registryName + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return simple name of the generated factory, null if the class needs reflection at runtime
+	 */
+	private String writeFactory(PackageElement pkg, TypeElement type) {
+		if (type.getModifiers().contains(Modifier.ABSTRACT) || type.getNestingKind() == NestingKind.MEMBER
+				&& !type.getModifiers().contains(Modifier.STATIC) || !type.getTypeParameters().isEmpty()) {
+			return null;
+		}
+		// 与运行时一致：带@Inject的构造器和无参构造器中必须恰好有一个
+		List<ExecutableElement> constructors = new ArrayList<>();
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (hasAnnotation(constructor, INJECT) || constructor.getParameters().isEmpty()) {
+				constructors.add(constructor);
+			}
+		}
+		if (constructors.size() != 1 || constructors.get(0).getModifiers().contains(Modifier.PRIVATE)) {
+			return null;
+		}
+		var constructor = constructors.get(0);
+		// 工厂的newInstance()不声明受检异常，声明了受检异常的构造器运行时通过反射调用，异常由InjectException包装
+		if (!constructor.getThrownTypes().isEmpty()) {
+			return null;
+		}
+		for (VariableElement parameter : constructor.getParameters()) {
+			if (!isInjectable(parameter, pkg)) {
+				return null;
+			}
+		}
+		List<VariableElement> fields = new ArrayList<>();
+		for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+			if (!hasAnnotation(field, INJECT)) {
+				continue;
+			}
+			var modifiers = field.getModifiers();
+			if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC)
+					|| modifiers.contains(Modifier.FINAL) || !isInjectable(field, pkg)) {
+				return null;
+			}
+			fields.add(field);
+		}
+		var scope = scopeOf(type);
+		if (scope != null && !isAccessible(scope, pkg)) {
+			return null;
+		}
+		for (VariableElement field : fields) {
+			var fieldScope = scopeOf(field);
+			if (fieldScope != null && !isAccessible(fieldScope, pkg)) {
+				return null;
+			}
+		}
+
+		var packageName = pkg.getQualifiedName().toString();
+		var typeName = erasure(type.asType());
+		var simpleName = flatName(type, pkg) + FACTORY_SUFFIX;
+		var factoryName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+		try (Writer writer = processingEnv.getFiler().createSourceFile(factoryName, type).openWriter()) {
+			var out = new PrintWriter(writer);
+			if (!packageName.isEmpty()) {
+				out.println("package " + packageName + ";");
+				out.println();
+			}
+			out.println("@javax.annotation.processing.Generated(\"" + InjectProcessor.class.getName() + "\")");
+			out.println("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+			out.println("final class " + simpleName + " extends iockids.CompiledFactory<" + typeName + "> {");
+			out.println();
+			out.println("\t" + simpleName + "() {");
+			out.println("\t\tsuper(" + typeName + ".class, " + hasAnnotation(type, SINGLETON) + ", " + classCode(scope) + ",");
+			out.println("\t\t\t\tnew Class<?>[] {" + join(constructor.getParameters(), (p) -> erasure(p.asType()) + ".class") + "},");
+			out.println("\t\t\t\tnew java.lang.annotation.Annotation[][] {" + join(constructor.getParameters(), this::qualifiersCode) + "},");
+			out.println("\t\t\t\tnew Class<?>[] {" + join(constructor.getParameters(), this::providedCode) + "},");
+			out.println("\t\t\t\tnew String[] {" + join(fields, (f) -> "\"" + f.getSimpleName() + "\"") + "},");
+			out.println("\t\t\t\tnew Class<?>[] {" + join(fields, (f) -> erasure(f.asType()) + ".class") + "},");
+			out.println("\t\t\t\tnew java.lang.annotation.Annotation[][] {" + join(fields, this::qualifiersCode) + "},");
+			out.println("\t\t\t\tnew boolean[] {" + join(fields, (f) -> String.valueOf(hasAnnotation(f, SINGLETON))) + "},");
+			out.println("\t\t\t\tnew Class<?>[] {" + join(fields, this::providedCode) + "},");
+			out.println("\t\t\t\tnew Class<?>[] {" + join(fields, (f) -> classCode(scopeOf(f))) + "});");
+			out.println("\t}");
+			out.println();
+			out.println("\t@Override");
+			out.println("\tpublic " + typeName + " newInstance(Object[] args) {");
+			var args = new StringBuilder();
+			var parameters = constructor.getParameters();
+			for (int i = 0; i < parameters.size(); i++) {
+				args.append(i == 0 ? "" : ", ").append("(").append(erasure(parameters.get(i).asType())).append(") args[").append(i).append("]");
+			}
+			out.println("\t\treturn new " + typeName + "(" + args + ");");
+			out.println("\t}");
+			out.println();
+			out.println("\t@Override");
+			out.println("\tpublic void inject(int index, Object instance, Object value) {");
+			if (!fields.isEmpty()) {
+				out.println("\t\tvar target = (" + typeName + ") instance;");
+				out.println("\t\tswitch (index) {");
+				for (int i = 0; i < fields.size(); i++) {
+					var field = fields.get(i);
+					out.println("\t\t\tcase " + i + ":");
+					out.println("\t\t\t\ttarget." + field.getSimpleName() + " = (" + erasure(field.asType()) + ") value;");
+					out.println("\t\t\t\tbreak;");
+				}
+				out.println("\t\t\tdefault:");
+				out.println("\t\t\t\tbreak;");
+				out.println("\t\t}");
+			}
+			out.println("\t}");
+			out.println();
+			out.println("}");
+			out.flush();
+		} catch (IOException e) {
+			error(type, "failed to write " + factoryName + ": " + e.getMessage());
+			return null;
+		}
+		return simpleName;
+	}
+
+	/**
+	 * 参数或成员变量的类型必须可访问，限定器只支持@Named（可直接构造），否则在运行时通过反射解析
+	 */
+	private boolean isInjectable(VariableElement variable, PackageElement pkg) {
+		TypeMirror type = processingEnv.getTypeUtils().erasure(variable.asType());
+		while (type.getKind() == TypeKind.ARRAY) {
+			type = ((ArrayType) type).getComponentType();
+		}
+		if (type.getKind() == TypeKind.DECLARED && !isAccessible((TypeElement) ((DeclaredType) type).asElement(), pkg)) {
+			return false;
+		}
+		var provided = providedOf(variable);
+		while (provided != null && provided.getKind() == TypeKind.ARRAY) {
+			provided = ((ArrayType) provided).getComponentType();
+		}
+		if (provided != null && provided.getKind() == TypeKind.DECLARED
+				&& !isAccessible((TypeElement) ((DeclaredType) provided).asElement(), pkg)) {
+			return false;
+		}
+		for (AnnotationMirror qualifier : qualifiersOf(variable)) {
+			if (!nameOf(qualifier).equals(NAMED)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the T of a Provider<T> or Lazy<T> injection point, the same as InjectionPlan.providedOf(), null if none
+	 */
+	private TypeMirror providedOf(VariableElement variable) {
+		var type = variable.asType();
+		if (type.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+		var declared = (DeclaredType) type;
+		var name = ((TypeElement) declared.asElement()).getQualifiedName().toString();
+		if (!name.equals(PROVIDER) && !name.equals(LAZY) || declared.getTypeArguments().size() != 1) {
+			return null;
+		}
+		var argument = declared.getTypeArguments().get(0);
+		if (argument.getKind() == TypeKind.DECLARED) {
+			return processingEnv.getTypeUtils().erasure(argument);
+		}
+		// 运行时元素类型带泛型参数的数组为GenericArrayType，同样视为未知
+		if (argument.getKind() == TypeKind.ARRAY
+				&& processingEnv.getTypeUtils().isSameType(argument, processingEnv.getTypeUtils().erasure(argument))) {
+			return argument;
+		}
+		return null;
+	}
+
+	private String providedCode(VariableElement variable) {
+		var provided = providedOf(variable);
+		return provided == null ? "null" : provided + ".class";
+	}
+
+	/**
+	 * @return the scope annotation on the element other than @Singleton, the same as InjectionPlan.scopeOf(), null if none
+	 */
+	private TypeElement scopeOf(Element element) {
+		for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			var annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+			if (!nameOf(mirror).equals(SINGLETON) && hasAnnotation(annotationType, SCOPE)) {
+				return annotationType;
+			}
+		}
+		return null;
+	}
+
+	private static String classCode(TypeElement type) {
+		return type == null ? "null" : type.getQualifiedName() + ".class";
+	}
+
+	private String qualifiersCode(VariableElement variable) {
+		var codes = new ArrayList<String>();
+		for (AnnotationMirror qualifier : qualifiersOf(variable)) {
+			codes.add(namedCode(qualifier));
+		}
+		return "{" + String.join(", ", codes) + "}";
+	}
+
+	/**
+	 * @return code of the qualifier on a class, @Named is constructed directly, others are read from the class
+	 */
+	private String qualifierCode(AnnotationMirror qualifier, TypeElement type) {
+		if (nameOf(qualifier).equals(NAMED)) {
+			return namedCode(qualifier);
+		}
+		return erasure(type.asType()) + ".class.getAnnotation(" + nameOf(qualifier) + ".class)";
+	}
+
+	private String namedCode(AnnotationMirror named) {
+		for (var entry : named.getElementValues().entrySet()) {
+			if (entry.getKey().getSimpleName().contentEquals("value")) {
+				return "iockids.Qualifiers.named("
+						+ processingEnv.getElementUtils().getConstantExpression(entry.getValue().getValue()) + ")";
+			}
+		}
+		return "iockids.Qualifiers.named(\"\")";
+	}
+
+	/**
+	 * @return the last qualifier on the element, the same as Injector.scanInit()
+	 */
+	private AnnotationMirror qualifierOf(Element element) {
+		var qualifiers = qualifiersOf(element);
+		return qualifiers.isEmpty() ? null : qualifiers.get(qualifiers.size() - 1);
+	}
+
+	private List<AnnotationMirror> qualifiersOf(Element element) {
+		List<AnnotationMirror> qualifiers = new ArrayList<>();
+		for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			if (hasAnnotation(mirror.getAnnotationType().asElement(), QUALIFIER)) {
+				qualifiers.add(mirror);
+			}
+		}
+		return qualifiers;
+	}
+
+	static boolean hasAnnotation(Element element, String annotation) {
+		for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			if (nameOf(mirror).equals(annotation)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static String nameOf(AnnotationMirror mirror) {
+		return ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+	}
+
+	/**
+	 * @return whether the class (and all its enclosing classes) can be referenced from source in pkg
+	 */
+	private boolean isAccessible(TypeElement type, PackageElement pkg) {
+		for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+			var modifiers = e.getModifiers();
+			if (modifiers.contains(Modifier.PRIVATE)) {
+				return false;
+			}
+			if (!modifiers.contains(Modifier.PUBLIC) && !packageOf(e).equals(pkg)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private PackageElement packageOf(Element element) {
+		return processingEnv.getElementUtils().getPackageOf(element);
+	}
+
+	private String erasure(TypeMirror type) {
+		return processingEnv.getTypeUtils().erasure(type).toString();
+	}
+
+	/**
+	 * @return name of the class relative to its package, with '$' between nested classes
+	 */
+	private String flatName(TypeElement type, PackageElement pkg) {
+		var name = type.getQualifiedName().toString();
+		var packageName = pkg.getQualifiedName().toString();
+		if (!packageName.isEmpty()) {
+			name = name.substring(packageName.length() + 1);
+		}
+		return name.replace('.', '$');
+	}
+
+	private static <E> String join(List<? extends E> elements, Function<E, String> mapper) {
+		var codes = new ArrayList<String>();
+		for (E element : elements) {
+			codes.add(mapper.apply(element));
+		}
+		return String.join(", ", codes);
+	}
+
+	private void writeServices() {
+		if (registries.isEmpty()) {
+			return;
+		}
+		try (Writer writer = processingEnv.getFiler()
+				.createResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/services/iockids.BindingRegistry").openWriter()) {
+			for (String registry : registries) {
+				writer.write(registry);
+				writer.write("\n");
+			}
+		} catch (IOException e) {
+			error(null, "failed to write META-INF/services/iockids.BindingRegistry: " + e.getMessage());
+		}
+	}
+
+	private void warn(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, element);
+	}
+
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+
+}
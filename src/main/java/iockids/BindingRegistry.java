@@ -0,0 +1,15 @@
+package iockids;
+
+/**
+ * 编译期注解处理器（iockids-processor）生成的绑定注册表，通过ServiceLoader加载
+ * 包含扫描时才能得到的分类绑定（接口->@Named->实现类），以及各类的编译期工厂
+ */
+public interface BindingRegistry {
+
+	/**
+	 * register all bindings found at compile time
+	 * @param injector the injector to be registered to
+	 */
+	void registerTo(Injector injector);
+
+}
@@ -0,0 +1,215 @@
+package iockids;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 冻结后的绑定表（Injector.freeze()），所有绑定编译为按绑定编号索引的数组:
+ * 1. Key -> 绑定编号：以Key的哈希开放寻址，Key全局唯一，按对象本身比较；表的大小只取决于本表的Key数量，负载不超过一半
+ *    不带限定器时直接按类型查找：以System.identityHashCode开放寻址，无需先取得Key
+ * 2. 绑定编号 -> 限定类、是否为单例类、已创建的单例或分类单例
+ * 冻结时已注册的Key和从这些类的注入计划中可达的Key都有绑定编号，其余Key（很少出现）的对象放入溢出表
+ */
+final class BindingTable {
+
+	/**
+	 * open addressing table of all keys, and their binding ids
+	 */
+	private final Key[] index;
+
+	private final int[] indexBindings;
+
+	/**
+	 * open addressing table of the types of unqualified keys, and their binding ids
+	 */
+	private final Class<?>[] types;
+
+	private final int[] typeBindings;
+
+	/**
+	 * binding id -> key
+	 */
+	private final Key[] keys;
+
+	/**
+	 * binding id -> the class registered for a qualified key, null if none
+	 */
+	private final Class<?>[] classes;
+
+	/**
+	 * binding id -> whether the key is registered as a singleton class
+	 */
+	private final boolean[] singletons;
+
+	/**
+	 * binding id -> the singleton or qualified instance, set at most once
+	 */
+	private final AtomicReferenceArray<Object> instances;
+
+	private final Map<Key, Object> overflow = new ConcurrentHashMap<>();
+
+	/**
+	 *
+	 * @param all all keys to be indexed
+	 * @param registeredInstances instances created or put before freezing
+	 * @param registeredClasses classes registered for qualified keys
+	 * @param singletonKeys keys registered as singleton classes
+	 */
+	BindingTable(Collection<Key> all, Map<Key, Object> registeredInstances, Map<Key, Class<?>> registeredClasses,
+				 Set<Key> singletonKeys) {
+		this.keys = all.toArray(new Key[0]);
+		this.classes = new Class<?>[keys.length];
+		this.singletons = new boolean[keys.length];
+		this.instances = new AtomicReferenceArray<>(keys.length);
+		this.index = new Key[Integer.highestOneBit(Math.max(keys.length, 1)) << 2];
+		this.indexBindings = new int[index.length];
+		this.types = new Class<?>[index.length];
+		this.typeBindings = new int[types.length];
+		for (int i = 0; i < keys.length; i++) {
+			var key = keys[i];
+			var keySlot = key.hashCode() & (index.length - 1);
+			while (index[keySlot] != null) {
+				keySlot = (keySlot + 1) & (index.length - 1);
+			}
+			index[keySlot] = key;
+			indexBindings[keySlot] = i;
+			if (key.qualifier == null) {
+				var slot = System.identityHashCode(key.type) & (types.length - 1);
+				while (types[slot] != null) {
+					slot = (slot + 1) & (types.length - 1);
+				}
+				types[slot] = key.type;
+				typeBindings[slot] = i;
+			}
+			classes[i] = registeredClasses.get(key);
+			singletons[i] = singletonKeys.contains(key);
+			instances.set(i, registeredInstances.get(key));
+		}
+	}
+
+	private int bindingOf(Key key) {
+		var mask = index.length - 1;
+		var slot = key.hashCode() & mask;
+		Key k;
+		while ((k = index[slot]) != null) {
+			if (k == key) {
+				return indexBindings[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private int bindingOf(Class<?> type) {
+		var mask = types.length - 1;
+		var slot = System.identityHashCode(type) & mask;
+		Class<?> t;
+		while ((t = types[slot]) != null) {
+			if (t == type) {
+				return typeBindings[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param type a type
+	 * @return the singleton, null if not created yet
+	 */
+	Object instance(Class<?> type) {
+		var binding = bindingOf(type);
+		return binding >= 0 ? instances.get(binding) : overflow.get(Key.of(type));
+	}
+
+	/**
+	 * @param type a type
+	 * @return whether the type is registered as a singleton class
+	 */
+	boolean isSingleton(Class<?> type) {
+		var binding = bindingOf(type);
+		return binding >= 0 && singletons[binding];
+	}
+
+	/**
+	 * @param key a key
+	 * @return the singleton or qualified instance, null if not created yet
+	 */
+	Object instance(Key key) {
+		var binding = bindingOf(key);
+		return binding >= 0 ? instances.get(binding) : overflow.get(key);
+	}
+
+	/**
+	 * @param key a key
+	 * @param o the instance just created
+	 * @return the instance already there, or null if o is set
+	 */
+	Object putInstanceIfAbsent(Key key, Object o) {
+		var binding = bindingOf(key);
+		if (binding < 0) {
+			return overflow.putIfAbsent(key, o);
+		}
+		return instances.compareAndExchange(binding, null, o);
+	}
+
+	/**
+	 * @param qualified whether to count qualified objects or singletons
+	 * @return the number of instances created or put
+	 */
+	int instanceCount(boolean qualified) {
+		var count = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if ((keys[i].qualifier != null) == qualified && instances.get(i) != null) {
+				count++;
+			}
+		}
+		for (var key : overflow.keySet()) {
+			if ((key.qualifier != null) == qualified) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @param key a qualified key
+	 * @return the class registered for the key, null if none
+	 */
+	Class<?> boundClass(Key key) {
+		var binding = bindingOf(key);
+		return binding >= 0 ? classes[binding] : null;
+	}
+
+	/**
+	 * @return the types registered as singleton classes
+	 */
+	List<Class<?>> singletonClasses() {
+		List<Class<?>> list = new ArrayList<>();
+		for (int i = 0; i < keys.length; i++) {
+			if (singletons[i]) {
+				list.add(keys[i].type);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * @return qualified key -> class registered
+	 */
+	Map<Key, Class<?>> qualifiedClasses() {
+		Map<Key, Class<?>> map = new LinkedHashMap<>();
+		for (int i = 0; i < keys.length; i++) {
+			if (classes[i] != null) {
+				map.put(keys[i], classes[i]);
+			}
+		}
+		return map;
+	}
+}
@@ -0,0 +1,61 @@
+package iockids;
+
+import javax.inject.Provider;
+
+/**
+ * 注入到Provider<T>或Lazy<T>的对象，依赖在get()时才通过injector解析
+ * 解析到的是单例或分类单例时缓存下来，之后的get()只读取一个volatile成员变量
+ */
+final class BoundProvider<T> implements Provider<T>, Lazy<T> {
+
+	private final Injector injector;
+
+	private final Class<?> declaringClazz;
+
+	private final Class<T> type;
+
+	private final Key[] keys;
+
+	/**
+	 * whether injected as Lazy, which keeps the first instance even if it's not a singleton
+	 */
+	private final boolean lazy;
+
+	private volatile T instance;
+
+	BoundProvider(Injector injector, Class<?> declaringClazz, Class<T> type, Key[] keys, boolean lazy) {
+		this.injector = injector;
+		this.declaringClazz = declaringClazz;
+		this.type = type;
+		this.keys = keys;
+		this.lazy = lazy;
+	}
+
+	@Override
+	public T get() {
+		var o = instance;
+		if (o != null) {
+			return o;
+		}
+		if (lazy) {
+			synchronized (this) {
+				o = instance;
+				if (o == null) {
+					o = injector.resolve(declaringClazz, type, keys);
+					instance = o;
+				}
+			}
+			return o;
+		}
+		o = injector.resolve(declaringClazz, type, keys);
+		if (injector.isShared(type, keys, o)) {
+			instance = o;
+		}
+		return o;
+	}
+
+	@Override
+	public String toString() {
+		return (lazy ? "Lazy<" : "Provider<") + type.getName() + ">";
+	}
+}
@@ -0,0 +1,71 @@
+package iockids;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * 由编译期注解处理器（iockids-processor）生成的工厂的基类
+ * 除了直接调用构造器和直接赋值成员变量外，还携带了该类完整的注入计划（含作用域注解和Provider<T>、Lazy<T>的类型参数），
+ * 注册后运行时无需再通过反射解析该类；直接调用构造器和赋值成员变量只在InjectBackend.GENERATED下使用，
+ * 其他backend仍在第一次创建时通过名称和类型查找构造器和成员变量
+ * @param <T> the class created by this factory
+ */
+public abstract class CompiledFactory<T> implements InjectFactory<T> {
+
+	final Class<T> type;
+
+	final boolean singleton;
+
+	final Class<? extends Annotation> scope;
+
+	final Class<?>[] parameterTypes;
+
+	final Annotation[][] parameterQualifiers;
+
+	final Class<?>[] parameterProvided;
+
+	final String[] fieldNames;
+
+	final Class<?>[] fieldTypes;
+
+	final Annotation[][] fieldQualifiers;
+
+	final boolean[] singletonFields;
+
+	final Class<?>[] fieldProvided;
+
+	final Class<?>[] fieldScopes;
+
+	/**
+	 *
+	 * @param type the class created by this factory
+	 * @param singleton whether the class is decorated with @Singleton
+	 * @param scope the scope annotation on the class other than @Singleton, null if none
+	 * @param parameterTypes parameter types of the constructor for injection
+	 * @param parameterQualifiers qualifiers of each parameter
+	 * @param parameterProvided the T of Provider<T> or Lazy<T> parameters, null for other parameters
+	 * @param fieldNames names of fields decorated with @Inject, in the order of the indexes of inject()
+	 * @param fieldTypes types of each field
+	 * @param fieldQualifiers qualifiers of each field
+	 * @param singletonFields whether each field is decorated with @Singleton
+	 * @param fieldProvided the T of Provider<T> or Lazy<T> fields, null for other fields
+	 * @param fieldScopes the scope annotation on each field other than @Singleton, null if none
+	 */
+	protected CompiledFactory(Class<T> type, boolean singleton, Class<? extends Annotation> scope,
+			Class<?>[] parameterTypes, Annotation[][] parameterQualifiers, Class<?>[] parameterProvided,
+			String[] fieldNames, Class<?>[] fieldTypes, Annotation[][] fieldQualifiers, boolean[] singletonFields,
+			Class<?>[] fieldProvided, Class<?>[] fieldScopes) {
+		this.type = type;
+		this.singleton = singleton;
+		this.scope = scope;
+		this.parameterTypes = parameterTypes;
+		this.parameterQualifiers = parameterQualifiers;
+		this.parameterProvided = parameterProvided;
+		this.fieldNames = fieldNames;
+		this.fieldTypes = fieldTypes;
+		this.fieldQualifiers = fieldQualifiers;
+		this.singletonFields = singletonFields;
+		this.fieldProvided = fieldProvided;
+		this.fieldScopes = fieldScopes;
+	}
+
+}
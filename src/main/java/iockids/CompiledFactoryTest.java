@@ -0,0 +1,158 @@
+package iockids;
+
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用javax.tools编译fixture源码并运行iockids-processor的InjectProcessor，加载生成的注册表后检查:
+ * 1. 生成的工厂携带的注入计划与反射解析的一致，只对加载注册表的injector及其子injector生效
+ * 2. 注册表中的@Singleton类可被eagerInit()提前创建，Provider<T>、Lazy<T>和成员变量的作用域照常解析
+ * 3. 构造器声明了受检异常的类不生成工厂，运行时通过反射创建
+ * 需先构建iockids-processor（cd iockids-processor && mvn compile），处理器的classpath默认为iockids-processor/target/classes，
+ * 可通过-Diockids.processor.path指定；运行main()，不一致时抛出AssertionError
+ */
+public class CompiledFactoryTest {
+
+	private static final Map<String, String> SOURCES = Map.of(
+			"Greeter", "public interface Greeter {}",
+			"Config", """
+					@javax.inject.Singleton
+					public class Config {
+						public static int created;
+						public Config() { created++; }
+					}""",
+			"English", """
+					@javax.inject.Singleton
+					@javax.inject.Named("en")
+					public class English implements Greeter {
+						@javax.inject.Inject Config config;
+					}""",
+			"Session", "public class Session {}",
+			"Client", """
+					public class Client {
+						public final javax.inject.Provider<Greeter> greeter;
+						@javax.inject.Inject public iockids.Lazy<Config> config;
+						@javax.inject.Inject @iockids.ThreadScoped public Session session;
+						@javax.inject.Inject
+						public Client(@javax.inject.Named("en") javax.inject.Provider<Greeter> greeter) { this.greeter = greeter; }
+					}""",
+			"Slow", """
+					@javax.inject.Singleton
+					public class Slow {
+						@javax.inject.Inject Config config;
+						public Slow() throws InterruptedException { Thread.sleep(1); }
+					}""");
+
+	public static void main(String[] args) throws Exception {
+		var dir = Files.createTempDirectory("iockids-compiled");
+		try {
+			run(compile(dir));
+		} finally {
+			try (var files = Files.walk(dir)) {
+				files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+			}
+		}
+		System.out.println("CompiledFactoryTest passed");
+	}
+
+	private static void run(ClassLoader loader) throws Exception {
+		var client = loader.loadClass("compiled.Client");
+		var config = loader.loadClass("compiled.Config");
+		var english = loader.loadClass("compiled.English");
+		var slow = loader.loadClass("compiled.Slow");
+		check(loader.getResource("compiled/Client$$IocFactory.class") != null
+				&& loader.getResource("compiled/Slow$$IocFactory.class") == null,
+				"factories are generated, except for constructors throwing checked exceptions");
+
+		var injector = new Injector(false).useBackend(InjectBackend.GENERATED);
+		injector.bindScope(ThreadScoped.class, new ThreadScope());
+		injector.registryInit(loader);
+		// 重复注册同一个类（如scanInit()之后再registryInit()）是无害的，注册不同的类仍然报错
+		injector.registryInit(loader);
+		try {
+			injector.registerQualifiedClass(loader.loadClass("compiled.Greeter"), Qualifiers.named("en"), client);
+			check(false, "duplicated qualifier is rejected");
+		} catch (InjectException e) {
+			check(true, "duplicated qualifier is rejected");
+		}
+		for (var type : List.of(client, config, english)) {
+			var reflected = new Injector(false).planOf(type);
+			check(injector.planOf(type).isCompiled() && !reflected.isCompiled()
+					&& describe(reflected).equals(describe(injector.planOf(type))),
+					"compiled plan of " + type.getSimpleName() + " is the same as the reflected one");
+		}
+		check(!injector.planOf(slow).isCompiled(), "plan of Slow is resolved by reflection");
+		check(injector.createChild().planOf(client).isCompiled(), "child injectors use the compiled plan");
+
+		injector.eagerInit();
+		var created = config.getField("created");
+		check(created.getInt(null) == 1, "eagerInit() creates singletons of the registry");
+		check(injector.getInstance(slow) == injector.getInstance(slow), "singletons without a factory are created by reflection");
+		var instance = injector.getInstance(client);
+		var greeter = (javax.inject.Provider<?>) client.getField("greeter").get(instance);
+		var lazy = (Lazy<?>) client.getField("config").get(instance);
+		var session = client.getField("session");
+		check(greeter.get() == injector.getInstance(english), "Provider<T> parameter is resolved");
+		check(lazy.get() == injector.getInstance(config), "Lazy<T> field is resolved");
+		check(session.get(instance) == session.get(injector.getInstance(client)), "scope of the field is kept");
+		check(session.get(instance) != injector.getInstance(loader.loadClass("compiled.Session")),
+				"unscoped instances are not shared");
+		check(created.getInt(null) == 1, "singletons are created once");
+	}
+
+	/**
+	 * compile the fixtures in package compiled with InjectProcessor
+	 * @return the class loader of the compiled classes and the generated registry
+	 */
+	private static ClassLoader compile(Path dir) throws IOException {
+		var compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			throw new AssertionError("a JDK is needed to run the processor");
+		}
+		var processor = Path.of(System.getProperty("iockids.processor.path", "iockids-processor/target/classes"));
+		if (!Files.isDirectory(processor.resolve("iockids/processor"))) {
+			throw new AssertionError("iockids-processor is not built at " + processor.toAbsolutePath());
+		}
+		var source = Files.createDirectories(dir.resolve("src/compiled"));
+		var output = Files.createDirectories(dir.resolve("classes"));
+		List<String> options = new ArrayList<>(List.of("-d", output.toString(), "-cp", System.getProperty("java.class.path"),
+				"-processorpath", processor.toString(), "-processor", "iockids.processor.InjectProcessor"));
+		for (var entry : SOURCES.entrySet()) {
+			var file = source.resolve(entry.getKey() + ".java");
+			Files.writeString(file, "package compiled;\n" + entry.getValue() + "\n");
+			options.add(file.toString());
+		}
+		if (compiler.run(null, null, null, options.toArray(new String[0])) != 0) {
+			throw new AssertionError("failed to compile the fixtures with the processor");
+		}
+		return new URLClassLoader(new URL[] {output.toUri().toURL()}, CompiledFactoryTest.class.getClassLoader());
+	}
+
+	private static String describe(InjectionPlan<?> plan) {
+		var text = new StringBuilder().append(plan.singleton).append(' ').append(plan.scope).append(' ')
+				.append(Arrays.toString(plan.parameterTypes)).append(Arrays.toString(plan.parameterProvided))
+				.append(Arrays.deepToString(plan.parameterKeys));
+		for (var field : plan.fields) {
+			text.append(" | ").append(field.name).append(' ').append(field.type).append(' ').append(field.provided)
+					.append(' ').append(field.scope).append(' ').append(field.singleton).append(Arrays.toString(field.keys));
+		}
+		return text.toString();
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+		System.out.println("ok: " + message);
+	}
+
+}
@@ -0,0 +1,116 @@
+package iockids;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Injector.validate()通过校验后的依赖图，注册新的绑定后失效:
+ * 1. 节点为需要创建的类，边为构造器参数和成员变量解析到的类（已有对象的依赖和Provider<T>、Lazy<T>不是边）
+ * 2. order为依赖在前的解析顺序：Tarjan算法按逆拓扑序输出强连通分量，同一分量内（成员变量的循环依赖）顺序任意
+ * eagerInit()直接使用图中的边，不再遍历注入计划
+ */
+final class DependencyGraph {
+
+	/**
+	 * the classes to be created, every class after the classes it depends on
+	 */
+	final List<Class<?>> order;
+
+	/**
+	 * class -> the classes created for its constructor parameters and fields
+	 */
+	private final Map<Class<?>, List<Class<?>>> targets;
+
+	DependencyGraph(List<Class<?>> order, Map<Class<?>, List<Class<?>>> targets) {
+		this.order = Collections.unmodifiableList(order);
+		this.targets = targets;
+	}
+
+	/**
+	 * @param clazz a class
+	 * @return the classes created for its constructor parameters and fields, null if clazz is not in the graph
+	 */
+	List<Class<?>> targets(Class<?> clazz) {
+		return targets.get(clazz);
+	}
+
+	/**
+	 * Tarjan's strongly connected components, iterative so that deep graphs do not overflow the stack
+	 * @param nodes all nodes
+	 * @param edges node -> its successors, all of which are nodes
+	 * @return the components, every component after the components it reaches
+	 */
+	static List<List<Class<?>>> components(List<Class<?>> nodes, Map<Class<?>, List<Class<?>>> edges) {
+		var n = nodes.size();
+		Map<Class<?>, Integer> ids = new HashMap<>(n * 2);
+		for (int i = 0; i < n; i++) {
+			ids.put(nodes.get(i), i);
+		}
+		var successors = new int[n][];
+		for (int i = 0; i < n; i++) {
+			var list = edges.getOrDefault(nodes.get(i), Collections.emptyList());
+			successors[i] = new int[list.size()];
+			for (int j = 0; j < list.size(); j++) {
+				successors[i][j] = ids.get(list.get(j));
+			}
+		}
+		var index = new int[n];
+		var low = new int[n];
+		var onStack = new boolean[n];
+		var stack = new int[n];
+		var sp = 0;
+		// 显式的调用栈：节点及其下一条待访问的边
+		var frames = new int[n];
+		var next = new int[n];
+		var fp = 0;
+		var counter = 0;
+		Arrays.fill(index, -1);
+		List<List<Class<?>>> components = new ArrayList<>();
+		for (int start = 0; start < n; start++) {
+			if (index[start] != -1) {
+				continue;
+			}
+			index[start] = low[start] = counter++;
+			stack[sp++] = start;
+			onStack[start] = true;
+			frames[fp++] = start;
+			next[start] = 0;
+			while (fp > 0) {
+				var v = frames[fp - 1];
+				if (next[v] < successors[v].length) {
+					var w = successors[v][next[v]++];
+					if (index[w] == -1) {
+						index[w] = low[w] = counter++;
+						stack[sp++] = w;
+						onStack[w] = true;
+						frames[fp++] = w;
+						next[w] = 0;
+					} else if (onStack[w]) {
+						low[v] = Math.min(low[v], index[w]);
+					}
+					continue;
+				}
+				fp--;
+				if (low[v] == index[v]) {
+					List<Class<?>> component = new ArrayList<>();
+					int w;
+					do {
+						w = stack[--sp];
+						onStack[w] = false;
+						component.add(nodes.get(w));
+					} while (w != v);
+					components.add(component);
+				}
+				if (fp > 0) {
+					var u = frames[fp - 1];
+					low[u] = Math.min(low[u], low[v]);
+				}
+			}
+		}
+		return components;
+	}
+}
@@ -0,0 +1,104 @@
+package iockids;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 检查eagerInit()按依赖关系的拓扑序创建单例和分类单例，互不依赖的单例并行创建
+ * 运行main()，不一致时抛出AssertionError
+ */
+public class EagerInitTest {
+
+	static final List<String> created = new CopyOnWriteArrayList<>();
+
+	static final AtomicInteger running = new AtomicInteger();
+
+	static final AtomicInteger maxRunning = new AtomicInteger();
+
+	static void slowly(String name) throws InterruptedException {
+		maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+		Thread.sleep(200);
+		running.decrementAndGet();
+		created.add(name);
+	}
+
+	interface Store {
+	}
+
+	@Singleton
+	static class SlowA {
+
+		SlowA() throws InterruptedException {
+			slowly("SlowA");
+		}
+	}
+
+	@Singleton
+	static class SlowB {
+
+		SlowB() throws InterruptedException {
+			slowly("SlowB");
+		}
+	}
+
+	static class Middle {
+
+		@Inject
+		Middle(SlowA a) {
+		}
+	}
+
+	@Singleton
+	static class Top {
+
+		@Inject
+		SlowB b;
+
+		@Inject
+		Top(Middle middle) {
+			created.add("Top");
+		}
+	}
+
+	@Named("disk")
+	static class DiskStore implements Store {
+
+		@Inject
+		DiskStore(Top top) {
+			created.add("DiskStore");
+		}
+	}
+
+	public static void main(String[] args) {
+		var injector = new Injector(false);
+		injector.registerSingletonClass(Top.class).registerQualifiedClass(Store.class, DiskStore.class);
+		var executor = Executors.newFixedThreadPool(4);
+		injector.eagerInit(executor);
+		executor.shutdown();
+
+		check(created.size() == 4, "all singletons and qualified objects are created " + created);
+		check(created.indexOf("Top") > created.indexOf("SlowA") && created.indexOf("Top") > created.indexOf("SlowB"),
+				"dependencies are created first");
+		check(created.get(3).equals("DiskStore"), "qualified objects are created after their dependencies");
+		check(maxRunning.get() == 2, "independent singletons are created in parallel");
+
+		created.clear();
+		injector.getInstance(Top.class);
+		injector.getProvider(Store.class, Qualifiers.named("disk")).get();
+		check(created.isEmpty(), "getInstance() after eagerInit() creates nothing");
+		System.out.println("EagerInitTest passed");
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+		System.out.println("ok: " + message);
+	}
+
+}
@@ -0,0 +1,353 @@
+package iockids;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 在运行时为一个类生成InjectFactory的隐藏类（不依赖ASM，直接写出class文件）:
+ * 1. newInstance()，依次取出参数并直接调用构造器，即 new X(dep1, dep2)
+ * 2. inject()，按成员变量的下标直接赋值，即 x.field = value
+ * 隐藏类与目标类属于同一个nest，因此可以访问其私有构造器和私有成员变量
+ * 无法生成时（如类型不可访问、类加载器不可见等）返回null，由调用方回退到反射
+ * final成员变量只能在构造器中由putfield赋值，在inject()中赋值会抛出IllegalAccessError，同样回退到反射
+ */
+final class FactoryGenerator {
+
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_FINAL = 0x0010;
+	private static final int ACC_SUPER = 0x0020;
+
+	private static final int ICONST_0 = 0x03;
+	private static final int BIPUSH = 0x10;
+	private static final int SIPUSH = 0x11;
+	private static final int ILOAD_1 = 0x1b;
+	private static final int ALOAD_0 = 0x2a;
+	private static final int ALOAD_1 = 0x2b;
+	private static final int ALOAD_2 = 0x2c;
+	private static final int ALOAD_3 = 0x2d;
+	private static final int AALOAD = 0x32;
+	private static final int DUP = 0x59;
+	private static final int TABLESWITCH = 0xaa;
+	private static final int ARETURN = 0xb0;
+	private static final int RETURN = 0xb1;
+	private static final int PUTFIELD = 0xb5;
+	private static final int INVOKEVIRTUAL = 0xb6;
+	private static final int INVOKESPECIAL = 0xb7;
+	private static final int NEW = 0xbb;
+	private static final int CHECKCAST = 0xc0;
+
+	private FactoryGenerator() {
+	}
+
+	/**
+	 *
+	 * @param plan the injection plan of the class
+	 * @return a factory defined as a hidden class, null if generation isn't possible
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> InjectFactory<T> generate(InjectionPlan<T> plan) {
+		if (!plan.constructable || plan.type.isHidden()) {
+			return null;
+		}
+		try {
+			var lookup = MethodHandles.privateLookupIn(plan.type, MethodHandles.lookup());
+			// 参数和成员变量的类型都要能被目标类访问，否则生成的checkcast会在运行时失败
+			for (var type : plan.parameterTypes) {
+				accessClass(lookup, type);
+			}
+			for (var field : plan.fields) {
+				if (Modifier.isFinal(field.field().getModifiers())) {
+					return null;
+				}
+				accessClass(lookup, field.type);
+			}
+			lookup.accessClass(InjectFactory.class);
+			var bytes = new ClassWriter(plan).toByteArray();
+			var hidden = lookup.defineHiddenClass(bytes, true, MethodHandles.Lookup.ClassOption.NESTMATE);
+			var constructor = hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class));
+			return (InjectFactory<T>) constructor.invoke();
+		} catch (VirtualMachineError e) {
+			throw e;
+		} catch (Throwable e) {
+			return null;
+		}
+	}
+
+	private static void accessClass(MethodHandles.Lookup lookup, Class<?> type) throws IllegalAccessException {
+		while (type.isArray()) {
+			type = type.getComponentType();
+		}
+		if (!type.isPrimitive()) {
+			lookup.accessClass(type);
+		}
+	}
+
+	/**
+	 * 只写出工厂所需的最小class文件：常量池、构造器、newInstance()和inject()
+	 */
+	private static final class ClassWriter {
+
+		private final InjectionPlan<?> plan;
+
+		private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+
+		private final DataOutputStream pool = new DataOutputStream(poolBytes);
+
+		private final Map<String, Integer> entries = new HashMap<>();
+
+		private int poolCount = 1;
+
+		private final String typeName;
+
+		ClassWriter(InjectionPlan<?> plan) {
+			this.plan = plan;
+			this.typeName = internalName(plan.type);
+		}
+
+		byte[] toByteArray() throws IOException {
+			int thisClass = classRef(typeName + "$$IocFactory");
+			int superClass = classRef("java/lang/Object");
+			int factoryInterface = classRef(internalName(InjectFactory.class));
+			byte[] init = initMethod(superClass);
+			byte[] newInstance = newInstanceMethod();
+			byte[] inject = injectMethod();
+
+			var bytes = new ByteArrayOutputStream();
+			var out = new DataOutputStream(bytes);
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(52);
+			out.writeShort(poolCount);
+			out.write(poolBytes.toByteArray());
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(1);
+			out.writeShort(factoryInterface);
+			out.writeShort(0);
+			out.writeShort(3);
+			out.write(init);
+			out.write(newInstance);
+			out.write(inject);
+			out.writeShort(0);
+			return bytes.toByteArray();
+		}
+
+		private byte[] initMethod(int superClass) throws IOException {
+			var body = new ByteArrayOutputStream();
+			var code = new DataOutputStream(body);
+			code.writeByte(ALOAD_0);
+			code.writeByte(INVOKESPECIAL);
+			code.writeShort(memberRef(10, superClass, "<init>", "()V"));
+			code.writeByte(RETURN);
+			return method("<init>", "()V", 1, 1, body.toByteArray(), null);
+		}
+
+		private byte[] newInstanceMethod() throws IOException {
+			var body = new ByteArrayOutputStream();
+			var code = new DataOutputStream(body);
+			var types = plan.parameterTypes;
+			int slots = 0;
+			var descriptor = new StringBuilder("(");
+			code.writeByte(NEW);
+			code.writeShort(classRef(typeName));
+			code.writeByte(DUP);
+			for (int i = 0; i < types.length; i++) {
+				code.writeByte(ALOAD_1);
+				pushInt(code, i);
+				code.writeByte(AALOAD);
+				cast(code, types[i]);
+				slots += types[i] == long.class || types[i] == double.class ? 2 : 1;
+				descriptor.append(types[i].descriptorString());
+			}
+			descriptor.append(")V");
+			code.writeByte(INVOKESPECIAL);
+			code.writeShort(memberRef(10, classRef(typeName), "<init>", descriptor.toString()));
+			code.writeByte(ARETURN);
+			return method("newInstance", "([Ljava/lang/Object;)Ljava/lang/Object;", 4 + slots, 2, body.toByteArray(), null);
+		}
+
+		private byte[] injectMethod() throws IOException {
+			var body = new ByteArrayOutputStream();
+			var code = new DataOutputStream(body);
+			var fields = plan.fields;
+			if (fields.length == 0) {
+				code.writeByte(RETURN);
+				return method("inject", "(ILjava/lang/Object;Ljava/lang/Object;)V", 0, 4, body.toByteArray(), null);
+			}
+			// tableswitch: 按下标跳转到各成员变量的赋值代码，其余下标直接返回
+			code.writeByte(ILOAD_1);
+			int switchAt = body.size();
+			code.writeByte(TABLESWITCH);
+			while (body.size() % 4 != 0) {
+				code.writeByte(0);
+			}
+			int tableAt = body.size();
+			for (int i = 0; i < 3 + fields.length; i++) {
+				code.writeInt(0);
+			}
+			int[] targets = new int[fields.length + 1];
+			for (int i = 0; i < fields.length; i++) {
+				targets[i] = body.size();
+				var field = fields[i];
+				code.writeByte(ALOAD_2);
+				code.writeByte(CHECKCAST);
+				code.writeShort(classRef(typeName));
+				code.writeByte(ALOAD_3);
+				cast(code, field.type);
+				code.writeByte(PUTFIELD);
+				code.writeShort(memberRef(9, classRef(typeName), field.name, field.type.descriptorString()));
+				code.writeByte(RETURN);
+			}
+			targets[fields.length] = body.size();
+			code.writeByte(RETURN);
+
+			byte[] bytes = body.toByteArray();
+			writeInt(bytes, tableAt, targets[fields.length] - switchAt);
+			writeInt(bytes, tableAt + 4, 0);
+			writeInt(bytes, tableAt + 8, fields.length - 1);
+			for (int i = 0; i < fields.length; i++) {
+				writeInt(bytes, tableAt + 12 + 4 * i, targets[i] - switchAt);
+			}
+
+			// 每个跳转目标处的局部变量都与方法入口相同且操作数栈为空，全部是same_frame
+			var frames = new ByteArrayOutputStream();
+			var frame = new DataOutputStream(frames);
+			frame.writeShort(targets.length);
+			int previous = -1;
+			for (int target : targets) {
+				int delta = target - previous - 1;
+				if (delta <= 63) {
+					frame.writeByte(delta);
+				} else {
+					frame.writeByte(251);
+					frame.writeShort(delta);
+				}
+				previous = target;
+			}
+			return method("inject", "(ILjava/lang/Object;Ljava/lang/Object;)V", 3, 4, bytes, frames.toByteArray());
+		}
+
+		private byte[] method(String name, String descriptor, int maxStack, int maxLocals, byte[] code, byte[] frames)
+				throws IOException {
+			var bytes = new ByteArrayOutputStream();
+			var out = new DataOutputStream(bytes);
+			out.writeShort(ACC_PUBLIC);
+			out.writeShort(utf8(name));
+			out.writeShort(utf8(descriptor));
+			out.writeShort(1);
+			out.writeShort(utf8("Code"));
+			int frameLength = frames == null ? 0 : 6 + frames.length;
+			out.writeInt(12 + code.length + frameLength);
+			out.writeShort(maxStack);
+			out.writeShort(maxLocals);
+			out.writeInt(code.length);
+			out.write(code);
+			out.writeShort(0);
+			if (frames == null) {
+				out.writeShort(0);
+			} else {
+				out.writeShort(1);
+				out.writeShort(utf8("StackMapTable"));
+				out.writeInt(frames.length);
+				out.write(frames);
+			}
+			return bytes.toByteArray();
+		}
+
+		/**
+		 * 将栈顶的Object转换为目标类型，基本类型先转换为包装类型再拆箱
+		 */
+		private void cast(DataOutputStream code, Class<?> type) throws IOException {
+			if (type == Object.class) {
+				return;
+			}
+			if (!type.isPrimitive()) {
+				code.writeByte(CHECKCAST);
+				code.writeShort(classRef(type.isArray() ? type.descriptorString() : internalName(type)));
+				return;
+			}
+			var box = MethodType.methodType(type).wrap().returnType();
+			code.writeByte(CHECKCAST);
+			code.writeShort(classRef(internalName(box)));
+			code.writeByte(INVOKEVIRTUAL);
+			code.writeShort(memberRef(10, classRef(internalName(box)), type.getName() + "Value", "()" + type.descriptorString()));
+		}
+
+		private void pushInt(DataOutputStream code, int value) throws IOException {
+			if (value <= 5) {
+				code.writeByte(ICONST_0 + value);
+			} else if (value <= Byte.MAX_VALUE) {
+				code.writeByte(BIPUSH);
+				code.writeByte(value);
+			} else {
+				code.writeByte(SIPUSH);
+				code.writeShort(value);
+			}
+		}
+
+		private int utf8(String value) throws IOException {
+			var index = entries.get("U" + value);
+			if (index == null) {
+				pool.writeByte(1);
+				pool.writeUTF(value);
+				index = poolCount++;
+				entries.put("U" + value, index);
+			}
+			return index;
+		}
+
+		private int classRef(String name) throws IOException {
+			var index = entries.get("C" + name);
+			if (index == null) {
+				int nameIndex = utf8(name);
+				pool.writeByte(7);
+				pool.writeShort(nameIndex);
+				index = poolCount++;
+				entries.put("C" + name, index);
+			}
+			return index;
+		}
+
+		/**
+		 * @param tag 9 for CONSTANT_Fieldref, 10 for CONSTANT_Methodref
+		 */
+		private int memberRef(int tag, int owner, String name, String descriptor) throws IOException {
+			var key = "M" + tag + "#" + owner + "#" + name + "#" + descriptor;
+			var index = entries.get(key);
+			if (index == null) {
+				int nameIndex = utf8(name);
+				int descriptorIndex = utf8(descriptor);
+				pool.writeByte(12);
+				pool.writeShort(nameIndex);
+				pool.writeShort(descriptorIndex);
+				int nameAndType = poolCount++;
+				pool.writeByte(tag);
+				pool.writeShort(owner);
+				pool.writeShort(nameAndType);
+				index = poolCount++;
+				entries.put(key, index);
+			}
+			return index;
+		}
+
+		private static String internalName(Class<?> type) {
+			return type.getName().replace('.', '/');
+		}
+
+		private static void writeInt(byte[] bytes, int at, int value) {
+			bytes[at] = (byte) (value >>> 24);
+			bytes[at + 1] = (byte) (value >>> 16);
+			bytes[at + 2] = (byte) (value >>> 8);
+			bytes[at + 3] = (byte) value;
+		}
+
+	}
+
+}
@@ -0,0 +1,66 @@
+package iockids;
+
+import javax.inject.Inject;
+
+/**
+ * 检查三种InjectBackend创建对象和注入成员变量的结果一致，以及带final成员变量的类不生成工厂
+ * 运行main()，不一致时抛出AssertionError
+ */
+public class FactoryGeneratorTest {
+
+	static class Engine {
+	}
+
+	static class Car {
+
+		final Engine engine;
+
+		@Inject
+		Engine spare;
+
+		@Inject
+		private Engine hidden;
+
+		@Inject
+		Car(Engine engine) {
+			this.engine = engine;
+		}
+	}
+
+	static class Sealed {
+
+		@Inject
+		final Engine engine = null;
+
+		@Inject
+		Engine spare;
+	}
+
+	public static void main(String[] args) {
+		check(FactoryGenerator.generate(InjectionPlan.of(Car.class)) != null, "factory generated for Car");
+		check(FactoryGenerator.generate(InjectionPlan.of(Sealed.class)) == null, "no factory for final fields");
+
+		for (var backend : InjectBackend.values()) {
+			var injector = new Injector(false).useBackend(backend);
+			var car = injector.getInstance(Car.class);
+			check(car.engine != null && car.spare != null && car.hidden != null, backend + " creates Car");
+			check(car.engine != car.spare, backend + " creates a new Engine for each injection point");
+
+			var sealed = injector.getInstance(Sealed.class);
+			check(sealed.engine != null && sealed.spare != null, backend + " injects final fields");
+
+			var existing = new Sealed();
+			injector.injectMembers(existing);
+			check(existing.engine != null && existing.spare != null, backend + " injects members of final fields");
+		}
+		System.out.println("FactoryGeneratorTest passed");
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+		System.out.println("ok: " + message);
+	}
+
+}
@@ -0,0 +1,116 @@
+package iockids;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 检查freeze()之后的查找结果与冻结前一致、冻结前的表被清空、拒绝注册新的绑定，以及与getInstance()并发冻结时单例仍只有一个
+ * 运行main()，不一致时抛出AssertionError
+ */
+public class FreezeTest {
+
+	interface Store {
+	}
+
+	@Singleton
+	static class Config {
+	}
+
+	@Named("disk")
+	static class DiskStore implements Store {
+
+		@Inject
+		Config config;
+	}
+
+	static class Client {
+
+		@Inject
+		@Named("disk")
+		Store store;
+
+		@Inject
+		Config config;
+	}
+
+	@Singleton
+	static class Late {
+	}
+
+	// 没有@Singleton注解，只通过registerSingletonClass()注册为单例
+	static class Registered {
+	}
+
+	public static void main(String[] args) throws Exception {
+		var injector = new Injector(false).registerQualifiedClass(Store.class, DiskStore.class);
+		var before = injector.getInstance(Client.class);
+		injector.freeze();
+		var after = injector.getInstance(Client.class);
+		check(after.config == before.config, "singletons created before freeze() are kept");
+		check(after.store == before.store && after.store instanceof DiskStore, "qualified objects created before freeze() are kept");
+		check(injector.getInstance(Late.class) == injector.getInstance(Late.class), "singletons are created once after freeze()");
+		for (var name : new String[] {"singletonInstances", "qualifiedInstances", "singletonClasses", "qualifiedClasses"}) {
+			var field = Injector.class.getDeclaredField(name);
+			field.setAccessible(true);
+			check(((Map<?, ?>) field.get(injector)).isEmpty(), name + " is released after freeze()");
+		}
+		try {
+			injector.registerSingletonClass(Late.class);
+			check(false, "registering after freeze() is rejected");
+		} catch (InjectException e) {
+			check(true, "registering after freeze() is rejected");
+		}
+
+		// 多个线程第一次获取单例的同时冻结
+		for (int round = 0; round < 200; round++) {
+			var racing = new Injector(false).useIterativeResolver(round % 2 == 1).registerSingletonClass(Registered.class);
+			var threads = new Thread[4];
+			var barrier = new CyclicBarrier(threads.length + 1);
+			var seen = new Object[threads.length];
+			var registered = new Object[threads.length];
+			var error = new AtomicReference<Throwable>();
+			for (int i = 0; i < threads.length; i++) {
+				var index = i;
+				threads[i] = new Thread(() -> {
+					try {
+						barrier.await();
+						seen[index] = racing.getInstance(Late.class);
+						registered[index] = racing.getInstance(Registered.class);
+					} catch (Throwable e) {
+						error.set(e);
+					}
+				});
+				threads[i].start();
+			}
+			barrier.await();
+			racing.freeze();
+			for (var thread : threads) {
+				thread.join();
+			}
+			if (error.get() != null) {
+				throw new AssertionError("getInstance() failed while freezing", error.get());
+			}
+			var singleton = racing.getInstance(Late.class);
+			var registeredSingleton = racing.getInstance(Registered.class);
+			for (int i = 0; i < threads.length; i++) {
+				if (seen[i] != singleton || registered[i] != registeredSingleton) {
+					throw new AssertionError("two singletons created while freezing in round " + round);
+				}
+			}
+		}
+		check(true, "freezing concurrently with getInstance() keeps one singleton");
+		System.out.println("FreezeTest passed");
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+		System.out.println("ok: " + message);
+	}
+
+}
@@ -0,0 +1,301 @@
+package iockids;
+
+import javax.inject.Named;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Modifier;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 注入图的快照（二进制文件），之后的进程可从快照启动，无需扫描classpath，也无需反射解析注入计划:
+ * 1. classpath的指纹和扫描的包名，与当前不一致时快照作废，重新扫描
+ * 2. 扫描到的带有@Singleton或限定器的类
+ * 3. 从这些类可达的类的注入计划：构造器参数的类型和限定器，带@Inject的成员变量的名称、类型和限定器，Provider<T>的T，作用域注解
+ *    以及未保存注入计划的类（见下），读取快照时一并返回
+ * 4. 读取成功后注入计划只注册到调用snapshotInit()的Injector（及其子injector），不影响同一JVM中的其他Injector
+ * 限定器须能直接构造（无需反射读取）：@Named按名称保存，没有成员的限定器按类型保存；
+ * 带有其他限定器（有成员且不是@Named）的类不保存注入计划，之后仍通过反射解析，可由Injector.getSnapshotSkippedClasses()查看；
+ * 编译期生成了工厂的类也不保存，仍使用工厂中的注入计划
+ */
+final class GraphSnapshot {
+
+	private static final int MAGIC = 0x494F4347;
+
+	private static final int VERSION = 3;
+
+	private static final Map<String, Class<?>> PRIMITIVES = Map.of("boolean", boolean.class, "byte", byte.class,
+			"char", char.class, "short", short.class, "int", int.class, "long", long.class, "float", float.class,
+			"double", double.class, "void", void.class);
+
+	private GraphSnapshot() {
+	}
+
+	/**
+	 * read a snapshot, restoring the injection plans in it to an injector
+	 * @param file the snapshot file
+	 * @param fingerprint the fingerprint of the current classpath
+	 * @param packageName the name of scanning root
+	 * @param loader the class loader to load classes from
+	 * @param injector the injector the plans are restored to
+	 * @param skipped 输出参数，快照中未保存注入计划的类，读取成功时才写入
+	 * @return the scanned classes, null if the snapshot is missing, broken or taken on another classpath
+	 */
+	static List<Class<?>> read(Path file, long fingerprint, String packageName, ClassLoader loader, Injector injector,
+							   List<Class<?>> skipped) {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != fingerprint
+					|| !in.readUTF().equals(packageName)) {
+				return null;
+			}
+			var count = in.readInt();
+			List<Class<?>> classes = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				classes.add(load(in.readUTF(), loader));
+			}
+			count = in.readInt();
+			List<Class<?>> unsaved = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				unsaved.add(load(in.readUTF(), loader));
+			}
+			count = in.readInt();
+			List<InjectionPlan<?>> plans = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				plans.add(readPlan(in, loader));
+			}
+			// 整个快照读取成功后才使用其中的注入计划
+			for (var plan : plans) {
+				injector.restorePlan(plan);
+			}
+			skipped.addAll(unsaved);
+			return classes;
+		} catch (IOException | ReflectiveOperationException | LinkageError | RuntimeException e) {
+			// 版本不同、已损坏或类已不存在，重新扫描
+			return null;
+		}
+	}
+
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private static InjectionPlan<?> readPlan(DataInputStream in, ClassLoader loader)
+			throws IOException, ReflectiveOperationException {
+		Class type = load(in.readUTF(), loader);
+		var singleton = in.readBoolean();
+		var scope = (Class<? extends Annotation>) loadNullable(in.readUTF(), loader);
+		var count = in.readUnsignedShort();
+		var parameterTypes = new Class<?>[count];
+		var parameterProvided = new Class<?>[count];
+		var parameterQualifiers = new Annotation[count][];
+		for (int i = 0; i < count; i++) {
+			parameterTypes[i] = load(in.readUTF(), loader);
+			parameterProvided[i] = loadNullable(in.readUTF(), loader);
+			parameterQualifiers[i] = readQualifiers(in, loader);
+		}
+		count = in.readUnsignedShort();
+		var fieldNames = new String[count];
+		var fieldTypes = new Class<?>[count];
+		var singletonFields = new boolean[count];
+		var fieldProvided = new Class<?>[count];
+		var fieldScopes = new Class<?>[count];
+		var fieldQualifiers = new Annotation[count][];
+		for (int i = 0; i < count; i++) {
+			fieldNames[i] = in.readUTF();
+			fieldTypes[i] = load(in.readUTF(), loader);
+			singletonFields[i] = in.readBoolean();
+			fieldProvided[i] = loadNullable(in.readUTF(), loader);
+			fieldScopes[i] = loadNullable(in.readUTF(), loader);
+			fieldQualifiers[i] = readQualifiers(in, loader);
+		}
+		return new InjectionPlan(type, singleton, scope, parameterTypes, parameterQualifiers, parameterProvided,
+				fieldNames, fieldTypes, fieldQualifiers, singletonFields, fieldProvided, fieldScopes);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Annotation[] readQualifiers(DataInputStream in, ClassLoader loader)
+			throws IOException, ClassNotFoundException {
+		var qualifiers = new Annotation[in.readUnsignedShort()];
+		for (int i = 0; i < qualifiers.length; i++) {
+			var type = in.readUTF();
+			qualifiers[i] = type.equals(Named.class.getName()) ? Qualifiers.named(in.readUTF())
+					: Qualifiers.marker((Class<? extends Annotation>) load(type, loader));
+		}
+		return qualifiers;
+	}
+
+	private static Class<?> load(String name, ClassLoader loader) throws ClassNotFoundException {
+		var primitive = PRIMITIVES.get(name);
+		return primitive != null ? primitive : Class.forName(name, false, loader);
+	}
+
+	private static Class<?> loadNullable(String name, ClassLoader loader) throws ClassNotFoundException {
+		return name.isEmpty() ? null : load(name, loader);
+	}
+
+	/**
+	 * write the scanned classes and the injection plans reachable from them, replacing the file atomically
+	 * @param file the snapshot file
+	 * @param fingerprint the fingerprint of the current classpath
+	 * @param packageName the name of scanning root
+	 * @param classes the scanned classes
+	 * @param injector the injector whose plans are written
+	 * @param skipped 输出参数，未保存注入计划的类（限定器无法直接构造），即使写入文件失败也会写入
+	 */
+	static void write(Path file, long fingerprint, String packageName, List<Class<?>> classes, Injector injector,
+					  List<Class<?>> skipped) {
+		var plans = reachablePlans(classes, injector, skipped);
+		try {
+			var parent = file.toAbsolutePath().getParent();
+			Files.createDirectories(parent);
+			var temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+			try {
+				try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+					out.writeInt(MAGIC);
+					out.writeInt(VERSION);
+					out.writeLong(fingerprint);
+					out.writeUTF(packageName);
+					out.writeInt(classes.size());
+					for (var clazz : classes) {
+						out.writeUTF(clazz.getName());
+					}
+					out.writeInt(skipped.size());
+					for (var clazz : skipped) {
+						out.writeUTF(clazz.getName());
+					}
+					out.writeInt(plans.size());
+					for (var plan : plans) {
+						writePlan(out, plan);
+					}
+				}
+				try {
+					Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @param classes the scanned classes
+	 * @param injector the injector whose plans are written
+	 * @param skipped 输出参数，限定器无法直接构造而不保存注入计划的类
+	 * @return the plans to be written, walking constructor parameters and fields
+	 */
+	private static List<InjectionPlan<?>> reachablePlans(List<Class<?>> classes, Injector injector,
+														 List<Class<?>> skipped) {
+		List<InjectionPlan<?>> plans = new ArrayList<>();
+		Deque<Class<?>> queue = new ArrayDeque<>(classes);
+		Set<Class<?>> visited = new HashSet<>();
+		while (!queue.isEmpty()) {
+			var clazz = queue.poll();
+			// JDK中的类不保存
+			if (!visited.add(clazz) || clazz.isInterface() || clazz.isPrimitive() || clazz.isArray()
+					|| Modifier.isAbstract(clazz.getModifiers()) || clazz.getClassLoader() == null) {
+				continue;
+			}
+			InjectionPlan<?> plan;
+			try {
+				plan = injector.planOf(clazz);
+			} catch (LinkageError | RuntimeException e) {
+				continue;
+			}
+			if (!plan.constructable) {
+				continue;
+			}
+			if (!plan.isCompiled()) {
+				if (hasSupportedQualifiers(plan)) {
+					plans.add(plan);
+				} else {
+					skipped.add(clazz);
+				}
+			}
+			for (int i = 0; i < plan.parameterTypes.length; i++) {
+				queue.add(plan.parameterProvided[i] != null ? plan.parameterProvided[i] : plan.parameterTypes[i]);
+			}
+			for (var field : plan.fields) {
+				queue.add(field.provided != null ? field.provided : field.type);
+			}
+		}
+		return plans;
+	}
+
+	/**
+	 * @param plan an injection plan
+	 * @return whether all qualifiers of the plan can be constructed directly
+	 */
+	private static boolean hasSupportedQualifiers(InjectionPlan<?> plan) {
+		for (var qualifiers : plan.parameterQualifiers) {
+			for (var qualifier : qualifiers) {
+				if (!isSupported(qualifier)) {
+					return false;
+				}
+			}
+		}
+		for (var field : plan.fields) {
+			for (var qualifier : field.qualifiers) {
+				if (!isSupported(qualifier)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static boolean isSupported(Annotation qualifier) {
+		return qualifier instanceof Named || qualifier.annotationType().getDeclaredMethods().length == 0;
+	}
+
+	private static void writePlan(DataOutputStream out, InjectionPlan<?> plan) throws IOException {
+		out.writeUTF(plan.type.getName());
+		out.writeBoolean(plan.singleton);
+		out.writeUTF(nameOf(plan.scope));
+		out.writeShort(plan.parameterTypes.length);
+		for (int i = 0; i < plan.parameterTypes.length; i++) {
+			out.writeUTF(plan.parameterTypes[i].getName());
+			out.writeUTF(nameOf(plan.parameterProvided[i]));
+			writeQualifiers(out, plan.parameterQualifiers[i]);
+		}
+		out.writeShort(plan.fields.length);
+		for (var field : plan.fields) {
+			out.writeUTF(field.name);
+			out.writeUTF(field.type.getName());
+			out.writeBoolean(field.singleton);
+			out.writeUTF(nameOf(field.provided));
+			out.writeUTF(nameOf(field.scope));
+			writeQualifiers(out, field.qualifiers);
+		}
+	}
+
+	private static void writeQualifiers(DataOutputStream out, Annotation[] qualifiers) throws IOException {
+		out.writeShort(qualifiers.length);
+		for (var qualifier : qualifiers) {
+			out.writeUTF(qualifier.annotationType().getName());
+			if (qualifier instanceof Named) {
+				out.writeUTF(((Named) qualifier).value());
+			}
+		}
+	}
+
+	private static String nameOf(Class<?> clazz) {
+		return clazz == null ? "" : clazz.getName();
+	}
+}
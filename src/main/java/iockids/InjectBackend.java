@@ -0,0 +1,175 @@
+package iockids;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Modifier;
+
+/**
+ * 创建对象和注入成员变量的方式，每个Injector可单独选择:
+ * 1. REFLECTION，通过Constructor.newInstance和Field.get/set（默认）
+ * 2. METHOD_HANDLE，构造器和成员变量各自只绑定一次为MethodHandle/VarHandle，之后的调用可被JIT内联
+ * 3. GENERATED，为每个类生成一个隐藏类工厂，直接调用构造器和直接赋值成员变量，无法生成时回退到REFLECTION
+ */
+public enum InjectBackend {
+
+	REFLECTION {
+		@Override
+		<T> Instantiator<T> bind(InjectionPlan<T> plan) {
+			return plan.constructor()::newInstance;
+		}
+
+		@Override
+		FieldAccessor bind(InjectionPlan<?> plan, int index) {
+			var field = plan.fields[index].field();
+			return new FieldAccessor() {
+				@Override
+				public Object get(Object instance) throws Throwable {
+					return field.get(instance);
+				}
+
+				@Override
+				public void set(Object instance, Object value) throws Throwable {
+					field.set(instance, value);
+				}
+			};
+		}
+	},
+
+	METHOD_HANDLE {
+		@Override
+		<T> Instantiator<T> bind(InjectionPlan<T> plan) {
+			var constructor = plan.constructor();
+			try {
+				// 构造器已通过trySetAccessible，此处不再做访问检查
+				var handle = MethodHandles.lookup().unreflectConstructor(constructor)
+						.asSpreader(Object[].class, constructor.getParameterCount())
+						.asType(MethodType.methodType(Object.class, Object[].class));
+				return new HandleInstantiator<>(handle);
+			} catch (IllegalAccessException e) {
+				throw new InjectException("bind constructor error " + constructor, e);
+			}
+		}
+
+		@Override
+		FieldAccessor bind(InjectionPlan<?> plan, int index) {
+			var field = plan.fields[index].field();
+			try {
+				var lookup = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup());
+				VarHandle varHandle = lookup.unreflectVarHandle(field);
+				var getter = varHandle.toMethodHandle(VarHandle.AccessMode.GET);
+				// final成员变量的VarHandle是只读的，改用已设为accessible的setter
+				var setter = Modifier.isFinal(field.getModifiers())
+						? MethodHandles.lookup().unreflectSetter(field)
+						: varHandle.toMethodHandle(VarHandle.AccessMode.SET);
+				return new HandleFieldAccessor(
+						getter.asType(MethodType.methodType(Object.class, Object.class)),
+						setter.asType(MethodType.methodType(void.class, Object.class, Object.class)));
+			} catch (IllegalAccessException e) {
+				throw new InjectException("bind field error " + field, e);
+			}
+		}
+	},
+
+	GENERATED {
+		@Override
+		<T> Instantiator<T> bind(InjectionPlan<T> plan) {
+			var factory = plan.factory();
+			if (factory == null) {
+				return REFLECTION.bind(plan);
+			}
+			return factory::newInstance;
+		}
+
+		@Override
+		FieldAccessor bind(InjectionPlan<?> plan, int index) {
+			var factory = plan.factory();
+			if (factory == null) {
+				return REFLECTION.bind(plan, index);
+			}
+			// 只有带@Singleton的成员变量需要读取，读取仍通过VarHandle
+			var getter = plan.fields[index].accessor(METHOD_HANDLE);
+			return new FieldAccessor() {
+				@Override
+				public Object get(Object instance) throws Throwable {
+					return getter.get(instance);
+				}
+
+				@Override
+				public void set(Object instance, Object value) {
+					factory.inject(index, instance, value);
+				}
+			};
+		}
+	};
+
+	/**
+	 * bind the constructor for injection once, the returned instantiator is cached in the injection plan
+	 * @param plan the injection plan of the class
+	 * @return instantiator calling the constructor
+	 */
+	abstract <T> Instantiator<T> bind(InjectionPlan<T> plan);
+
+	/**
+	 * bind a field for injection once, the returned accessor is cached in the injection plan
+	 * @param plan the injection plan of the class declaring the field
+	 * @param index index of the field in the injection plan
+	 * @return accessor reading and writing the field
+	 */
+	abstract FieldAccessor bind(InjectionPlan<?> plan, int index);
+
+	interface Instantiator<T> {
+
+		T newInstance(Object[] args) throws Throwable;
+
+	}
+
+	interface FieldAccessor {
+
+		Object get(Object instance) throws Throwable;
+
+		void set(Object instance, Object value) throws Throwable;
+
+	}
+
+	private static final class HandleInstantiator<T> implements Instantiator<T> {
+
+		private final MethodHandle handle;
+
+		HandleInstantiator(MethodHandle handle) {
+			this.handle = handle;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T newInstance(Object[] args) throws Throwable {
+			return (T) (Object) handle.invokeExact(args);
+		}
+
+	}
+
+	private static final class HandleFieldAccessor implements FieldAccessor {
+
+		private final MethodHandle getter;
+
+		private final MethodHandle setter;
+
+		HandleFieldAccessor(MethodHandle getter, MethodHandle setter) {
+			this.getter = getter;
+			this.setter = setter;
+		}
+
+		@Override
+		public Object get(Object instance) throws Throwable {
+			return (Object) getter.invokeExact(instance);
+		}
+
+		@Override
+		public void set(Object instance, Object value) throws Throwable {
+			setter.invokeExact(instance, value);
+		}
+
+	}
+
+}
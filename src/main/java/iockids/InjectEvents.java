@@ -0,0 +1,134 @@
+package iockids;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * injector的JFR事件，可用JDK Mission Control或jfr print --categories IocKids查看:
+ * 1. 未开启记录时begin()、end()和shouldCommit()都是空操作，事件对象经逃逸分析后不会分配，
+ *    只在shouldCommit()为true时才计算类名、限定器等字段
+ * 2. depth为嵌套深度：getInstance()请求的对象为1，其依赖为2，依此类推；对已有对象调用injectMembers()为0
+ */
+final class InjectEvents {
+
+	private InjectEvents() {
+	}
+
+	@Name("iockids.ScanInit")
+	@Label("Scan Init")
+	@Description("Scanning the classpath for singleton and qualified classes")
+	@Category({"IocKids", "Scanning"})
+	static final class ScanInit extends Event {
+
+		@Label("Package")
+		String packageName;
+
+		@Label("Classes")
+		int classes;
+
+		@Label("From Snapshot")
+		@Description("Whether the classes are restored from a graph snapshot")
+		boolean snapshot;
+	}
+
+	@Name("iockids.Create")
+	@Label("Create")
+	@Description("Resolving an object which is not a created singleton, with its dependencies")
+	@Category({"IocKids", "Injection"})
+	static final class Create extends Event {
+
+		@Label("Type")
+		Class<?> type;
+
+		@Label("Qualifier")
+		String qualifier;
+
+		@Label("Depth")
+		int depth;
+	}
+
+	@Name("iockids.Construct")
+	@Label("Construct")
+	@Description("Resolving the constructor parameters and calling the constructor")
+	@Category({"IocKids", "Injection"})
+	static final class Construct extends Event {
+
+		@Label("Type")
+		Class<?> type;
+
+		@Label("Qualifier")
+		String qualifier;
+
+		@Label("Depth")
+		int depth;
+
+		@Label("Parameters")
+		int parameters;
+	}
+
+	@Name("iockids.InjectMembers")
+	@Label("Inject Members")
+	@Description("Injecting the fields of an instance")
+	@Category({"IocKids", "Injection"})
+	static final class InjectMembers extends Event {
+
+		@Label("Type")
+		Class<?> type;
+
+		@Label("Qualifier")
+		String qualifier;
+
+		@Label("Depth")
+		int depth;
+
+		@Label("Fields")
+		int fields;
+	}
+
+	@Name("iockids.SingletonCache")
+	@Label("Singleton Cache")
+	@Description("Looking up a singleton, a miss means it is created")
+	@Category({"IocKids", "Injection"})
+	static final class SingletonCache extends Event {
+
+		@Label("Type")
+		Class<?> type;
+
+		@Label("Qualifier")
+		String qualifier;
+
+		@Label("Depth")
+		int depth;
+
+		@Label("Hit")
+		boolean hit;
+	}
+
+	/**
+	 * @param type the singleton class looked up
+	 * @param key the qualified key the singleton is looked up for, null if unqualified
+	 * @param depth the nesting depth of the lookup
+	 * @param hit whether the singleton is already created
+	 */
+	static void singletonLookup(Class<?> type, Key key, int depth, boolean hit) {
+		var event = new SingletonCache();
+		if (event.shouldCommit()) {
+			event.type = type;
+			event.qualifier = qualifierOf(key);
+			event.depth = depth;
+			event.hit = hit;
+			event.commit();
+		}
+	}
+
+	/**
+	 * @param key a key or null
+	 * @return the qualifier of the key, null if none
+	 */
+	static String qualifierOf(Key key) {
+		return key == null || key.qualifier == null ? null : key.qualifier.toString();
+	}
+}
@@ -0,0 +1,83 @@
+package iockids;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import java.nio.file.Files;
+
+/**
+ * 检查单例查找的JFR事件（iockids.SingletonCache）记录了查找的类型和限定器:
+ * 通过限定器查找的单例带有限定器，直接按类查找的单例没有限定器
+ * 递归和迭代两种解析方式各运行一次，运行main()，不一致时抛出AssertionError
+ */
+public class InjectEventsTest {
+
+	interface Greeter {
+	}
+
+	@Singleton
+	@Named("en")
+	static class English implements Greeter {
+	}
+
+	@Singleton
+	static class Config {
+	}
+
+	static class Client {
+
+		@Inject
+		@Named("en")
+		Greeter greeter;
+
+		@Inject
+		Config config;
+	}
+
+	public static void main(String[] args) throws Exception {
+		for (var iterative : new boolean[] {false, true}) {
+			var resolver = iterative ? "iterative" : "recursive";
+			var injector = new Injector(false).useIterativeResolver(iterative)
+					.registerQualifiedClass(Greeter.class, English.class);
+			var file = Files.createTempFile("iockids", ".jfr");
+			try (var recording = new Recording()) {
+				recording.enable("iockids.SingletonCache");
+				recording.start();
+				injector.getInstance(Client.class);
+				injector.getInstance(Client.class);
+				recording.stop();
+				recording.dump(file);
+
+				var qualified = false;
+				var unqualified = false;
+				for (var event : RecordingFile.readAllEvents(file)) {
+					if (!event.getEventType().getName().equals("iockids.SingletonCache")) {
+						continue;
+					}
+					var type = event.getClass("type").getName();
+					String qualifier = event.getString("qualifier");
+					if (type.equals(English.class.getName())) {
+						qualified |= qualifier != null && qualifier.contains("en");
+					} else if (type.equals(Config.class.getName())) {
+						unqualified |= qualifier == null;
+					}
+				}
+				check(qualified, resolver + ": lookups of qualified singletons record the qualifier");
+				check(unqualified, resolver + ": lookups of unqualified singletons record no qualifier");
+			} finally {
+				Files.deleteIfExists(file);
+			}
+		}
+		System.out.println("InjectEventsTest passed");
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+		System.out.println("ok: " + message);
+	}
+
+}
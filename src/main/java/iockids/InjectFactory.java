@@ -0,0 +1,24 @@
+package iockids;
+
+/**
+ * 直接调用构造器和直接赋值成员变量的工厂，每个类一个，由FactoryGenerator在运行时生成为隐藏类
+ * @param <T> the class created by this factory
+ */
+public interface InjectFactory<T> {
+
+	/**
+	 * call the constructor for injection directly
+	 * @param args arguments of the constructor, in the order of its parameters
+	 * @return new instance
+	 */
+	T newInstance(Object[] args);
+
+	/**
+	 * assign a field decorated with @Inject directly
+	 * @param index index of the field in the injection plan
+	 * @param instance an instance whose field waiting for injection
+	 * @param value the value to be assigned
+	 */
+	void inject(int index, Object instance, Object value);
+
+}
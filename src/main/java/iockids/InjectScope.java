@@ -0,0 +1,24 @@
+package iockids;
+
+import java.util.function.Supplier;
+
+/**
+ * 作用域（SPI），决定带有作用域注解的类的对象的生命周期
+ * 作用域注解须带有@javax.inject.Scope，通过Injector.bindScope()绑定到作用域，@Singleton由Injector自身处理
+ * 自带两种实现:
+ * 1. ThreadScope（@ThreadScoped，默认绑定），每个线程一个对象
+ * 2. RequestScope（@RequestScoped），在enter()和exit()之间每个线程一个对象
+ */
+public interface InjectScope {
+
+	/**
+	 * get the instance in the current scope, creating it by unscoped if there is none
+	 * @param id the binding id of the scoped class (or of the qualified key), a small non-negative int unique in the
+	 *        JVM, usable as an array index
+	 * @param type the scoped class
+	 * @param unscoped creates a new instance with its dependencies injected
+	 * @return the instance in the current scope
+	 */
+	<T> T scope(int id, Class<T> type, Supplier<? extends T> unscoped);
+
+}
@@ -0,0 +1,432 @@
+package iockids;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Qualifier;
+import javax.inject.Scope;
+import javax.inject.Singleton;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 类的注入计划（不可变），通过反射解析的计划每个类只解析一次，之后被所有Injector复用:
+ * 1. 被选中的构造器，以及构造器各参数的类型和限定器
+ * 2. 带@Inject注解的成员变量，以及其类型和限定器
+ * 3. 类型为Provider<T>或Lazy<T>的参数和成员变量所提供的类型T
+ * 4. 每个参数和成员变量的限定器对应的Key，解析时直接按Key查找，无需再比较注解
+ * 5. 类和成员变量上除@Singleton以外的作用域注解（带有@Scope）
+ * 注入计划通常通过反射解析，若该类已注册了编译期生成的工厂，则直接取自工厂，无需反射
+ * （REFLECTION、METHOD_HANDLE仍在第一次创建时查找构造器和成员变量，GENERATED直接调用工厂）；
+ * 从快照（GraphSnapshot）启动时取自快照，构造器和成员变量在第一次使用时才通过名称和类型查找；
+ * 取自工厂和快照的计划只属于注册它们的Injector及其子injector（Injector.planOf()），不影响同一JVM中的其他Injector
+ */
+final class InjectionPlan<T> {
+
+	private static final ClassValue<InjectionPlan<?>> PLANS = new ClassValue<>() {
+		@Override
+		protected InjectionPlan<?> computeValue(Class<?> type) {
+			return new InjectionPlan<>(type);
+		}
+	};
+
+	private static final Annotation[] NO_QUALIFIERS = new Annotation[0];
+
+	private static final Object NO_FACTORY = new Object();
+
+	/**
+	 * get the plan of clazz resolved by reflection, computing it at the first call
+	 * @param clazz class type of target
+	 * @return injection plan
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> InjectionPlan<T> of(Class<T> clazz) {
+		return (InjectionPlan<T>) PLANS.get(clazz);
+	}
+
+	/**
+	 * @param factory the factory generated by annotation processor
+	 * @return the plan carried by the factory, which needs no reflection
+	 */
+	static <T> InjectionPlan<T> of(CompiledFactory<T> factory) {
+		return new InjectionPlan<>(factory);
+	}
+
+	/**
+	 * @return whether the plan is carried by a compiled factory
+	 */
+	boolean isCompiled() {
+		return factory instanceof CompiledFactory;
+	}
+
+	final Class<T> type;
+
+	/**
+	 * whether the class is decorated with @Singleton
+	 */
+	final boolean singleton;
+
+	/**
+	 * the scope annotation on the class other than @Singleton, null if none
+	 */
+	final Class<? extends Annotation> scope;
+
+	/**
+	 * whether the class has exactly one constructor for injection
+	 */
+	final boolean constructable;
+
+	final Class<?>[] parameterTypes;
+
+	final Annotation[][] parameterQualifiers;
+
+	/**
+	 * the T of Provider<T> or Lazy<T> parameters, null for other parameters
+	 */
+	final Class<?>[] parameterProvided;
+
+	/**
+	 * the keys of the qualifiers of each parameter, typed with the T of Provider<T> or Lazy<T> parameters
+	 */
+	final Key[][] parameterKeys;
+
+	final InjectableField[] fields;
+
+	private final String constructorError;
+
+	/**
+	 * the constructor for injection, resolved lazily for plans from compiled factories
+	 */
+	private volatile Constructor<T> constructor;
+
+	/**
+	 * instantiators bound lazily, indexed by the ordinal of InjectBackend
+	 */
+	private final InjectBackend.Instantiator<?>[] instantiators = new InjectBackend.Instantiator<?>[InjectBackend.values().length];
+
+	/**
+	 * the compiled or generated factory, NO_FACTORY if generation isn't possible, null if not generated yet
+	 */
+	private volatile Object factory;
+
+	@SuppressWarnings("unchecked")
+	private InjectionPlan(Class<T> clazz) {
+		this.type = clazz;
+		this.singleton = clazz.isAnnotationPresent(Singleton.class);
+		this.scope = scopeOf(clazz.getAnnotations());
+
+		var cons = new ArrayList<Constructor<T>>();
+		for (var con : clazz.getDeclaredConstructors()) {
+			// 默认和无参构造器不需要"@Inject"注解
+			if (!con.isAnnotationPresent(Inject.class) && con.getParameterCount() > 0) {
+				continue;
+			}
+			if (!con.trySetAccessible()) {
+				continue;
+			}
+			cons.add((Constructor<T>) con);
+		}
+		if (cons.size() == 1) {
+			this.constructor = cons.get(0);
+			this.constructable = true;
+			this.constructorError = null;
+			Parameter[] parameters = constructor.getParameters();
+			this.parameterTypes = new Class<?>[parameters.length];
+			this.parameterQualifiers = new Annotation[parameters.length][];
+			this.parameterProvided = new Class<?>[parameters.length];
+			for (int i = 0; i < parameters.length; i++) {
+				parameterTypes[i] = parameters[i].getType();
+				parameterQualifiers[i] = qualifiersOf(parameters[i].getAnnotations());
+				parameterProvided[i] = providedOf(parameterTypes[i], parameters[i].getParameterizedType());
+			}
+			this.parameterKeys = keysOf(parameterTypes, parameterProvided, parameterQualifiers);
+		} else {
+			// 按规范不允许有超过一个构造器添加"@Inject"标签
+			this.constructable = false;
+			this.constructorError = cons.size() > 1
+					? "duplicated constructor for injection class " + clazz.getCanonicalName()
+					: "no accessible constructor for injection class " + clazz.getCanonicalName();
+			this.parameterTypes = new Class<?>[0];
+			this.parameterQualifiers = new Annotation[0][];
+			this.parameterProvided = new Class<?>[0];
+			this.parameterKeys = new Key[0][];
+		}
+
+		List<InjectableField> fields = new ArrayList<>();
+		for (Field field : clazz.getDeclaredFields()) {
+			if (field.isAnnotationPresent(Inject.class) && field.trySetAccessible()) {
+				fields.add(new InjectableField(this, fields.size(), field, field.getName(), field.getType(),
+						qualifiersOf(field.getDeclaredAnnotations()), field.isAnnotationPresent(Singleton.class),
+						providedOf(field.getType(), field.getGenericType()), scopeOf(field.getDeclaredAnnotations())));
+			}
+		}
+		this.fields = fields.toArray(new InjectableField[0]);
+	}
+
+	@SuppressWarnings("unchecked")
+	private InjectionPlan(CompiledFactory<T> compiled) {
+		this.type = compiled.type;
+		this.singleton = compiled.singleton;
+		this.scope = compiled.scope;
+		this.constructable = true;
+		this.constructorError = null;
+		this.parameterTypes = compiled.parameterTypes;
+		this.parameterQualifiers = compiled.parameterQualifiers;
+		this.parameterProvided = compiled.parameterProvided;
+		this.parameterKeys = keysOf(parameterTypes, parameterProvided, parameterQualifiers);
+		this.fields = new InjectableField[compiled.fieldNames.length];
+		for (int i = 0; i < fields.length; i++) {
+			fields[i] = new InjectableField(this, i, null, compiled.fieldNames[i], compiled.fieldTypes[i],
+					compiled.fieldQualifiers[i], compiled.singletonFields[i], compiled.fieldProvided[i],
+					(Class<? extends Annotation>) compiled.fieldScopes[i]);
+		}
+		this.factory = compiled;
+	}
+
+	/**
+	 * a plan read from a snapshot, the constructor and fields are looked up by name and type at the first use
+	 */
+	@SuppressWarnings("unchecked")
+	InjectionPlan(Class<T> type, boolean singleton, Class<? extends Annotation> scope, Class<?>[] parameterTypes,
+			Annotation[][] parameterQualifiers, Class<?>[] parameterProvided, String[] fieldNames,
+			Class<?>[] fieldTypes, Annotation[][] fieldQualifiers, boolean[] singletonFields, Class<?>[] fieldProvided,
+			Class<?>[] fieldScopes) {
+		this.type = type;
+		this.singleton = singleton;
+		this.scope = scope;
+		this.constructable = true;
+		this.constructorError = null;
+		this.parameterTypes = parameterTypes;
+		this.parameterQualifiers = parameterQualifiers;
+		this.parameterProvided = parameterProvided;
+		this.parameterKeys = keysOf(parameterTypes, parameterProvided, parameterQualifiers);
+		this.fields = new InjectableField[fieldNames.length];
+		for (int i = 0; i < fields.length; i++) {
+			fields[i] = new InjectableField(this, i, null, fieldNames[i], fieldTypes[i], fieldQualifiers[i],
+					singletonFields[i], fieldProvided[i], (Class<? extends Annotation>) fieldScopes[i]);
+		}
+	}
+
+	/**
+	 * @return the constructor for injection
+	 * @throws InjectException if there is no constructor or more than one constructor for injection
+	 */
+	Constructor<T> constructor() {
+		if (!constructable) {
+			throw new InjectException(constructorError);
+		}
+		var constructor = this.constructor;
+		if (constructor == null) {
+			try {
+				constructor = type.getDeclaredConstructor(parameterTypes);
+				constructor.setAccessible(true);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				throw new InjectException("no accessible constructor for injection class " + type.getCanonicalName(), e);
+			}
+			this.constructor = constructor;
+		}
+		return constructor;
+	}
+
+	/**
+	 * @param backend the way of calling the constructor
+	 * @return the instantiator bound to the constructor for injection
+	 */
+	@SuppressWarnings("unchecked")
+	InjectBackend.Instantiator<T> instantiator(InjectBackend backend) {
+		var instantiator = (InjectBackend.Instantiator<T>) instantiators[backend.ordinal()];
+		if (instantiator == null) {
+			// 重复绑定是无害的，绑定结果只包含final成员
+			instantiator = backend.bind(this);
+			instantiators[backend.ordinal()] = instantiator;
+		}
+		return instantiator;
+	}
+
+	/**
+	 * @return the compiled factory, or the factory generated as a hidden class, null if generation isn't possible
+	 */
+	@SuppressWarnings("unchecked")
+	InjectFactory<T> factory() {
+		var factory = this.factory;
+		if (factory == null) {
+			synchronized (this) {
+				factory = this.factory;
+				if (factory == null) {
+					factory = FactoryGenerator.generate(this);
+					if (factory == null) {
+						factory = NO_FACTORY;
+					}
+					this.factory = factory;
+				}
+			}
+		}
+		return factory == NO_FACTORY ? null : (InjectFactory<T>) factory;
+	}
+
+	private static Key[][] keysOf(Class<?>[] types, Class<?>[] provided, Annotation[][] qualifiers) {
+		var keys = new Key[types.length][];
+		for (int i = 0; i < types.length; i++) {
+			keys[i] = Key.of(provided[i] != null ? provided[i] : types[i], qualifiers[i]);
+		}
+		return keys;
+	}
+
+	/**
+	 * @param type the type of an injection point
+	 * @return whether the dependency is resolved only when get() is called
+	 */
+	static boolean isProvider(Class<?> type) {
+		return type == Provider.class || type == Lazy.class;
+	}
+
+	/**
+	 * @param type the type of an injection point
+	 * @param genericType the generic type of the injection point
+	 * @return the T of Provider<T> or Lazy<T>, null for other types or if T is unknown
+	 */
+	private static Class<?> providedOf(Class<?> type, Type genericType) {
+		if (!isProvider(type) || !(genericType instanceof ParameterizedType)) {
+			return null;
+		}
+		var argument = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+		if (argument instanceof ParameterizedType) {
+			argument = ((ParameterizedType) argument).getRawType();
+		}
+		return argument instanceof Class ? (Class<?>) argument : null;
+	}
+
+	/**
+	 * @param annotations all annotations on a class or a field
+	 * @return the type of the annotation decorated with Scope other than @Singleton, null if none
+	 */
+	private static Class<? extends Annotation> scopeOf(Annotation[] annotations) {
+		for (Annotation annotation : annotations) {
+			var annotationType = annotation.annotationType();
+			if (annotationType != Singleton.class && annotationType.isAnnotationPresent(Scope.class)) {
+				return annotationType;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param annotations all annotations on an injection point
+	 * @return those annotations decorated with Qualifier
+	 */
+	private static Annotation[] qualifiersOf(Annotation[] annotations) {
+		List<Annotation> qualifiers = null;
+		for (Annotation annotation : annotations) {
+			if (annotation.annotationType().isAnnotationPresent(Qualifier.class)) {
+				if (qualifiers == null) {
+					qualifiers = new ArrayList<>(1);
+				}
+				qualifiers.add(annotation);
+			}
+		}
+		return qualifiers == null ? NO_QUALIFIERS : qualifiers.toArray(NO_QUALIFIERS);
+	}
+
+	/**
+	 * a field decorated with @Inject
+	 */
+	static final class InjectableField {
+
+		final String name;
+
+		final Class<?> type;
+
+		/**
+		 * all qualifiers on the field
+		 */
+		final Annotation[] qualifiers;
+
+		/**
+		 * whether the field is decorated with @Singleton
+		 */
+		final boolean singleton;
+
+		/**
+		 * the T of a Provider<T> or Lazy<T> field, null for other fields
+		 */
+		final Class<?> provided;
+
+		/**
+		 * the scope annotation on the field other than @Singleton, null if none
+		 */
+		final Class<? extends Annotation> scope;
+
+		/**
+		 * the keys of all qualifiers on the field
+		 */
+		final Key[] keys;
+
+		/**
+		 * the key of the last qualifier on the field, null if not qualified
+		 */
+		final Key key;
+
+		private final InjectionPlan<?> plan;
+
+		private final int index;
+
+		/**
+		 * resolved lazily for plans from compiled factories
+		 */
+		private volatile Field field;
+
+		private final InjectBackend.FieldAccessor[] accessors = new InjectBackend.FieldAccessor[InjectBackend.values().length];
+
+		private InjectableField(InjectionPlan<?> plan, int index, Field field, String name, Class<?> type,
+				Annotation[] qualifiers, boolean singleton, Class<?> provided, Class<? extends Annotation> scope) {
+			this.plan = plan;
+			this.index = index;
+			this.field = field;
+			this.name = name;
+			this.type = type;
+			this.qualifiers = qualifiers;
+			this.singleton = singleton;
+			this.provided = provided;
+			this.scope = scope;
+			this.keys = Key.of(provided != null ? provided : type, qualifiers);
+			this.key = keys.length == 0 ? null : keys[keys.length - 1];
+		}
+
+		/**
+		 * @return the field for reflective backends
+		 */
+		Field field() {
+			var field = this.field;
+			if (field == null) {
+				try {
+					field = plan.type.getDeclaredField(name);
+					field.setAccessible(true);
+				} catch (ReflectiveOperationException | RuntimeException e) {
+					throw new InjectException(String.format("no accessible field %s@%s", plan.type.getCanonicalName(), name), e);
+				}
+				this.field = field;
+			}
+			return field;
+		}
+
+		/**
+		 * @param backend the way of reading and writing the field
+		 * @return the accessor bound to the field
+		 */
+		InjectBackend.FieldAccessor accessor(InjectBackend backend) {
+			var accessor = accessors[backend.ordinal()];
+			if (accessor == null) {
+				accessor = backend.bind(plan, index);
+				accessors[backend.ordinal()] = accessor;
+			}
+			return accessor;
+		}
+
+	}
+
+}
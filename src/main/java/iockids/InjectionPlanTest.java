@@ -0,0 +1,209 @@
+package iockids;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Qualifier;
+import javax.inject.Singleton;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 检查反射解析的注入计划:
+ * 1. 每个类的计划只解析一次（ClassValue），之后所有getInstance()和所有injector复用同一个计划，并发第一次解析时也是如此
+ * 2. 计划与直接反射读取的构造器、成员变量、限定器、Provider<T>/Lazy<T>的T和作用域一致
+ * 3. 计划绑定的构造方式（instantiator、生成的工厂）也只创建一次
+ * 运行main()，不一致时抛出AssertionError
+ */
+public class InjectionPlanTest {
+
+	@Qualifier
+	@Retention(RetentionPolicy.RUNTIME)
+	@interface Fast {
+	}
+
+	interface Engine {
+	}
+
+	@Fast
+	static class FastEngine implements Engine {
+	}
+
+	@Singleton
+	static class Wheel {
+	}
+
+	static class Seat {
+	}
+
+	static class Car {
+
+		@Inject
+		@Named("spare")
+		Provider<Wheel> spare;
+
+		@Inject
+		Lazy<Seat> seat;
+
+		@Inject
+		@ThreadScoped
+		Seat driver;
+
+		Seat notInjected;
+
+		final Engine engine;
+
+		final Wheel wheel;
+
+		@Inject
+		Car(@Fast Engine engine, Wheel wheel) {
+			this.engine = engine;
+			this.wheel = wheel;
+		}
+	}
+
+	static class Ambiguous {
+
+		@Inject
+		Ambiguous() {
+		}
+
+		@Inject
+		Ambiguous(Seat seat) {
+		}
+	}
+
+	static class Concurrent {
+	}
+
+	public static void main(String[] args) throws Exception {
+		var plan = InjectionPlan.of(Car.class);
+		matchesReflection(plan, Car.class);
+		check(!InjectionPlan.of(Ambiguous.class).constructable, "two @Inject constructors are not constructable");
+		matchesReflection(InjectionPlan.of(Wheel.class), Wheel.class);
+
+		var injector = new Injector(false);
+		injector.bindScope(ThreadScoped.class, new ThreadScope());
+		injector.registerQualifiedClass(Engine.class, FastEngine.class)
+				.registerQualifiedClass(Wheel.class, Qualifiers.named("spare"), Wheel.class);
+		var car = injector.getInstance(Car.class);
+		check(car.engine instanceof FastEngine && car.wheel == injector.getInstance(Wheel.class)
+				&& car.spare.get() instanceof Wheel && car.seat.get() instanceof Seat && car.driver != null
+				&& car.notInjected == null, "instances are created as the plan says");
+		var instantiator = plan.instantiator(InjectBackend.REFLECTION);
+		for (int i = 0; i < 1000; i++) {
+			injector.getInstance(Car.class);
+		}
+		check(InjectionPlan.of(Car.class) == plan && injector.planOf(Car.class) == plan
+				&& new Injector(false).planOf(Car.class) == plan && injector.createChild().planOf(Car.class) == plan,
+				"the plan is reused across getInstance() calls and injectors");
+		check(plan.instantiator(InjectBackend.REFLECTION) == instantiator, "the instantiator is bound once");
+		var generated = new Injector(false).useBackend(InjectBackend.GENERATED);
+		generated.getInstance(Seat.class);
+		var factory = InjectionPlan.of(Seat.class).factory();
+		generated.getInstance(Seat.class);
+		check(factory != null && InjectionPlan.of(Seat.class).factory() == factory, "the factory is generated once");
+		concurrent();
+		System.out.println("InjectionPlanTest passed");
+	}
+
+	/**
+	 * 与直接反射读取的结果比较
+	 */
+	private static void matchesReflection(InjectionPlan<?> plan, Class<?> clazz) {
+		Constructor<?> constructor = null;
+		for (var con : clazz.getDeclaredConstructors()) {
+			if (con.isAnnotationPresent(Inject.class) || con.getParameterCount() == 0) {
+				constructor = con;
+			}
+		}
+		var name = clazz.getSimpleName();
+		check(plan.type == clazz && plan.singleton == clazz.isAnnotationPresent(Singleton.class) && plan.constructable
+				&& plan.constructor().equals(constructor), "the constructor of " + name + " is the one for injection");
+		check(Arrays.equals(plan.parameterTypes, constructor.getParameterTypes()), "parameter types of " + name + " match");
+		var parameters = constructor.getParameters();
+		for (int i = 0; i < parameters.length; i++) {
+			var qualifiers = qualifiersOf(parameters[i].getAnnotations());
+			check(Arrays.equals(plan.parameterQualifiers[i], qualifiers)
+					&& Arrays.equals(plan.parameterKeys[i], Key.of(parameters[i].getType(), qualifiers)),
+					"qualifiers of parameter " + i + " of " + name + " match");
+		}
+		List<Field> fields = new ArrayList<>();
+		for (var field : clazz.getDeclaredFields()) {
+			if (field.isAnnotationPresent(Inject.class)) {
+				fields.add(field);
+			}
+		}
+		check(plan.fields.length == fields.size(), "@Inject fields of " + name + " are in the plan");
+		for (int i = 0; i < fields.size(); i++) {
+			var field = fields.get(i);
+			var planned = plan.fields[i];
+			var provided = field.getGenericType() instanceof ParameterizedType
+					? ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0] : null;
+			var scope = field.isAnnotationPresent(ThreadScoped.class) ? ThreadScoped.class : null;
+			check(planned.name.equals(field.getName()) && planned.type == field.getType() && planned.provided == provided
+					&& planned.scope == scope && Arrays.equals(planned.qualifiers, qualifiersOf(field.getAnnotations())),
+					"field " + field.getName() + " of " + name + " matches");
+		}
+	}
+
+	/**
+	 * @return 带有@Qualifier的注解
+	 */
+	private static Annotation[] qualifiersOf(Annotation[] annotations) {
+		List<Annotation> qualifiers = new ArrayList<>();
+		for (var annotation : annotations) {
+			if (annotation.annotationType().isAnnotationPresent(Qualifier.class)) {
+				qualifiers.add(annotation);
+			}
+		}
+		return qualifiers.toArray(new Annotation[0]);
+	}
+
+	/**
+	 * 多个线程同时第一次获取同一个类，只有一个计划被发布
+	 */
+	private static void concurrent() throws Exception {
+		var threads = 8;
+		var executor = Executors.newFixedThreadPool(threads);
+		try {
+			var injector = new Injector(false);
+			var start = new CountDownLatch(1);
+			List<Future<InjectionPlan<?>>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					injector.getInstance(Concurrent.class);
+					return injector.planOf(Concurrent.class);
+				}));
+			}
+			start.countDown();
+			for (var future : futures) {
+				if (future.get() != InjectionPlan.of(Concurrent.class)) {
+					throw new AssertionError("plans resolved concurrently differ");
+				}
+			}
+			check(true, "plans resolved concurrently are the same");
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+		System.out.println("ok: " + message);
+	}
+
+}
@@ -2,15 +2,20 @@ package iockids;
 
 import utils.Scanner;
 import javax.inject.Inject;
+import javax.inject.Provider;
 import javax.inject.Qualifier;
 import javax.inject.Singleton;
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.Parameter;
+import java.lang.reflect.Modifier;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Consumer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * 连锁注入:
@@ -21,26 +26,66 @@ import java.util.function.Consumer;
  * 2. @Named("xx")，1个类（通常为接口)->N个名称->N个单例
  * 获取缓存对象(单例):
  * injector.getInstance(XX.class)
+ * 子injector（createChild()）只保存自己的注册，查找不到时回退到父injector
  * @time: 2020/2/15 0:38
  */
 public class Injector {
 
-	private Map<Class<?>, Object> singletonInstances = new ConcurrentHashMap<>();
-	private Map<Class<?>, Map<Annotation, Object>> qualifiedInstances = new ConcurrentHashMap<>();
+	private final Map<Class<?>, Object> singletonInstances = new ConcurrentHashMap<>();
+	private final Map<Key, Object> qualifiedInstances = new ConcurrentHashMap<>();
 	{
 		singletonInstances.put(Injector.class, this);
 	}
 
-	private Map<Class<?>, Class<?>> singletonClasses = new ConcurrentHashMap<>();
-	private Map<Class<?>, Map<Annotation, Class<?>>> qualifiedClasses = new ConcurrentHashMap<>();
+	private final Map<Class<?>, Class<?>> singletonClasses = new ConcurrentHashMap<>();
+	private final Map<Key, Class<?>> qualifiedClasses = new ConcurrentHashMap<>();
 
-	private Map<Class<?>, Object> earlyInstances = new ConcurrentHashMap<>();
+	// freeze()之后以上四个表编译为数组索引的绑定表并被清空，只保留一份绑定；
+	// 读取时先看frozen，在表中未找到且此时已冻结（可能刚被清空）则改查绑定表
+	private volatile BindingTable frozen;
+
+	// freeze()复制四个表并发布绑定表时持有写锁，冻结前写入新创建的单例和分类单例时持有读锁，
+	// 这些写入要么被复制到绑定表，要么看到已冻结并直接写入绑定表
+	private final ReadWriteLock freezeLock = new ReentrantReadWriteLock();
+
+	// 取自编译期工厂和快照的注入计划，只对本injector及其子injector生效，其他类的计划通过反射解析并在所有injector之间共享
+	private final Map<Class<?>, InjectionPlan<?>> plans = new ConcurrentHashMap<>();
+
+	// 正在创建的单例，每个类一个创建槽；以及线程 -> 正在等待的槽
+	final Map<Class<?>, SingletonSlot> singletonSlots = new ConcurrentHashMap<>();
+	final Map<Thread, SingletonSlot> waitsFor;
+
+	volatile InjectBackend backend = InjectBackend.REFLECTION;
+
+	// 是否使用迭代的解析引擎（ResolutionStack），默认值取自系统属性iockids.resolver.iterative
+	private volatile boolean iterative = Boolean.getBoolean("iockids.resolver.iterative");
+
+	// 作用域注解 -> 作用域，@ThreadScoped默认绑定（第一次使用时创建）
+	private final Map<Class<? extends Annotation>, InjectScope> scopes = new ConcurrentHashMap<>();
+
+	// 运行统计，为null时不统计
+	volatile InjectorMetrics metrics;
+
+	volatile ResolutionTrace trace;
+
+	private volatile ResolutionTrace stoppedTrace;
+
+	/**
+	 * the graph of the last successful validate(), null if not validated or bindings registered since
+	 */
+	private volatile DependencyGraph graph;
+
+	// 上一次snapshotInit()中未保存注入计划的类
+	private volatile List<Class<?>> snapshotSkipped = List.of();
+
+	// 父injector，本injector中查找不到的绑定和对象从父injector中查找
+	final Injector parent;
 
 	/**
 	 * default construction
 	 */
 	public Injector() {
-		scanInit();
+		this(true);
 	}
 
 	/**
@@ -48,12 +93,120 @@ public class Injector {
 	 * @param scan whether to scan all workspace of projection
 	 */
 	public Injector(boolean scan) {
+		this.parent = null;
+		this.waitsFor = new ConcurrentHashMap<>();
 		if (!scan) {
 			return;
 		}
 		scanInit();
 	}
 
+	/**
+	 * construction of a child injector, which never scans
+	 * @param parent the injector to fall back to
+	 */
+	private Injector(Injector parent) {
+		this.parent = parent;
+		this.backend = parent.backend;
+		this.iterative = parent.iterative;
+		this.waitsFor = parent.waitsFor;
+	}
+
+	/**
+	 * create a child injector sharing the singletons and bindings of this injector without copying them:
+	 * 1. 子injector只保存自己的注册，查找不到的单例、分类单例、限定类和作用域回退到本injector
+	 * 2. 单例由注册它的injector创建和缓存，带@Singleton注解的类属于最上层的injector，子injector中registerSingletonClass()的类属于子injector
+	 * 3. 不扫描classpath，注入计划在所有injector之间共享，创建子injector只需分配几个空表
+	 * @return the child injector, using the same backend as this injector
+	 */
+	public Injector createChild() {
+		return new Injector(this);
+	}
+
+	/**
+	 * choose the way of creating instances and injecting fields, REFLECTION by default
+	 * @param backend the backend used by this injector
+	 * @return this
+	 */
+	public Injector useBackend(InjectBackend backend) {
+		this.backend = Objects.requireNonNull(backend);
+		return this;
+	}
+
+	/**
+	 * resolve with an explicit work stack instead of recursion, for dependency graphs hundreds of levels deep:
+	 * 解析深度只受堆大小限制，不会StackOverflowError；单例、限定器、早期对象和作用域的语义与递归实现一致
+	 * @param enabled whether to use the iterative resolver, false by default
+	 * @return this
+	 */
+	public Injector useIterativeResolver(boolean enabled) {
+		this.iterative = enabled;
+		return this;
+	}
+
+	/**
+	 * start collecting metrics: getInstance() calls, creations and their latency per class, sizes of caches
+	 * @return this
+	 */
+	public synchronized Injector enableMetrics() {
+		if (metrics == null) {
+			metrics = new InjectorMetrics(this);
+		}
+		return this;
+	}
+
+	/**
+	 * stop collecting metrics, the hot paths are then back to a single null check
+	 * @return this
+	 */
+	public synchronized Injector disableMetrics() {
+		var metrics = this.metrics;
+		if (metrics != null) {
+			metrics.unregisterMBean();
+			this.metrics = null;
+		}
+		return this;
+	}
+
+	/**
+	 * @return the metrics of this injector, null if not enabled
+	 */
+	public InjectorMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * start recording the resolution trees walked, usually before scanInit() and eagerInit()
+	 * @return this
+	 */
+	public synchronized Injector enableResolutionTrace() {
+		if (trace == null) {
+			trace = new ResolutionTrace();
+		}
+		return this;
+	}
+
+	/**
+	 * stop recording the resolution trees, the trace recorded is still returned by getResolutionTrace()
+	 * @return this
+	 */
+	public synchronized Injector disableResolutionTrace() {
+		var trace = this.trace;
+		if (trace != null) {
+			this.trace = null;
+			this.stoppedTrace = trace;
+		}
+		return this;
+	}
+
+	/**
+	 * @return the resolution trace being recorded or recorded last, null if never enabled
+	 */
+	public ResolutionTrace getResolutionTrace() {
+		var trace = this.trace;
+		return trace != null ? trace : stoppedTrace;
+	}
+
 	/**
 	 * scan (usually called at initiation) all workspace of projection
 	 */
@@ -66,8 +219,79 @@ public class Injector {
 	 * @param packageName the name of scanning root
 	 */
 	public void scanInit(String packageName) {
-		List<Class<?>> set = Scanner.getClasses(packageName, true);
-		for (Class<?> clazz : set) {
+		checkNotFrozen();
+		var event = new InjectEvents.ScanInit();
+		event.begin();
+		// 只加载（不初始化）带有@Singleton或限定器的类
+		var classes = Scanner.getClassesWithAnnotation(packageName, true, Singleton.class, Qualifier.class);
+		registerScanned(classes);
+		event.end();
+		if (event.shouldCommit()) {
+			event.packageName = packageName;
+			event.classes = classes.size();
+			event.commit();
+		}
+	}
+
+	/**
+	 * boot from the snapshot of a previous scan of all workspace of projection, scan if the classpath has changed
+	 * @param snapshot the snapshot file, written after scanning if it's missing or outdated
+	 */
+	public void snapshotInit(Path snapshot) {
+		snapshotInit(snapshot, "");
+	}
+
+	/**
+	 * boot from the snapshot of a previous scan of a specific path, scan if the classpath has changed:
+	 * 1. 快照中保存扫描到的类和相关类的注入计划，classpath的指纹（各条目的路径、大小、修改时间）一致时直接使用，无需扫描和反射解析
+	 * 2. 指纹不一致、快照不存在或已损坏时照常扫描，并重新写入快照
+	 * 3. 读取的注入计划只对本injector及其子injector生效
+	 * 4. 限定器无法直接构造的类不保存注入计划，仍通过反射解析，由getSnapshotSkippedClasses()返回
+	 * @param snapshot the snapshot file
+	 * @param packageName the name of scanning root
+	 */
+	public void snapshotInit(Path snapshot, String packageName) {
+		checkNotFrozen();
+		var event = new InjectEvents.ScanInit();
+		event.begin();
+		var fingerprint = Scanner.getClasspathFingerprint(Boolean.getBoolean("iockids.scan.cache.hash"));
+		var loader = Thread.currentThread().getContextClassLoader();
+		List<Class<?>> skipped = new ArrayList<>();
+		var classes = GraphSnapshot.read(snapshot, fingerprint, packageName, loader, this, skipped);
+		var restored = classes != null;
+		if (!restored) {
+			classes = Scanner.getClassesWithAnnotation(packageName, true, Singleton.class, Qualifier.class);
+			GraphSnapshot.write(snapshot, fingerprint, packageName, classes, this, skipped);
+		}
+		snapshotSkipped = Collections.unmodifiableList(skipped);
+		registerScanned(classes);
+		event.end();
+		if (event.shouldCommit()) {
+			event.packageName = packageName;
+			event.classes = classes.size();
+			event.snapshot = restored;
+			event.commit();
+		}
+	}
+
+	/**
+	 * @return the classes whose injection plans are not in the snapshot of the last snapshotInit(), because their
+	 * qualifiers other than @Named have members; they are resolved by reflection, empty if snapshotInit() is not called
+	 */
+	public List<Class<?>> getSnapshotSkippedClasses() {
+		return snapshotSkipped;
+	}
+
+	/**
+	 * register singleton classes and qualified classes found by scanning
+	 * @param classes classes decorated with @Singleton or qualifiers
+	 */
+	private void registerScanned(List<Class<?>> classes) {
+		for (Class<?> clazz : classes) {
+			// 记录单例类，供eagerInit()提前创建
+			if (clazz.isAnnotationPresent(Singleton.class) && isConcrete(clazz)) {
+				singletonClasses.putIfAbsent(clazz, clazz);
+			}
 			Annotation[] annotations = clazz.getAnnotations();
 			Annotation namedAnnotation = null;
 			for (Annotation annotation : annotations) {
@@ -85,6 +309,420 @@ public class Injector {
 		}
 	}
 
+	/**
+	 * validate the graph of all registered and scanned bindings, see validate(Class...)
+	 * @return this
+	 */
+	public Injector validate() {
+		return validate(new Class<?>[0]);
+	}
+
+	/**
+	 * validate the dependency graph once instead of discovering problems at the first creation:
+	 * 1. 从所有单例类、限定类和roots出发，解析每个构造器参数和成员变量绑定到的类（与createFromParameter和createFromField一致）
+	 * 2. 报告无法创建的类、没有绑定的接口或限定器、多个限定器绑定到不同的类或对象、未绑定的作用域
+	 * 3. 对构造器参数的边用Tarjan算法求强连通分量，大小超过1或有自环的分量即构造器循环依赖
+	 * 4. 对所有边求强连通分量得到依赖在前的解析顺序，供eagerInit()和getResolutionOrder()使用
+	 * 所有注入计划在此时建立，构造器也已解析，之后的创建不会再遇到这些错误
+	 * @param roots other classes to be created by getInstance(), e.g. the entry of the application
+	 * @return this
+	 */
+	public Injector validate(Class<?>... roots) {
+		List<String> problems = new ArrayList<>();
+		Map<Class<?>, List<Class<?>>> constructorEdges = new HashMap<>();
+		Map<Class<?>, List<Class<?>>> edges = new HashMap<>();
+		List<Class<?>> nodes = new ArrayList<>();
+		Deque<Class<?>> queue = new ArrayDeque<>();
+		for (var clazz : singletonClassTypes()) {
+			if (isConcrete(clazz)) {
+				queue.add(clazz);
+			}
+		}
+		queue.addAll(qualifiedClassBindings().values());
+		queue.addAll(Arrays.asList(roots));
+		while (!queue.isEmpty()) {
+			var clazz = queue.poll();
+			if (edges.containsKey(clazz)) {
+				continue;
+			}
+			List<Class<?>> constructorTargets = new ArrayList<>();
+			List<Class<?>> targets = new ArrayList<>();
+			nodes.add(clazz);
+			constructorEdges.put(clazz, constructorTargets);
+			edges.put(clazz, targets);
+			var plan = planOf(clazz);
+			try {
+				plan.constructor();
+			} catch (InjectException e) {
+				problems.add(e.getMessage());
+				continue;
+			}
+			if (plan.scope != null) {
+				try {
+					scopeOf(plan.scope);
+				} catch (InjectException e) {
+					problems.add(e.getMessage() + " on " + clazz.getCanonicalName());
+				}
+			}
+			for (int i = 0; i < plan.parameterTypes.length; i++) {
+				var point = String.format("parameter %d of %s", i, clazz.getCanonicalName());
+				var type = plan.parameterTypes[i];
+				var provided = InjectionPlan.isProvider(type);
+				var target = validateTarget(point, provided ? plan.parameterProvided[i] : type, plan.parameterKeys[i],
+						problems);
+				if (target != null) {
+					queue.add(target);
+					// Provider<T>和Lazy<T>在get()时才解析，不是创建时的依赖
+					if (!provided) {
+						constructorTargets.add(target);
+						targets.add(target);
+					}
+				}
+			}
+			for (var field : plan.fields) {
+				var point = String.format("field %s@%s", field.name, clazz.getCanonicalName());
+				var provided = InjectionPlan.isProvider(field.type);
+				if (field.scope != null) {
+					try {
+						scopeOf(field.scope);
+					} catch (InjectException e) {
+						problems.add(e.getMessage() + " on " + point);
+					}
+				}
+				var target = validateTarget(point, provided ? field.provided : field.type, field.keys, problems);
+				if (target != null) {
+					queue.add(target);
+					if (!provided) {
+						targets.add(target);
+					}
+				}
+			}
+		}
+		// 构造器参数的强连通分量即构造器循环依赖
+		for (var component : DependencyGraph.components(nodes, constructorEdges)) {
+			var clazz = component.get(0);
+			if (component.size() > 1 || constructorEdges.get(clazz).contains(clazz)) {
+				StringJoiner cycle = new StringJoiner(", ");
+				for (var member : component) {
+					cycle.add(member.getCanonicalName());
+				}
+				problems.add("circular dependency on constructor among " + cycle);
+			}
+		}
+		if (!problems.isEmpty()) {
+			throw new InjectException("invalid injection graph:\n  " + String.join("\n  ", problems));
+		}
+		List<Class<?>> order = new ArrayList<>(nodes.size());
+		for (var component : DependencyGraph.components(nodes, edges)) {
+			order.addAll(component);
+		}
+		graph = new DependencyGraph(order, edges);
+		return this;
+	}
+
+	/**
+	 *
+	 * @param point the description of the injection point
+	 * @param type the declared type, or the type argument of a provider
+	 * @param keys the keys of the qualifiers on the injection point
+	 * @param problems the problems found
+	 * @return the class to be created for the injection point, null if an instance exists or it's invalid
+	 */
+	private Class<?> validateTarget(String point, Class<?> type, Key[] keys, List<String> problems) {
+		if (type == null) {
+			problems.add("unknown type argument of the provider on " + point);
+			return null;
+		}
+		// 与createFromQualified一致：先查找分类单例，再查找限定类
+		Object instance = null;
+		for (var key : keys) {
+			var obj = qualifiedOf(key);
+			if (obj != null) {
+				if (instance != null && instance != obj) {
+					problems.add("ambiguous qualified objects for " + point);
+					return null;
+				}
+				instance = obj;
+			}
+		}
+		if (instance != null) {
+			return null;
+		}
+		Class<?> target = null;
+		for (var key : keys) {
+			var clazz = qualifiedClassOf(key);
+			if (clazz != null) {
+				if (target != null && target != clazz) {
+					problems.add(String.format("ambiguous qualified classes for %s: %s, %s", point,
+							target.getCanonicalName(), clazz.getCanonicalName()));
+					return null;
+				}
+				target = clazz;
+			}
+		}
+		if (target != null) {
+			return target;
+		}
+		if (singletonOf(type) != null) {
+			return null;
+		}
+		// 没有绑定时按声明的类型创建，接口和抽象类无法创建
+		if (!isConcrete(type)) {
+			if (keys.length > 0) {
+				StringJoiner qualifiers = new StringJoiner(", ");
+				for (var key : keys) {
+					qualifiers.add(String.valueOf(key.qualifier));
+				}
+				problems.add(String.format("no binding for %s %s on %s", qualifiers, type.getCanonicalName(), point));
+			} else {
+				problems.add(String.format("no binding for %s on %s", type.getCanonicalName(), point));
+			}
+			return null;
+		}
+		return type;
+	}
+
+	/**
+	 * @return the classes of the last validate(), every class after the classes it depends on,
+	 * null if not validated or bindings are registered since
+	 */
+	public List<Class<?>> getResolutionOrder() {
+		var graph = this.graph;
+		return graph == null ? null : graph.order;
+	}
+
+	/**
+	 * create all singletons and qualified objects ahead of the first getInstance(), on the common ForkJoinPool
+	 * @return this
+	 */
+	public Injector eagerInit() {
+		return eagerInit(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * create all singletons and qualified objects ahead of the first getInstance():
+	 * 1. 节点为singletonClasses中的单例类和qualifiedClasses中的限定类，以及它们依赖到的其他单例类
+	 * 2. 边为构造器参数和成员变量的依赖，经过非单例类时继续向下查找
+	 * 3. 按拓扑序在executor上创建，互不依赖的子树并行创建；成员变量的循环依赖（回边）不参与排序，由单例的早期对象解决
+	 * @param executor the executor running the creation of each node
+	 * @return this
+	 */
+	public Injector eagerInit(Executor executor) {
+		// 1. 节点及每个限定类对应的(接口, 限定器)
+		Set<Class<?>> nodes = new LinkedHashSet<>();
+		Map<Class<?>, List<Key>> bindings = new HashMap<>();
+		for (var clazz : singletonClassTypes()) {
+			if (isConcrete(clazz) && singletonOf(clazz) == null) {
+				nodes.add(clazz);
+			}
+		}
+		for (var entry : qualifiedClassBindings().entrySet()) {
+			if (qualifiedOf(entry.getKey()) == null) {
+				nodes.add(entry.getValue());
+				bindings.computeIfAbsent(entry.getValue(), (k) -> new ArrayList<>()).add(entry.getKey());
+			}
+		}
+		// 2. 依赖边，新发现的单例类也作为节点
+		Map<Class<?>, Set<Class<?>>> dependencies = new HashMap<>();
+		Deque<Class<?>> queue = new ArrayDeque<>(nodes);
+		while (!queue.isEmpty()) {
+			var clazz = queue.poll();
+			var deps = new LinkedHashSet<Class<?>>();
+			collectDependencies(clazz, nodes, deps, new HashSet<>(Set.of(clazz)));
+			for (var dep : deps) {
+				if (nodes.add(dep)) {
+					queue.add(dep);
+				}
+			}
+			dependencies.put(clazz, deps);
+		}
+		// 3. 按拓扑序调度
+		Map<Class<?>, CompletableFuture<Void>> futures = new HashMap<>();
+		for (var clazz : nodes) {
+			schedule(clazz, dependencies, bindings, futures, new HashSet<>(), executor);
+		}
+		try {
+			allOf(futures.values()).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof InjectException) {
+				throw (InjectException) e.getCause();
+			}
+			throw new InjectException("eager initialization error", e.getCause());
+		}
+		return this;
+	}
+
+	/**
+	 *
+	 * @param clazz a class whose constructor parameters and fields are walked
+	 * @param nodes the classes created by eagerInit
+	 * @param deps the nodes clazz depends on
+	 * @param visited the non-node classes walked through
+	 */
+	private void collectDependencies(Class<?> clazz, Set<Class<?>> nodes, Set<Class<?>> deps, Set<Class<?>> visited) {
+		var plan = planOf(clazz);
+		if (!plan.constructable) {
+			return;
+		}
+		// 已校验的依赖图中直接取得边
+		var graph = this.graph;
+		var targets = graph == null ? null : graph.targets(clazz);
+		if (targets == null) {
+			targets = new ArrayList<>();
+			// Provider<T>和Lazy<T>在get()时才解析，不是创建时的依赖
+			for (int i = 0; i < plan.parameterTypes.length; i++) {
+				if (!InjectionPlan.isProvider(plan.parameterTypes[i])) {
+					targets.add(bindingOf(plan.parameterTypes[i], plan.parameterKeys[i]));
+				}
+			}
+			for (var field : plan.fields) {
+				if (!InjectionPlan.isProvider(field.type)) {
+					targets.add(bindingOf(field.type, field.keys));
+				}
+			}
+		}
+		for (var target : targets) {
+			if (target == null || target == clazz || !isConcrete(target)) {
+				continue;
+			}
+			if (nodes.contains(target) || planOf(target).singleton) {
+				deps.add(target);
+			} else if (visited.add(target)) {
+				collectDependencies(target, nodes, deps, visited);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param type the declared type of a parameter or field
+	 * @param keys the keys of the qualifiers on the parameter or field
+	 * @return the class to be created for it, or null if an instance already exists
+	 */
+	private Class<?> bindingOf(Class<?> type, Key[] keys) {
+		if (singletonOf(type) != null) {
+			return null;
+		}
+		for (var key : keys) {
+			if (qualifiedOf(key) != null) {
+				return null;
+			}
+			var clazz = qualifiedClassOf(key);
+			if (clazz != null) {
+				return clazz;
+			}
+		}
+		return type;
+	}
+
+	/**
+	 *
+	 * @return the future completed when clazz is created, or null on a back edge
+	 */
+	private CompletableFuture<Void> schedule(Class<?> clazz, Map<Class<?>, Set<Class<?>>> dependencies,
+											 Map<Class<?>, List<Key>> bindings,
+											 Map<Class<?>, CompletableFuture<Void>> futures, Set<Class<?>> path,
+											 Executor executor) {
+		var future = futures.get(clazz);
+		if (future != null) {
+			return future;
+		}
+		if (!path.add(clazz)) {
+			return null;
+		}
+		List<CompletableFuture<Void>> deps = new ArrayList<>();
+		for (var dep : dependencies.getOrDefault(clazz, Collections.emptySet())) {
+			var f = schedule(dep, dependencies, bindings, futures, path, executor);
+			if (f != null) {
+				deps.add(f);
+			}
+		}
+		path.remove(clazz);
+		future = allOf(deps)
+				.thenRunAsync(() -> createEager(clazz, bindings.get(clazz)), executor);
+		futures.put(clazz, future);
+		return future;
+	}
+
+	/**
+	 * @param futures the futures to wait for
+	 * @return the future completed when all futures are completed
+	 */
+	private static CompletableFuture<Void> allOf(Collection<CompletableFuture<Void>> futures) {
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+	}
+
+	/**
+	 *
+	 * @param clazz a singleton class or a qualified class
+	 * @param bindings the (interface, qualifier) keys clazz is registered for, null if none
+	 */
+	private void createEager(Class<?> clazz, List<Key> bindings) {
+		var plan = planOf(clazz);
+		var isSingleton = plan.singleton || isSingletonClass(clazz);
+		Object singleton = isSingleton ? createNew(new ResolutionContext(), clazz) : null;
+		if (bindings == null) {
+			return;
+		}
+		for (var key : bindings) {
+			var obj = singleton != null ? singleton : createNew(new ResolutionContext(), clazz);
+			putQualifiedIfAbsent(key, obj);
+		}
+	}
+
+	private static boolean isConcrete(Class<?> clazz) {
+		return !clazz.isInterface() && !clazz.isPrimitive() && !clazz.isArray()
+				&& !Modifier.isAbstract(clazz.getModifiers());
+	}
+
+	/**
+	 * load bindings generated at compile time by iockids-processor instead of scanning the classpath
+	 */
+	public void registryInit() {
+		registryInit(Thread.currentThread().getContextClassLoader());
+	}
+
+	/**
+	 * load bindings generated at compile time by iockids-processor instead of scanning the classpath
+	 * @param loader the class loader to find BindingRegistry services from
+	 */
+	public void registryInit(ClassLoader loader) {
+		for (BindingRegistry registry : ServiceLoader.load(BindingRegistry.class, loader)) {
+			registry.registerTo(this);
+		}
+	}
+
+	/**
+	 *
+	 * @param factory a factory generated at compile time, whose injection plan replaces the one by reflection
+	 * @return this
+	 */
+	public <T> Injector registerFactory(CompiledFactory<T> factory) {
+		plans.put(factory.type, InjectionPlan.of(factory));
+		return this;
+	}
+
+	/**
+	 * use a plan read from a snapshot instead of resolving the class by reflection, compiled factories take precedence
+	 * @param plan the plan read from a snapshot
+	 */
+	void restorePlan(InjectionPlan<?> plan) {
+		plans.putIfAbsent(plan.type, plan);
+	}
+
+	/**
+	 * @param clazz class type of target
+	 * @return the plan registered to this injector or its parent, otherwise the plan resolved by reflection
+	 */
+	@SuppressWarnings("unchecked")
+	<T> InjectionPlan<T> planOf(Class<T> clazz) {
+		var plan = (InjectionPlan<T>) plans.get(clazz);
+		if (plan != null) {
+			return plan;
+		}
+		return parent != null ? parent.planOf(clazz) : InjectionPlan.of(clazz);
+	}
+
 	/**
 	 *
 	 * @param clazz Class for putting in qualifiedInstances Dict
@@ -92,6 +730,7 @@ public class Injector {
 	 * @return this
 	 */
 	public <T> Injector putSingleton(Class<T> clazz, T obj) {
+		checkNotFrozen();
 		if (singletonInstances.put(clazz, obj) != null) {
 			throw new InjectException("duplicated singleton object for the same class " + clazz.getCanonicalName());
 		}
@@ -107,16 +746,12 @@ public class Injector {
 	 * @return this
 	 */
 	public <T> Injector putQualified(Class<T> clazz, Annotation annotation, T obj) {
+		checkNotFrozen();
 		if (!annotation.annotationType().isAnnotationPresent(Qualifier.class)) {
 			throw new InjectException(
 					"annotation must be decorated with Qualifier " + annotation.annotationType().getCanonicalName());
 		}
-		var os = qualifiedInstances.get(clazz);
-		if (os == null) {
-			os = new ConcurrentHashMap<>();
-			qualifiedInstances.put(clazz, os);
-		}
-		if (os.put(annotation, obj) != null) {
+		if (qualifiedInstances.put(Key.of(clazz, annotation), obj) != null) {
 			throw new InjectException(
 					String.format("duplicated qualified object with the same qualifier %s with the class %s",
 							annotation.annotationType().getCanonicalName(), clazz.getCanonicalName()));
@@ -140,7 +775,10 @@ public class Injector {
 	 * @return this
 	 */
 	public <T> Injector registerSingletonClass(Class<?> parentType, Class<T> clazz) {
-		if (singletonClasses.put(parentType, clazz) != null) {
+		checkNotFrozen();
+		// 重复注册同一个类是无害的，如scanInit()之后再registryInit()
+		var old = singletonClasses.putIfAbsent(parentType, clazz);
+		if (old != null && old != clazz) {
 			throw new InjectException("duplicated singleton class " + parentType.getCanonicalName());
 		}
 		return this;
@@ -170,216 +808,603 @@ public class Injector {
 	 * @return this
 	 */
 	public <T> Injector registerQualifiedClass(Class<?> parentType, Annotation annotation, Class<T> clazz) {
+		checkNotFrozen();
 		if (!annotation.annotationType().isAnnotationPresent(Qualifier.class)) {
 			throw new InjectException(
 					"annotation must be decorated with Qualifier " + annotation.annotationType().getCanonicalName());
 		}
-		var annos = qualifiedClasses.get(parentType);
-		if (annos == null) {
-			annos = new ConcurrentHashMap<>();
-			qualifiedClasses.put(parentType, annos);
-		}
-		if (annos.put(annotation, clazz) != null) {
+		// 重复注册同一个实现类是无害的，如重复调用scanInit()
+		var old = qualifiedClasses.putIfAbsent(Key.of(parentType, annotation), clazz);
+		if (old != null && old != clazz) {
 			throw new InjectException(String.format("duplicated qualifier %s with the same class %s",
 					annotation.annotationType().getCanonicalName(), parentType.getCanonicalName()));
 		}
 		return this;
 	}
 
+	/**
+	 * bind a scope annotation to a scope, replacing the scope bound before
+	 * @param annotation an annotation decorated with javax.inject.Scope, other than Singleton
+	 * @param scope the scope managing instances of classes and fields decorated with annotation
+	 * @return this
+	 */
+	public Injector bindScope(Class<? extends Annotation> annotation, InjectScope scope) {
+		checkNotFrozen();
+		if (annotation == Singleton.class || !annotation.isAnnotationPresent(javax.inject.Scope.class)) {
+			throw new InjectException("annotation must be decorated with Scope " + annotation.getCanonicalName());
+		}
+		scopes.put(annotation, Objects.requireNonNull(scope));
+		return this;
+	}
+
+	/**
+	 * compile all bindings into an immutable table indexed by arrays, registering bindings after that is rejected
+	 * 应在启动完成（扫描和注册结束）后、开始并发调用getInstance()之前调用
+	 * @return this
+	 */
+	public synchronized Injector freeze() {
+		if (frozen != null) {
+			return this;
+		}
+		var lock = freezeLock.writeLock();
+		lock.lock();
+		try {
+			frozen = compile();
+			// 发布绑定表之后清空，putSingletonIfAbsent()和putQualifiedIfAbsent()持有读锁，此后只会写入绑定表
+			singletonInstances.clear();
+			qualifiedInstances.clear();
+			singletonClasses.clear();
+			qualifiedClasses.clear();
+		} finally {
+			lock.unlock();
+		}
+		return this;
+	}
+
+	/**
+	 * @return the binding table of all bindings registered so far
+	 */
+	private BindingTable compile() {
+		Map<Key, Object> instances = new HashMap<>(qualifiedInstances);
+		for (var entry : singletonInstances.entrySet()) {
+			instances.put(Key.of(entry.getKey()), entry.getValue());
+		}
+		Set<Key> singletonKeys = new HashSet<>();
+		for (var clazz : singletonClasses.keySet()) {
+			singletonKeys.add(Key.of(clazz));
+		}
+		Set<Key> keys = new LinkedHashSet<>(instances.keySet());
+		keys.addAll(singletonKeys);
+		keys.addAll(qualifiedClasses.keySet());
+		// 从已注册的类的注入计划中可达的Key也编入绑定表
+		Deque<Class<?>> queue = new ArrayDeque<>();
+		for (var key : keys) {
+			queue.add(key.type);
+		}
+		queue.addAll(qualifiedClasses.values());
+		Set<Class<?>> visited = new HashSet<>();
+		while (!queue.isEmpty()) {
+			var clazz = queue.poll();
+			if (!visited.add(clazz) || !isConcrete(clazz)) {
+				continue;
+			}
+			keys.add(Key.of(clazz));
+			var plan = planOf(clazz);
+			for (int i = 0; i < plan.parameterTypes.length; i++) {
+				var type = plan.parameterProvided[i] != null ? plan.parameterProvided[i] : plan.parameterTypes[i];
+				keys.add(Key.of(type));
+				Collections.addAll(keys, plan.parameterKeys[i]);
+				queue.add(type);
+			}
+			for (var field : plan.fields) {
+				var type = field.provided != null ? field.provided : field.type;
+				keys.add(Key.of(type));
+				Collections.addAll(keys, field.keys);
+				queue.add(type);
+			}
+		}
+		return new BindingTable(keys, instances, new HashMap<>(qualifiedClasses), singletonKeys);
+	}
+
+	private void checkNotFrozen() {
+		if (frozen != null) {
+			throw new InjectException("injector is frozen, no more bindings can be registered");
+		}
+		// 即将注册新的绑定，之前校验的依赖图失效
+		graph = null;
+	}
+
+	InjectScope scopeOf(Class<? extends Annotation> annotation) {
+		var scope = scopes.get(annotation);
+		if (scope != null) {
+			return scope;
+		}
+		if (parent != null) {
+			return parent.scopeOf(annotation);
+		}
+		if (annotation == ThreadScoped.class) {
+			return scopes.computeIfAbsent(annotation, (k) -> new ThreadScope());
+		}
+		throw new InjectException("no scope bound for annotation " + annotation.getCanonicalName());
+	}
+
+	Object singletonOf(Class<?> clazz) {
+		var table = frozen;
+		Object o;
+		if (table == null) {
+			o = singletonInstances.get(clazz);
+			if (o == null && (table = frozen) != null) {
+				o = table.instance(clazz);
+			}
+		} else {
+			o = table.instance(clazz);
+		}
+		return o == null && parent != null ? parent.singletonOf(clazz) : o;
+	}
+
+	/**
+	 * @return the singleton already there, or null if o is put
+	 */
+	Object putSingletonIfAbsent(Class<?> clazz, Object o) {
+		var table = frozen;
+		if (table == null) {
+			var lock = freezeLock.readLock();
+			lock.lock();
+			try {
+				table = frozen;
+				if (table == null) {
+					return singletonInstances.putIfAbsent(clazz, o);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		return table.putInstanceIfAbsent(Key.of(clazz), o);
+	}
+
+	boolean isSingletonClass(Class<?> clazz) {
+		return isLocalSingletonClass(clazz) || parent != null && parent.isSingletonClass(clazz);
+	}
+
+	/**
+	 * @return whether clazz is registered as a singleton class in this injector, not in its parent
+	 */
+	boolean isLocalSingletonClass(Class<?> clazz) {
+		var table = frozen;
+		if (table == null) {
+			if (singletonClasses.containsKey(clazz)) {
+				return true;
+			}
+			table = frozen;
+		}
+		return table != null && table.isSingleton(clazz);
+	}
+
+	Object qualifiedOf(Key key) {
+		var table = frozen;
+		Object o;
+		if (table == null) {
+			o = qualifiedInstances.get(key);
+			if (o == null && (table = frozen) != null) {
+				o = table.instance(key);
+			}
+		} else {
+			o = table.instance(key);
+		}
+		return o == null && parent != null ? parent.qualifiedOf(key) : o;
+	}
+
+	/**
+	 * @return the qualified object already there, or null if o is put
+	 */
+	Object putQualifiedIfAbsent(Key key, Object o) {
+		var table = frozen;
+		if (table == null) {
+			var lock = freezeLock.readLock();
+			lock.lock();
+			try {
+				table = frozen;
+				if (table == null) {
+					return qualifiedInstances.putIfAbsent(key, o);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		return table.putInstanceIfAbsent(key, o);
+	}
+
+	Class<?> qualifiedClassOf(Key key) {
+		var table = frozen;
+		Class<?> z;
+		if (table == null) {
+			z = qualifiedClasses.get(key);
+			if (z == null && (table = frozen) != null) {
+				z = table.boundClass(key);
+			}
+		} else {
+			z = table.boundClass(key);
+		}
+		return z == null && parent != null ? parent.qualifiedClassOf(key) : z;
+	}
+
+	/**
+	 * @return the number of singletons cached in this injector
+	 */
+	int singletonCount() {
+		var table = frozen;
+		return table == null ? singletonInstances.size() : table.instanceCount(false);
+	}
+
+	/**
+	 * @return the number of qualified objects cached in this injector
+	 */
+	int qualifiedCount() {
+		var table = frozen;
+		return table == null ? qualifiedInstances.size() : table.instanceCount(true);
+	}
+
+	private Collection<Class<?>> singletonClassTypes() {
+		var table = frozen;
+		return table == null ? singletonClasses.keySet() : table.singletonClasses();
+	}
+
+	private Map<Key, Class<?>> qualifiedClassBindings() {
+		var table = frozen;
+		return table == null ? qualifiedClasses : table.qualifiedClasses();
+	}
+
 	/**
 	 * print qualifiedClasses dict for testing
 	 */
 	public void printQualifiedClasses() {
-		for (Class<?> clazz : qualifiedClasses.keySet()) {
-			Map<Annotation, Class<?>> value = qualifiedClasses.get(clazz);
-			for (Annotation annotation : value.keySet()) {
-				System.out.println(clazz + " : { " + annotation.toString() + " -> " + value.get(annotation).getSimpleName() + "}");
-			}
+		for (var entry : qualifiedClassBindings().entrySet()) {
+			var key = entry.getKey();
+			System.out.println(key.type + " : { " + key.qualifier.toString() + " -> " + entry.getValue().getSimpleName() + "}");
 		}
 	}
 
 	/**
 	 *
+	 * @param context the resolution context of this call
 	 * @param declaringClazz the Class calling this function
 	 * @param clazz Class type for creating new instance from qualifiedInstances or qualifiedClasses Dict
-	 * @param annotations annotation for identifying (usually by name) target corresponding clazz
+	 * @param keys keys of the qualifiers for identifying (usually by name) target corresponding clazz
 	 * @return new instance
 	 */
 	@SuppressWarnings("unchecked")
-	private <T> T createFromQualified(Class<?> declaringClazz, Class<?> clazz, Annotation[] annotations) {
-		var qs = qualifiedInstances.get(clazz);
-		if (qs != null) {
-			Set<Object> os = new HashSet<>();
-			for (var annotation : annotations) {
-				var obj = qs.get(annotation);
-				if (obj != null) {
-					os.add(obj);
-				}
-			}
-			if (os.size() > 1) {
-				throw new InjectException(String.format("duplicated qualified object for field %s@%s",
-						clazz.getCanonicalName(), declaringClazz.getCanonicalName()));
+	private <T> T createFromQualified(ResolutionContext context, Class<?> declaringClazz, Class<?> clazz, Key[] keys) {
+		if (keys.length == 0) {
+			return null;
+		}
+		var found = qualifiedInstanceOf(declaringClazz, clazz, keys);
+		if (found != null) {
+			var trace = this.trace;
+			if (trace != null) {
+				trace.cached(context, clazz, keys[0], context.via());
 			}
-			if (!os.isEmpty()) {
-				return (T) (os.iterator().next());
+			return (T) found;
+		}
+		var targetKey = qualifiedBindingOf(declaringClazz, clazz, keys);
+		if (targetKey != null) {
+			return (T) createNew(context, qualifiedClassOf(targetKey), targetKey);
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 * @param declaringClazz the Class declaring the injection point
+	 * @param clazz the declared type of the injection point
+	 * @param keys keys of the qualifiers on the injection point
+	 * @return the qualified object found, null if none
+	 */
+	Object qualifiedInstanceOf(Class<?> declaringClazz, Class<?> clazz, Key[] keys) {
+		// 通常只有一个限定器，每个Key只查找一次，不分配对象
+		Object found = null;
+		for (var key : keys) {
+			var obj = qualifiedOf(key);
+			if (obj != null) {
+				if (found != null && found != obj) {
+					throw new InjectException(String.format("duplicated qualified object for field %s@%s",
+							clazz.getCanonicalName(), declaringClazz.getCanonicalName()));
+				}
+				found = obj;
 			}
 		}
+		return found;
+	}
+
+	/**
+	 *
+	 * @param declaringClazz the Class declaring the injection point
+	 * @param clazz the declared type of the injection point
+	 * @param keys keys of the qualifiers on the injection point
+	 * @return the key whose qualified class is to be created, null if none
+	 */
+	Key qualifiedBindingOf(Class<?> declaringClazz, Class<?> clazz, Key[] keys) {
 		// 此处需要预处理，先将相关类扫描进qualifiedClasses哈希表中
-		var qz = qualifiedClasses.get(clazz);
-		if (qz != null) {
-			Set<Class<?>> oz = new HashSet<>();
-			Annotation annoz = null;
-			for (var annotation : annotations) {
-				var z = qz.get(annotation);
-				if (z != null) {
-					oz.add(z);
-					annoz = annotation;
+		Class<?> target = null;
+		Key targetKey = null;
+		for (var key : keys) {
+			var z = qualifiedClassOf(key);
+			if (z != null) {
+				if (target != null && target != z) {
+					throw new InjectException(String.format("duplicated qualified classes for field %s@%s",
+							clazz.getCanonicalName(), declaringClazz.getCanonicalName()));
 				}
-			}
-			if (oz.size() > 1) {
-				throw new InjectException(String.format("duplicated qualified classes for field %s@%s",
-						clazz.getCanonicalName(), declaringClazz.getCanonicalName()));
-			}
-			if (!oz.isEmpty()) {
-				final var annozRead = annoz;
-				// 生成新的对象以后放到qualified队列里
-				var t = (T) createNew(oz.iterator().next(), (o) -> {
-					this.putQualified((Class<T>) clazz, annozRead, (T) o);
-				});
-				return t;
+				target = z;
+				targetKey = key;
 			}
 		}
-		return null;
+		return targetKey;
 	}
 
 	/**
 	 *
+	 * @param context the resolution context of this call
 	 * @param clazz Class type for creating new instance
 	 * @return new instance
 	 */
-	private <T> T createNew(Class<T> clazz) {
-		return this.createNew(clazz, null);
+	private <T> T createNew(ResolutionContext context, Class<T> clazz) {
+		return this.createNew(context, clazz, null);
 	}
 
 	/**
 	 *
+	 * @param context the resolution context of this call
 	 * @param clazz Class type for creating new instance
-	 * @param consumer operation after creating new instance
+	 * @param key the qualified key the instance is created for, null if unqualified
 	 * @return new instance
 	 */
 	@SuppressWarnings("unchecked")
-	private <T> T createNew(Class<T> clazz, Consumer<T> consumer) {
-		var o = singletonInstances.get(clazz);
+	private <T> T createNew(ResolutionContext context, Class<T> clazz, Key key) {
+		if (iterative) {
+			return (T) context.stack().createNew(this, clazz, key);
+		}
+		// 已创建的单例无锁读取
+		var o = singletonOf(clazz);
+		var trace = this.trace;
 		if (o != null) {
+			InjectEvents.singletonLookup(clazz, key, context.depth() + 1, true);
+			if (trace != null) {
+				trace.cached(context, clazz, key, context.via());
+			}
 			return (T) o;
 		}
-		var cons = new ArrayList<Constructor<T>>();
-		T target = null;
-		// 1. 创建对象
-		for (var con : clazz.getDeclaredConstructors()) {
-			// 默认和无参构造器不需要"@Inject"注解
-			if (!con.isAnnotationPresent(Inject.class) && con.getParameterCount() > 0) {
-				continue;
-			}
-			if (!con.trySetAccessible()) {
-				continue;
+		var event = new InjectEvents.Create();
+		event.begin();
+		var node = trace == null ? null : trace.enter(context, clazz, key);
+		var outer = context.key();
+		var depth = context.enter(key);
+		T t;
+		try {
+			t = createUncached(context, clazz);
+		} finally {
+			context.exit(depth, outer);
+			if (node != null) {
+				trace.exit(context, node);
 			}
-			cons.add((Constructor<T>) con);
 		}
-		if (cons.size() > 1) {
-			throw new InjectException("duplicated constructor for injection class " + clazz.getCanonicalName()); // 按规范不允许有超过一个构造器添加"@Inject"标签
+		event.end();
+		if (event.shouldCommit()) {
+			event.type = clazz;
+			event.qualifier = InjectEvents.qualifierOf(key);
+			event.depth = depth;
+			event.commit();
 		}
-		if (cons.size() == 0) {
-			throw new InjectException("no accessible constructor for injection class " + clazz.getCanonicalName());
-		}
-		earlyInstances.put(clazz, clazz); // 早期对象尚未创建
-
-		target = createFromConstructor(cons.get(0)); // -> 核心步骤，构造器注入
+		return t;
+	}
 
-		earlyInstances.put(clazz, target); // 早期对象创建成功
+	/**
+	 *
+	 * @param context the resolution context of this call
+	 * @param clazz Class type for creating new instance, which is not a created singleton
+	 * @return new instance
+	 */
+	private <T> T createUncached(ResolutionContext context, Class<T> clazz) {
+		// 1. 创建对象，构造器的选择已缓存在注入计划中
+		var plan = planOf(clazz);
+		plan.constructor();
 
-		// 2. 创建完成，判断是否为Singleton
-		var isSingleton = clazz.isAnnotationPresent(Singleton.class);
+		// 2. 判断是否为Singleton，单例由创建槽保证只创建一次
+		var isSingleton = plan.singleton;
 		if (!isSingleton) {
-			isSingleton = this.singletonClasses.containsKey(clazz);
+			isSingleton = isSingletonClass(clazz);
 		}
 		if (isSingleton) {
-			singletonInstances.put(clazz, target);
+			// 单例由注册它的injector创建，子injector只创建自己注册的单例类
+			if (parent != null && !isLocalSingletonClass(clazz)) {
+				return parent.createUncached(context, clazz);
+			}
+			return createSingleton(context, plan);
+		}
+		// 3. 带有作用域注解的类，由作用域决定是否创建
+		if (plan.scope != null) {
+			return scopeOf(plan.scope).scope(Key.of(clazz).id, clazz, () -> createPrototype(context, plan));
 		}
+		return createPrototype(context, plan);
+	}
+
+	/**
+	 * create a new instance of a class which is not a singleton, called by prepared providers
+	 * @param plan the injection plan of the class
+	 * @return new instance
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T createPrototype(InjectionPlan<T> plan) {
+		var context = new ResolutionContext();
+		context.enter(null);
+		if (iterative) {
+			return (T) context.stack().createPrototype(this, plan);
+		}
+		return createPrototype(context, plan);
+	}
+
+	/**
+	 *
+	 * @param context the resolution context of this call
+	 * @param plan the injection plan of a class which is not a singleton
+	 * @return new instance
+	 */
+	private <T> T createPrototype(ResolutionContext context, InjectionPlan<T> plan) {
+		var clazz = plan.type;
+		var metrics = this.metrics;
+		var start = metrics == null ? 0 : metrics.start(false);
+
+		context.constructing(clazz); // 早期对象尚未创建
+
+		T target = createFromConstructor(context, plan); // -> 核心步骤，构造器注入
+
+		context.constructed(clazz, target); // 早期对象创建成功
 
 		// 3. 递归注入该类中带@Inject注解的属性
-		injectMembers(target);
+		injectMembers(context, plan, target);
 
-		earlyInstances.remove(clazz);
+		context.finished(clazz);
 
+		if (metrics != null) {
+			metrics.created(clazz, false, start);
+		}
 		return target;
 	}
 
+	/**
+	 * create a singleton exactly once, other threads asking for it wait only on its slot
+	 * @param context the resolution context of this call
+	 * @param plan the injection plan of the singleton class
+	 * @return the singleton
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T createSingleton(ResolutionContext context, InjectionPlan<T> plan) {
+		var clazz = plan.type;
+		var slot = singletonSlots.computeIfAbsent(clazz, SingletonSlot::new);
+		var o = slot.acquire(waitsFor);
+		if (o != null) {
+			return (T) o;
+		}
+		var completed = false;
+		try {
+			// 成为所有者之前可能已有其他线程创建完成或手动放入
+			o = singletonOf(clazz);
+			InjectEvents.singletonLookup(clazz, context.key(), context.depth(), o != null);
+			if (o == null) {
+				var metrics = this.metrics;
+				var start = metrics == null ? 0 : metrics.start(true);
+				T target = createFromConstructor(context, plan);
+				// 循环依赖的成员变量通过创建槽获得早期对象
+				slot.publishEarly(target);
+				injectMembers(context, plan, target);
+				o = putSingletonIfAbsent(clazz, target);
+				if (o == null) {
+					o = target;
+				}
+				if (metrics != null) {
+					metrics.created(clazz, true, start);
+				}
+			}
+			slot.complete(o);
+			completed = true;
+			singletonSlots.remove(clazz, slot);
+			return (T) o;
+		} finally {
+			if (!completed) {
+				slot.fail();
+			}
+		}
+	}
+
 	/**
 	 *
-	 * @param constructor the constructor used for creating new instance
+	 * @param context the resolution context of this call
+	 * @param plan the injection plan whose constructor is used for creating new instance
 	 * @return new instance
 	 */
-	private <T> T createFromConstructor(Constructor<T> constructor) {
-		var params = new Object[constructor.getParameterCount()];
-		var i = 0;
-		for (Parameter parameter : constructor.getParameters()) {
+	private <T> T createFromConstructor(ResolutionContext context, InjectionPlan<T> plan) {
+		var event = new InjectEvents.Construct();
+		event.begin();
+		var constructor = plan.constructor();
+		var instantiator = plan.instantiator(backend);
+		var params = new Object[plan.parameterTypes.length];
+		for (int i = 0; i < params.length; i++) {
+			var type = plan.parameterTypes[i];
 			Object param = null;
-			if (parameter.getClass().isInterface()) {
-				throw new InjectException(String.format("can not create instance form Interface, the root class is %s",constructor.getDeclaringClass().getCanonicalName()));
+			// Provider<T>和Lazy<T>在get()时才解析，不会形成循环依赖
+			if (InjectionPlan.isProvider(type)) {
+				params[i] = providerOf(plan.type, type, plan.parameterProvided[i], plan.parameterKeys[i]);
+				continue;
 			}
 			// 循环依赖对象尚未构建早期引用，此处循环依赖无法解决
-			if (earlyInstances.get(parameter.getType()) == parameter.getType()) {
+			var slot = singletonSlots.get(type);
+			if (context.isConstructing(type) || slot != null && slot.isConstructing()) {
 				throw new InjectException(String.format("circular dependency on constructor , the root class is %s",constructor.getDeclaringClass().getCanonicalName()));
 			}
 			// 循环依赖对象已经构建早期对象
-			if (earlyInstances.containsKey(parameter.getType())) {
-				param = earlyInstances.get(parameter.getType());
+			var early = context.early(type);
+			if (early != null) {
+				param = early;
 			}
 			else {
-				param = createFromParameter(parameter);
+				param = createFromParameter(context, plan, i);
 			}
-			params[i++] = param;
+			params[i] = param;
 		}
+		T target;
 		try {
-			return constructor.newInstance(params);
-		} catch (Exception e) {
+			target = instantiator.newInstance(params);
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
 			throw new InjectException("create instance from constructor error", e);
 		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.type = plan.type;
+			event.qualifier = InjectEvents.qualifierOf(context.key());
+			event.depth = context.depth();
+			event.parameters = params.length;
+			event.commit();
+		}
+		return target;
 	}
 
 	/**
 	 *
-	 * @param parameter from this parameter creating new instance
+	 * @param context the resolution context of this call
+	 * @param plan the injection plan of the class declaring the constructor
+	 * @param index from the parameter of this index creating new instance
 	 * @return new instance
 	 */
 	@SuppressWarnings("unchecked")
-	private <T> T createFromParameter(Parameter parameter) {
-		var clazz = parameter.getType();
+	private <T> T createFromParameter(ResolutionContext context, InjectionPlan<?> plan, int index) {
+		var clazz = plan.parameterTypes[index];
+		context.via(ResolutionTrace.Edge.PARAMETER);
 		// 从缓存队列中创建
-		T t = createFromQualified(parameter.getDeclaringExecutable().getDeclaringClass(), clazz,
-				parameter.getAnnotations());
+		T t = createFromQualified(context, plan.type, clazz, plan.parameterKeys[index]);
 		if (t != null) {
 			return t;
 		}
-		return (T) createNew(clazz);
+		return (T) createNew(context, clazz);
 	}
 
 	/**
 	 *
+	 * @param context the resolution context of this call
+	 * @param plan the injection plan of the class declaring the field
 	 * @param field from this field creating new instance
 	 * @return new instance
 	 */
 	@SuppressWarnings("unchecked")
-	private <T> T createFromField(Field field) {
-		var clazz = field.getType();
+	private <T> T createFromField(ResolutionContext context, InjectionPlan<?> plan, InjectionPlan.InjectableField field) {
+		var clazz = field.type;
+		context.via(ResolutionTrace.Edge.FIELD);
 		// 从缓存队列中创建
-		T t = createFromQualified(field.getDeclaringClass(), field.getType(), field.getAnnotations());
+		T t = createFromQualified(context, plan.type, clazz, field.keys);
 		if (t != null) {
 			return t;
 		}
 		else
-			return (T) createNew(clazz);
+			return (T) createNew(context, clazz);
 	}
 
 	/**
@@ -387,63 +1412,152 @@ public class Injector {
 	 * @param instance an instance whose fields waiting for injection
 	 */
 	public <T> void injectMembers(T instance) {
-		List<Field> fields = new ArrayList<>();
-		for (Field field : instance.getClass().getDeclaredFields()) {
-			if (field.isAnnotationPresent(Inject.class) && field.trySetAccessible()) {
-				fields.add(field);
-			}
+		var plan = planOf(instance.getClass());
+		if (iterative) {
+			new ResolutionContext().stack().injectMembers(this, plan, instance);
+			return;
 		}
-		for (Field field : fields) {
+		injectMembers(new ResolutionContext(), plan, instance);
+	}
+
+	/**
+	 *
+	 * @param context the resolution context of this call
+	 * @param plan the injection plan of the instance's class
+	 * @param instance an instance whose fields waiting for injection
+	 */
+	private void injectMembers(ResolutionContext context, InjectionPlan<?> plan, Object instance) {
+		var event = new InjectEvents.InjectMembers();
+		event.begin();
+		var backend = this.backend;
+		for (var point : plan.fields) {
+			var accessor = point.accessor(backend);
 			try {
-				if (field.get(instance) != null && field.isAnnotationPresent(Singleton.class)) {
+				if (point.singleton && accessor.get(instance) != null) {
 					// 该成员变量为单例且已经被构造器创建（于目标对象初始化时），跳过
 					continue;
 				}
-				Class<?> clazz = field.getType();
-				Annotation[] annotations = field.getDeclaredAnnotations();
-				Annotation namedAnnotation = null;
-				for (Annotation annotation : annotations) {
-					if (annotation.annotationType().isAnnotationPresent(Qualifier.class)) {
-						namedAnnotation = annotation;
-					}
+				Class<?> clazz = point.type;
+				Key key = point.key;
+				if (InjectionPlan.isProvider(clazz)) {
+					accessor.set(instance, providerOf(plan.type, clazz, point.provided, point.keys));
+					continue;
 				}
 				// 0. 若循环依赖，先把构建好的早期对象引用赋予
-				Object obj = earlyInstances.get(clazz);
-				if (obj == clazz) {
+				if (context.isConstructing(clazz)) {
 					throw new InjectException("circle dependent from constructor param" +
 							instance.getClass().getSimpleName() + " asking for" + clazz.getSimpleName() + "in building");
 				}
+				Object obj = context.early(clazz);
+				// 成员变量带有作用域注解，对象在作用域内共享，不放入单例和分类单例队列
+				if (obj == null && point.scope != null) {
+					var id = (key != null ? key : Key.of(clazz)).id;
+					obj = scopeOf(point.scope).scope(id, clazz, () -> createFromField(context, plan, point));
+					accessor.set(instance, obj);
+					continue;
+				}
 				// 1. 尝试从singletonInstances队列中获取
 				if (obj == null) {
-					obj = singletonInstances.get(clazz);
+					obj = singletonOf(clazz);
+					if (obj != null) {
+						InjectEvents.singletonLookup(clazz, key, context.depth() + 1, true);
+					}
 				}
 				// 2. 尝试从qualifiedInstances队列中获取
-				if (obj == null) {
-					Map<Annotation, Object> objectMap = qualifiedInstances.get(clazz);
-					if (objectMap != null) {
-						obj = objectMap.get(namedAnnotation);
-					}
+				if (obj == null && key != null) {
+					obj = qualifiedOf(key);
+				}
+				var trace = this.trace;
+				if (obj != null && trace != null) {
+					trace.cached(context, clazz, key, ResolutionTrace.Edge.FIELD);
 				}
 				// 3. 都没有，重新创建一个
 				if (obj == null) {
-					obj = createFromField(field);
+					obj = createFromField(context, plan, point);
 				}
-				// 将生成的实例放入singletonInstances队列
-				if (field.isAnnotationPresent(Singleton.class)) {
-					singletonInstances.put(clazz, obj);
+				// 将生成的实例放入singletonInstances队列，并发时以先放入的为准
+				if (point.singleton) {
+					var existing = putSingletonIfAbsent(clazz, obj);
+					if (existing != null) {
+						obj = existing;
+					}
 				}
-				// 将生成的实例放入qualifiedInstances队列
-				if (namedAnnotation != null) {
-					Map<Annotation, Object> instanceMap = qualifiedInstances.getOrDefault(clazz, new HashMap<>());
-					instanceMap.put(namedAnnotation, obj);
-					qualifiedInstances.put(clazz, instanceMap);
+				// 将生成的实例放入qualifiedInstances队列，并发时以先放入的为准
+				if (key != null) {
+					var existing = putQualifiedIfAbsent(key, obj);
+					if (existing != null) {
+						obj = existing;
+					}
 				}
-				field.set(instance, obj);
-			} catch (Exception e) {
+				accessor.set(instance, obj);
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable e) {
 				throw new InjectException(
-						String.format("set field for %s@%s error", instance.getClass().getCanonicalName(), field.getName()), e);
+						String.format("set field for %s@%s error", instance.getClass().getCanonicalName(), point.name), e);
+			}
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.type = plan.type;
+			event.qualifier = InjectEvents.qualifierOf(context.key());
+			event.depth = context.depth();
+			event.fields = plan.fields.length;
+			event.commit();
+		}
+	}
+
+	/**
+	 *
+	 * @param declaringClazz the Class declaring the injection point
+	 * @param type Provider or Lazy
+	 * @param provided the type argument of the provider
+	 * @param keys keys of the qualifiers on the injection point
+	 * @return a provider resolving the dependency at get()
+	 */
+	Object providerOf(Class<?> declaringClazz, Class<?> type, Class<?> provided, Key[] keys) {
+		if (provided == null) {
+			throw new InjectException(String.format("unknown type argument of %s in %s",
+					type.getSimpleName(), declaringClazz.getCanonicalName()));
+		}
+		return new BoundProvider<>(this, declaringClazz, provided, keys, type == Lazy.class);
+	}
+
+	/**
+	 * resolve a dependency in a new resolution, called by providers
+	 * @param declaringClazz the Class declaring the provider
+	 * @param clazz the type provided
+	 * @param keys keys of the qualifiers on the provider
+	 * @return the instance
+	 */
+	<T> T resolve(Class<?> declaringClazz, Class<T> clazz, Key[] keys) {
+		var context = new ResolutionContext();
+		T t = createFromQualified(context, declaringClazz, clazz, keys);
+		if (t != null) {
+			return t;
+		}
+		return createNew(context, clazz);
+	}
+
+	/**
+	 *
+	 * @param clazz the type provided
+	 * @param keys keys of the qualifiers on the provider
+	 * @param obj an instance resolved by the provider
+	 * @return whether obj is a singleton or a qualified object cached by this injector
+	 */
+	boolean isShared(Class<?> clazz, Key[] keys, Object obj) {
+		var target = clazz;
+		for (var key : keys) {
+			if (qualifiedOf(key) == obj) {
+				return true;
+			}
+			var z = qualifiedClassOf(key);
+			if (z != null) {
+				target = z;
 			}
 		}
+		return singletonOf(target) == obj;
 	}
 
 	/**
@@ -452,7 +1566,73 @@ public class Injector {
 	 * @return new instance
 	 */
 	public <T> T getInstance(Class<T> clazz) {
-		return createNew(clazz);
+		var metrics = this.metrics;
+		if (metrics != null) {
+			metrics.requested(clazz);
+		}
+		return createNew(new ResolutionContext(), clazz);
+	}
+
+	/**
+	 * resolve the binding of clazz once, the provider can be kept (e.g. in a static field) and called on hot paths
+	 * 绑定在此时解析，之后注册的单例类或限定类对已返回的provider不可见，应在注册完成（或freeze()）之后调用
+	 * @param clazz class type of target
+	 * @return a provider of clazz, returning the same instance for singletons and new instances for other classes
+	 */
+	public <T> Provider<T> getProvider(Class<T> clazz) {
+		return prepareProvider(clazz, Key.NO_KEYS);
+	}
+
+	/**
+	 * resolve the qualified binding of clazz once, the provider can be kept (e.g. in a static field) and called on hot paths
+	 * @param clazz Class or interface of target
+	 * @param annotation an annotation meeting JSR-330 qualified specification, which identifies the concrete implement
+	 * @return a provider of clazz, resolved as an injection point decorated with annotation
+	 */
+	public <T> Provider<T> getProvider(Class<T> clazz, Annotation annotation) {
+		if (!annotation.annotationType().isAnnotationPresent(Qualifier.class)) {
+			throw new InjectException(
+					"annotation must be decorated with Qualifier " + annotation.annotationType().getCanonicalName());
+		}
+		return prepareProvider(clazz, new Key[] { Key.of(clazz, annotation) });
+	}
+
+	/**
+	 * 与注入点的解析顺序一致: 分类单例 -> 限定类 -> 类本身，最终目标为单例时缓存，否则准备好注入计划
+	 * @param clazz class type of target
+	 * @param keys keys of the qualifiers, empty if not qualified
+	 * @return a provider of clazz
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> Provider<T> prepareProvider(Class<T> clazz, Key[] keys) {
+		Class<? extends T> target = clazz;
+		for (var key : keys) {
+			var obj = qualifiedOf(key);
+			if (obj != null) {
+				return PreparedProvider.of(this, clazz, (T) obj);
+			}
+			var z = qualifiedClassOf(key);
+			if (z != null) {
+				target = (Class<? extends T>) z;
+			}
+		}
+		var o = singletonOf(target);
+		if (o != null) {
+			return PreparedProvider.of(this, clazz, (T) o);
+		}
+		var plan = planOf(target);
+		// 构造器的错误在此时抛出，而不是第一次get()时
+		plan.constructor();
+		// 带有作用域注解的类每次get()都经过作用域
+		if (plan.singleton || isSingletonClass(target) || plan.scope != null) {
+			return new PreparedProvider<>(this, clazz, keys, null);
+		}
+		// 提前绑定构造器和成员变量
+		plan.instantiator(backend);
+		for (var field : plan.fields) {
+			field.accessor(backend);
+		}
+		return new PreparedProvider<>(this, clazz, keys, plan);
 	}
 
 
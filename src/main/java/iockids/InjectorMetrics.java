@@ -0,0 +1,448 @@
+package iockids;
+
+import utils.ScanMetrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * injector的运行统计，通过Injector.enableMetrics()开启，关闭时热路径上只多一次成员变量读取:
+ * 1. 每个类的getInstance()次数、创建次数和创建耗时的直方图（按2的幂分桶，耗时包括创建其依赖的时间）
+ *    System.nanoTime()本身需要几十纳秒，普通对象的创建耗时按1/16抽样测量，单例总是测量，创建次数不抽样
+ * 2. 普通对象和单例的创建总数，已缓存的单例和分类单例的个数
+ * 3. Scanner的扫描耗时（见utils.ScanMetrics）
+ * 可通过snapshot()获取某一时刻的统计，或通过registerMBean()在JMX中查看
+ */
+public final class InjectorMetrics implements InjectorMetricsMXBean {
+
+	private static final int BUCKETS = 64;
+
+	/**
+	 * the latency of 1 in SAMPLING creations of non-singletons is measured
+	 */
+	private static final int SAMPLING = 16;
+
+	private final Injector injector;
+
+	private final long enabledAt = System.currentTimeMillis();
+
+	private final Map<Class<?>, Binding> bindings = new ConcurrentHashMap<>();
+
+	private volatile ObjectName objectName;
+
+	InjectorMetrics(Injector injector) {
+		this.injector = injector;
+	}
+
+	/**
+	 * the statistics of a class, updated concurrently
+	 */
+	private static final class Binding {
+
+		final Class<?> type;
+
+		final LongAdder requests = new LongAdder();
+
+		final LongAdder creations = new LongAdder();
+
+		/**
+		 * the number of creations whose latency is measured
+		 */
+		final LongAdder timed = new LongAdder();
+
+		final LongAdder nanos = new LongAdder();
+
+		final AtomicLong maxNanos = new AtomicLong();
+
+		/**
+		 * bucket i counts creations taking [2^i, 2^(i+1)) nanoseconds
+		 */
+		final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+		volatile boolean singleton;
+
+		Binding(Class<?> type) {
+			this.type = type;
+		}
+
+	}
+
+	private Binding binding(Class<?> clazz) {
+		var binding = bindings.get(clazz);
+		if (binding == null) {
+			binding = bindings.computeIfAbsent(clazz, Binding::new);
+		}
+		return binding;
+	}
+
+	/**
+	 * @param clazz the class asked by getInstance()
+	 */
+	void requested(Class<?> clazz) {
+		binding(clazz).requests.increment();
+	}
+
+	/**
+	 * @param singleton whether a singleton is about to be created
+	 * @return the start time if the latency of this creation is measured, 0 otherwise
+	 */
+	long start(boolean singleton) {
+		if (!singleton && ThreadLocalRandom.current().nextInt(SAMPLING) != 0) {
+			return 0;
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * @param clazz the class just created
+	 * @param singleton whether the instance is a singleton
+	 * @param start the value returned by start()
+	 */
+	void created(Class<?> clazz, boolean singleton, long start) {
+		var binding = binding(clazz);
+		binding.singleton = singleton;
+		binding.creations.increment();
+		if (start == 0) {
+			return;
+		}
+		var nanos = System.nanoTime() - start;
+		binding.timed.increment();
+		binding.nanos.add(nanos);
+		binding.histogram.incrementAndGet(Math.max(0, 63 - Long.numberOfLeadingZeros(nanos)));
+		if (nanos > binding.maxNanos.get()) {
+			binding.maxNanos.accumulateAndGet(nanos, Math::max);
+		}
+	}
+
+	@Override
+	public Snapshot getSnapshot() {
+		return snapshot();
+	}
+
+	/**
+	 * @return all counters and per-binding statistics, bindings sorted by creations and then requests
+	 */
+	public Snapshot snapshot() {
+		List<BindingStats> list = new ArrayList<>();
+		for (var binding : bindings.values()) {
+			list.add(new BindingStats(binding));
+		}
+		list.sort(Comparator.comparingLong(BindingStats::getCreations).thenComparingLong(BindingStats::getRequests)
+				.reversed());
+		return new Snapshot(this, list);
+	}
+
+	// 总数在读取时按类累加，热路径上每次只更新一个计数器
+
+	@Override
+	public long getRequests() {
+		long sum = 0;
+		for (var binding : bindings.values()) {
+			sum += binding.requests.sum();
+		}
+		return sum;
+	}
+
+	@Override
+	public long getPrototypeCreations() {
+		return creations(false);
+	}
+
+	@Override
+	public long getSingletonCreations() {
+		return creations(true);
+	}
+
+	private long creations(boolean singleton) {
+		long sum = 0;
+		for (var binding : bindings.values()) {
+			if (binding.singleton == singleton) {
+				sum += binding.creations.sum();
+			}
+		}
+		return sum;
+	}
+
+	@Override
+	public int getSingletonCount() {
+		return injector.singletonCount();
+	}
+
+	@Override
+	public int getQualifiedCount() {
+		return injector.qualifiedCount();
+	}
+
+	@Override
+	public long getScanTimeMillis() {
+		return ScanMetrics.getScanNanos() / 1_000_000;
+	}
+
+	@Override
+	public void reset() {
+		bindings.clear();
+	}
+
+	/**
+	 * register this as an MXBean named iockids:type=Injector,name={name} in the platform MBeanServer
+	 * @param name the name distinguishing injectors
+	 * @return this
+	 */
+	public InjectorMetrics registerMBean(String name) {
+		try {
+			var objectName = new ObjectName("iockids:type=Injector,name=" + ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			this.objectName = objectName;
+		} catch (JMException e) {
+			throw new InjectException("register metrics MBean error", e);
+		}
+		return this;
+	}
+
+	/**
+	 * unregister the MBean registered by registerMBean()
+	 */
+	public void unregisterMBean() {
+		var objectName = this.objectName;
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException ignored) {
+		}
+		this.objectName = null;
+	}
+
+	/**
+	 * the statistics of a class at a moment
+	 */
+	public static final class BindingStats {
+
+		private final String type;
+
+		private final boolean singleton;
+
+		private final long requests;
+
+		private final long creations;
+
+		private final long timed;
+
+		private final long totalNanos;
+
+		private final long maxNanos;
+
+		private final long[] histogram = new long[BUCKETS];
+
+		private BindingStats(Binding binding) {
+			this.type = binding.type.getName();
+			this.singleton = binding.singleton;
+			this.requests = binding.requests.sum();
+			this.creations = binding.creations.sum();
+			this.timed = binding.timed.sum();
+			this.totalNanos = binding.nanos.sum();
+			this.maxNanos = binding.maxNanos.get();
+			for (int i = 0; i < BUCKETS; i++) {
+				histogram[i] = binding.histogram.get(i);
+			}
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public boolean isSingleton() {
+			return singleton;
+		}
+
+		public long getRequests() {
+			return requests;
+		}
+
+		public long getCreations() {
+			return creations;
+		}
+
+		/**
+		 * @return the number of creations whose latency is measured
+		 */
+		public long getTimedCreations() {
+			return timed;
+		}
+
+		/**
+		 * @return the total latency of the measured creations
+		 */
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+
+		public long getMaxNanos() {
+			return maxNanos;
+		}
+
+		public long getMeanNanos() {
+			return timed == 0 ? 0 : totalNanos / timed;
+		}
+
+		public long getP50Nanos() {
+			return percentile(50);
+		}
+
+		public long getP99Nanos() {
+			return percentile(99);
+		}
+
+		/**
+		 * @param p percentage from 0 to 100
+		 * @return the upper bound of the bucket holding the percentile, 0 if nothing is created
+		 */
+		public long percentile(double p) {
+			long total = 0;
+			for (var count : histogram) {
+				total += count;
+			}
+			if (total == 0) {
+				return 0;
+			}
+			var rank = Math.max(1, (long) Math.ceil(p / 100 * total));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += histogram[i];
+				if (seen >= rank) {
+					return i == BUCKETS - 1 ? Long.MAX_VALUE : Math.min((1L << (i + 1)) - 1, maxNanos);
+				}
+			}
+			return maxNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s requests=%d creations=%d mean=%dns p50<=%dns p99<=%dns max=%dns", type, requests,
+					creations, getMeanNanos(), getP50Nanos(), getP99Nanos(), maxNanos);
+		}
+
+	}
+
+	/**
+	 * all counters at a moment
+	 */
+	public static final class Snapshot {
+
+		private final long timestamp = System.currentTimeMillis();
+
+		private final long elapsedMillis;
+
+		private final long requests;
+
+		private final long prototypeCreations;
+
+		private final long singletonCreations;
+
+		private final int singletonCount;
+
+		private final int qualifiedCount;
+
+		private final long scanCount;
+
+		private final long scanNanos;
+
+		private final long scannedClasses;
+
+		private final List<BindingStats> bindings;
+
+		private Snapshot(InjectorMetrics metrics, List<BindingStats> bindings) {
+			this.elapsedMillis = timestamp - metrics.enabledAt;
+			long requests = 0;
+			long prototypeCreations = 0;
+			long singletonCreations = 0;
+			for (var binding : bindings) {
+				requests += binding.requests;
+				if (binding.singleton) {
+					singletonCreations += binding.creations;
+				} else {
+					prototypeCreations += binding.creations;
+				}
+			}
+			this.requests = requests;
+			this.prototypeCreations = prototypeCreations;
+			this.singletonCreations = singletonCreations;
+			this.singletonCount = metrics.getSingletonCount();
+			this.qualifiedCount = metrics.getQualifiedCount();
+			this.scanCount = ScanMetrics.getScanCount();
+			this.scanNanos = ScanMetrics.getScanNanos();
+			this.scannedClasses = ScanMetrics.getScannedClasses();
+			this.bindings = List.copyOf(bindings);
+		}
+
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		/**
+		 * @return milliseconds since the metrics were enabled
+		 */
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		public long getRequests() {
+			return requests;
+		}
+
+		public long getPrototypeCreations() {
+			return prototypeCreations;
+		}
+
+		public long getSingletonCreations() {
+			return singletonCreations;
+		}
+
+		/**
+		 * @return non-singleton instances created per second since the metrics were enabled
+		 */
+		public double getPrototypeCreationRate() {
+			return elapsedMillis == 0 ? 0 : prototypeCreations * 1000.0 / elapsedMillis;
+		}
+
+		public int getSingletonCount() {
+			return singletonCount;
+		}
+
+		public int getQualifiedCount() {
+			return qualifiedCount;
+		}
+
+		public long getScanCount() {
+			return scanCount;
+		}
+
+		public long getScanNanos() {
+			return scanNanos;
+		}
+
+		public long getScannedClasses() {
+			return scannedClasses;
+		}
+
+		/**
+		 * @return statistics of each class, sorted by creations and then requests
+		 */
+		public List<BindingStats> getBindings() {
+			return bindings;
+		}
+
+	}
+
+}
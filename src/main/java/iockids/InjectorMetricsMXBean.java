@@ -0,0 +1,48 @@
+package iockids;
+
+/**
+ * InjectorMetrics在JMX中的视图，通过InjectorMetrics.registerMBean()注册到平台MBeanServer
+ */
+public interface InjectorMetricsMXBean {
+
+	/**
+	 * @return all counters and per-binding statistics taken at the same moment
+	 */
+	InjectorMetrics.Snapshot getSnapshot();
+
+	/**
+	 * @return the number of getInstance() calls
+	 */
+	long getRequests();
+
+	/**
+	 * @return the number of instances created for non-singleton classes
+	 */
+	long getPrototypeCreations();
+
+	/**
+	 * @return the number of singletons created
+	 */
+	long getSingletonCreations();
+
+	/**
+	 * @return the number of cached singletons
+	 */
+	int getSingletonCount();
+
+	/**
+	 * @return the number of cached qualified objects
+	 */
+	int getQualifiedCount();
+
+	/**
+	 * @return the total time of all classpath scans in milliseconds
+	 */
+	long getScanTimeMillis();
+
+	/**
+	 * clear all counters and per-binding statistics
+	 */
+	void reset();
+
+}
@@ -0,0 +1,126 @@
+package iockids;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+
+/**
+ * 检查injector的运行统计:
+ * 1. getInstance()次数、普通对象和单例的创建次数按类统计，总数与各类之和一致
+ * 2. 单例的创建耗时总是测量，分位数落在测量到的范围内；普通对象按抽样测量
+ * 3. 注册为MXBean后可在平台MBeanServer中读取，disableMetrics()时注销，之后再开启可用同一名称重新注册
+ * 运行main()，不一致时抛出AssertionError
+ */
+public class InjectorMetricsTest {
+
+	private static final int PROTOTYPES = 1600;
+
+	static class Part {
+	}
+
+	@Singleton
+	static class Slow {
+
+		Slow() throws InterruptedException {
+			Thread.sleep(5);
+		}
+	}
+
+	static class Machine {
+
+		@Inject
+		Part part;
+
+		@Inject
+		Slow slow;
+	}
+
+	public static void main(String[] args) throws Exception {
+		var injector = new Injector(false);
+		injector.getInstance(Part.class);
+		check(injector.getMetrics() == null, "metrics are off by default");
+
+		var metrics = injector.enableMetrics().getMetrics();
+		for (int i = 0; i < PROTOTYPES; i++) {
+			injector.getInstance(Machine.class);
+		}
+		injector.getInstance(Slow.class);
+		check(metrics.getRequests() == PROTOTYPES + 1, "getInstance() calls are counted");
+		check(metrics.getPrototypeCreations() == 2 * PROTOTYPES && metrics.getSingletonCreations() == 1,
+				"creations of dependencies are counted, the singleton is created once");
+		check(metrics.getSingletonCount() >= 1, "cached singletons are counted");
+
+		var snapshot = metrics.snapshot();
+		check(snapshot.getRequests() == metrics.getRequests()
+				&& snapshot.getPrototypeCreations() == metrics.getPrototypeCreations()
+				&& snapshot.getSingletonCreations() == metrics.getSingletonCreations(),
+				"totals of the snapshot are the sums of the bindings");
+		var part = stats(snapshot, Part.class);
+		var machine = stats(snapshot, Machine.class);
+		var slow = stats(snapshot, Slow.class);
+		check(part.getRequests() == 0 && part.getCreations() == PROTOTYPES
+				&& machine.getRequests() == PROTOTYPES && machine.getCreations() == PROTOTYPES,
+				"requests and creations are counted per class");
+		check(snapshot.getBindings().get(0).getCreations() == PROTOTYPES && slow.isSingleton() && !part.isSingleton(),
+				"bindings are sorted by creations");
+		check(slow.getTimedCreations() == 1 && slow.getTotalNanos() >= 5_000_000 && slow.getMaxNanos() == slow.getTotalNanos(),
+				"creation of the singleton is always measured");
+		check(slow.getP50Nanos() == slow.getMaxNanos() && slow.getP99Nanos() == slow.getMaxNanos(),
+				"percentiles of a single creation are its latency");
+		check(machine.getTimedCreations() > 0 && machine.getTimedCreations() < PROTOTYPES,
+				"creations of non-singletons are sampled: " + machine.getTimedCreations() + " of " + PROTOTYPES);
+		var p50 = machine.getP50Nanos();
+		var p99 = machine.getP99Nanos();
+		check(machine.percentile(0) <= p50 && p50 <= p99 && p99 <= machine.getMaxNanos(),
+				"percentiles are ordered and bounded by the maximum: " + machine);
+		injector.getInstance(Part.class);
+		check(stats(snapshot, Part.class).getRequests() == 0 && stats(metrics.snapshot(), Part.class).getRequests() == 1,
+				"a snapshot does not change afterwards");
+
+		var server = ManagementFactory.getPlatformMBeanServer();
+		var name = new ObjectName("iockids:type=Injector,name=" + ObjectName.quote("metrics-test"));
+		metrics.registerMBean("metrics-test");
+		check(server.isRegistered(name) && (Long) server.getAttribute(name, "Requests") == metrics.getRequests(),
+				"counters are read through JMX");
+		var composite = (CompositeData) server.getAttribute(name, "Snapshot");
+		check((Long) composite.get("singletonCreations") == 1 && ((CompositeData[]) composite.get("bindings")).length == 3,
+				"the snapshot is read through JMX as open data");
+		try {
+			injector.createChild().enableMetrics().getMetrics().registerMBean("metrics-test");
+			check(false, "a name can only be registered once");
+		} catch (InjectException e) {
+			check(true, "a name can only be registered once");
+		}
+		server.invoke(name, "reset", null, null);
+		check(metrics.getRequests() == 0, "reset() is invoked through JMX");
+
+		injector.disableMetrics();
+		check(!server.isRegistered(name) && injector.getMetrics() == null, "disableMetrics() unregisters the MBean");
+		var again = injector.enableMetrics().getMetrics().registerMBean("metrics-test");
+		injector.getInstance(Part.class);
+		check(again != metrics && server.isRegistered(name) && (Long) server.getAttribute(name, "Requests") == 1,
+				"metrics enabled again are registered under the same name and start from zero");
+		injector.disableMetrics();
+		check(!server.isRegistered(name), "the MBean registered again is unregistered");
+		System.out.println("InjectorMetricsTest passed");
+	}
+
+	private static InjectorMetrics.BindingStats stats(InjectorMetrics.Snapshot snapshot, Class<?> clazz) {
+		for (var stats : snapshot.getBindings()) {
+			if (stats.getType().equals(clazz.getName())) {
+				return stats;
+			}
+		}
+		throw new AssertionError("no statistics of " + clazz.getName());
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+		System.out.println("ok: " + message);
+	}
+
+}
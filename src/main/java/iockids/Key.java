@@ -0,0 +1,110 @@
+package iockids;
+
+import java.lang.annotation.Annotation;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 绑定的键：类型 + 限定器（可为空）
+ * 每个(类型, 限定器)只对应一个Key对象，在注册绑定或解析注入计划时创建，之后按对象本身比较，
+ * 查找时无需再调用注解代理的hashCode()和equals()
+ */
+final class Key {
+
+	private static final AtomicInteger IDS = new AtomicInteger();
+
+	private static final Object UNQUALIFIED = new Object();
+
+	static final Key[] NO_KEYS = new Key[0];
+
+	/**
+	 * type -> qualifier (or UNQUALIFIED) -> key
+	 */
+	private static final ClassValue<Map<Object, Key>> KEYS = new ClassValue<>() {
+		@Override
+		protected Map<Object, Key> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	/**
+	 * type -> key without qualifier, the fast path of of(Class)
+	 */
+	private static final ClassValue<Key> UNQUALIFIED_KEYS = new ClassValue<>() {
+		@Override
+		protected Key computeValue(Class<?> type) {
+			return of(type, (Annotation) null);
+		}
+	};
+
+	final Class<?> type;
+
+	/**
+	 * the first qualifier interned for this key, equal to all the others by the contract of Annotation
+	 */
+	final Annotation qualifier;
+
+	/**
+	 * unique among all keys, usable as an array index
+	 */
+	final int id;
+
+	private final int hash;
+
+	private Key(Class<?> type, Annotation qualifier) {
+		this.type = type;
+		this.qualifier = qualifier;
+		this.id = IDS.getAndIncrement();
+		this.hash = 31 * type.hashCode() + (qualifier == null ? 0 : qualifier.hashCode());
+	}
+
+	/**
+	 * @param type the type bound
+	 * @return the interned key without qualifier
+	 */
+	static Key of(Class<?> type) {
+		return UNQUALIFIED_KEYS.get(type);
+	}
+
+	/**
+	 * @param type the type bound
+	 * @param qualifier an annotation decorated with Qualifier, or null
+	 * @return the interned key
+	 */
+	static Key of(Class<?> type, Annotation qualifier) {
+		var keys = KEYS.get(type);
+		var lookup = qualifier == null ? UNQUALIFIED : qualifier;
+		var key = keys.get(lookup);
+		if (key == null) {
+			key = keys.computeIfAbsent(lookup, (k) -> new Key(type, qualifier));
+		}
+		return key;
+	}
+
+	/**
+	 * @param type the type bound
+	 * @param qualifiers annotations decorated with Qualifier
+	 * @return the interned keys, one for each qualifier
+	 */
+	static Key[] of(Class<?> type, Annotation[] qualifiers) {
+		if (qualifiers.length == 0) {
+			return NO_KEYS;
+		}
+		var keys = new Key[qualifiers.length];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = of(type, qualifiers[i]);
+		}
+		return keys;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return qualifier == null ? type.getName() : qualifier + " " + type.getName();
+	}
+}
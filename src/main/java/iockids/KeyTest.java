@@ -0,0 +1,149 @@
+package iockids;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 检查绑定键的驻留:
+ * 1. 相同的(类型, 限定器)只对应一个Key，无论限定器是反射读取的还是直接构造的，并发创建时也是如此
+ * 2. 注入计划中的键与注册绑定时的键是同一个对象，解析时不再调用限定器的hashCode()和equals()
+ * 运行main()，不一致时抛出AssertionError
+ */
+public class KeyTest {
+
+	interface Greeter {
+	}
+
+	static class English implements Greeter {
+	}
+
+	static class French implements Greeter {
+	}
+
+	static class Client {
+
+		@Inject
+		@Named("en")
+		Greeter greeter;
+
+		final Greeter other;
+
+		@Inject
+		Client(@Named("fr") Greeter other) {
+			this.other = other;
+		}
+	}
+
+	/**
+	 * @Named的实现，记录hashCode()、equals()和value()的调用次数
+	 */
+	static final class CountingNamed implements Named {
+
+		static final AtomicInteger CALLS = new AtomicInteger();
+
+		private final String value;
+
+		CountingNamed(String value) {
+			this.value = value;
+		}
+
+		@Override
+		public String value() {
+			CALLS.incrementAndGet();
+			return value;
+		}
+
+		@Override
+		public Class<? extends Annotation> annotationType() {
+			return Named.class;
+		}
+
+		@Override
+		public int hashCode() {
+			CALLS.incrementAndGet();
+			return (127 * "value".hashCode()) ^ value.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			CALLS.incrementAndGet();
+			return o instanceof Named && value.equals(((Named) o).value());
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		var reflected = Client.class.getDeclaredField("greeter").getAnnotation(Named.class);
+		check(Key.of(Greeter.class) == Key.of(Greeter.class) && Key.of(Greeter.class) == Key.of(Greeter.class, (Annotation) null),
+				"keys without qualifier are interned");
+		check(Key.of(Greeter.class, reflected) == Key.of(Greeter.class, Qualifiers.named("en")),
+				"a reflected and a constructed @Named intern to the same key");
+		check(Key.of(Greeter.class, Qualifiers.named("en")) != Key.of(Greeter.class, Qualifiers.named("fr"))
+				&& Key.of(Greeter.class, reflected) != Key.of(English.class, reflected)
+				&& Key.of(Greeter.class, reflected) != Key.of(Greeter.class), "different types or qualifiers get different keys");
+		check(Key.of(Greeter.class, Qualifiers.named("en")).id != Key.of(Greeter.class, Qualifiers.named("fr")).id,
+				"ids are unique");
+		var keys = Key.of(Greeter.class, new Annotation[] {reflected, Qualifiers.named("fr")});
+		check(keys[0] == Key.of(Greeter.class, reflected) && keys[1] == Key.of(Greeter.class, Qualifiers.named("fr"))
+				&& Key.of(Greeter.class, new Annotation[0]) == Key.NO_KEYS, "keys of several qualifiers are interned");
+		concurrent();
+
+		var injector = new Injector(false);
+		injector.registerQualifiedClass(Greeter.class, new CountingNamed("en"), English.class)
+				.registerQualifiedClass(Greeter.class, Qualifiers.named("fr"), French.class);
+		var plan = injector.planOf(Client.class);
+		check(plan.fields[0].keys[0] == Key.of(Greeter.class, Qualifiers.named("en"))
+				&& plan.parameterKeys[0][0] == Key.of(Greeter.class, new CountingNamed("fr")),
+				"plans hold the interned keys");
+		var client = injector.getInstance(Client.class);
+		check(client.greeter instanceof English && client.other instanceof French, "qualified bindings are found by the keys");
+		CountingNamed.CALLS.set(0);
+		for (int i = 0; i < 1000; i++) {
+			injector.getInstance(Client.class);
+		}
+		check(CountingNamed.CALLS.get() == 0, "lookups reuse the keys without calling hashCode() or equals() of qualifiers");
+		System.out.println("KeyTest passed");
+	}
+
+	/**
+	 * 多个线程同时驻留同一个(类型, 限定器)
+	 */
+	private static void concurrent() throws Exception {
+		var threads = 8;
+		var executor = Executors.newFixedThreadPool(threads);
+		try {
+			var start = new CountDownLatch(1);
+			List<Future<Key>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					return Key.of(French.class, Qualifiers.named("concurrent"));
+				}));
+			}
+			start.countDown();
+			var first = futures.get(0).get();
+			for (var future : futures) {
+				if (future.get() != first) {
+					throw new AssertionError("keys interned concurrently differ");
+				}
+			}
+			check(first == Key.of(French.class, Qualifiers.named("concurrent")), "keys interned concurrently are the same");
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+		System.out.println("ok: " + message);
+	}
+
+}
@@ -0,0 +1,15 @@
+package iockids;
+
+/**
+ * 延迟注入的依赖，第一次调用get()时才创建，之后总是返回同一个对象
+ * 与javax.inject.Provider不同，非单例的依赖也只创建一次
+ */
+public interface Lazy<T> {
+
+	/**
+	 * create the dependency at the first call
+	 * @return the same instance at every call
+	 */
+	T get();
+
+}
@@ -0,0 +1,65 @@
+package iockids;
+
+import javax.inject.Provider;
+
+/**
+ * Injector.getProvider()返回的对象，绑定在创建时只解析一次:
+ * 1. 解析到单例或分类单例，第一次get()后缓存，之后的get()只读取一个volatile成员变量
+ * 2. 解析到普通类，get()直接按已准备好的注入计划创建对象，不再查找单例表和限定类表
+ */
+final class PreparedProvider<T> implements Provider<T> {
+
+	private final Injector injector;
+
+	private final Class<T> type;
+
+	private final Key[] keys;
+
+	/**
+	 * the plan of the class created at every get(), null if the binding is shared
+	 */
+	private final InjectionPlan<? extends T> prototype;
+
+	private volatile T instance;
+
+	PreparedProvider(Injector injector, Class<T> type, Key[] keys, InjectionPlan<? extends T> prototype) {
+		this.injector = injector;
+		this.type = type;
+		this.keys = keys;
+		this.prototype = prototype;
+	}
+
+	/**
+	 * @param injector the injector owning the instance
+	 * @param type the type provided
+	 * @param instance a singleton or qualified object already created
+	 * @return a provider always returning instance
+	 */
+	static <T> PreparedProvider<T> of(Injector injector, Class<T> type, T instance) {
+		var provider = new PreparedProvider<>(injector, type, Key.NO_KEYS, null);
+		provider.instance = instance;
+		return provider;
+	}
+
+	@Override
+	public T get() {
+		var prototype = this.prototype;
+		if (prototype != null) {
+			return injector.createPrototype(prototype);
+		}
+		var o = instance;
+		if (o != null) {
+			return o;
+		}
+		o = injector.resolve(type, type, keys);
+		if (injector.isShared(type, keys, o)) {
+			instance = o;
+		}
+		return o;
+	}
+
+	@Override
+	public String toString() {
+		return "Provider<" + type.getName() + ">";
+	}
+}
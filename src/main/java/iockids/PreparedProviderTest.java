@@ -0,0 +1,142 @@
+package iockids;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Qualifier;
+import javax.inject.Singleton;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 检查getProvider()返回的provider，在每种构造方式和解析方式下:
+ * 1. 解析到普通类时每次get()直接按注入计划创建新对象，依赖照常注入
+ * 2. 限定器照常解析：分类单例、标记限定器和@Named限定的类；带作用域注解的类每次get()都经过作用域
+ * 3. 只有get()得到的对象是本injector缓存的单例或分类单例时才缓存，作用域中的对象不缓存
+ * 运行main()，不一致时抛出AssertionError
+ */
+public class PreparedProviderTest {
+
+	@Qualifier
+	@Retention(RetentionPolicy.RUNTIME)
+	@interface Fast {
+	}
+
+	interface Engine {
+	}
+
+	@Fast
+	static class FastEngine implements Engine {
+	}
+
+	static class NamedEngine implements Engine {
+	}
+
+	@Singleton
+	static class SharedEngine implements Engine {
+	}
+
+	@Singleton
+	static class Factory {
+
+		static int created;
+
+		Factory() {
+			created++;
+		}
+	}
+
+	static class Part {
+	}
+
+	static class Machine {
+
+		@Inject
+		Factory factory;
+
+		final Part part;
+
+		@Inject
+		Machine(Part part) {
+			this.part = part;
+		}
+	}
+
+	@ThreadScoped
+	static class Worker {
+	}
+
+	public static void main(String[] args) throws Exception {
+		for (var backend : InjectBackend.values()) {
+			for (var iterative : new boolean[] {false, true}) {
+				run(backend, iterative);
+			}
+		}
+		System.out.println("PreparedProviderTest passed");
+	}
+
+	private static void run(InjectBackend backend, boolean iterative) throws Exception {
+		var mode = " (" + backend + (iterative ? ", iterative)" : ", recursive)");
+		var injector = new Injector(false).useBackend(backend).useIterativeResolver(iterative);
+		injector.bindScope(ThreadScoped.class, new ThreadScope());
+		var named = Qualifiers.named("named");
+		var shared = Qualifiers.named("shared");
+		var fixed = new NamedEngine();
+		injector.registerQualifiedClass(Engine.class, FastEngine.class)
+				.registerQualifiedClass(Engine.class, named, NamedEngine.class)
+				.registerQualifiedClass(Engine.class, shared, SharedEngine.class)
+				.putQualified(Engine.class, Qualifiers.named("fixed"), fixed);
+
+		Factory.created = 0;
+		var machines = injector.getProvider(Machine.class);
+		check(cached(machines) == null && Factory.created == 0, "preparing a provider creates nothing" + mode);
+		var first = machines.get();
+		var second = machines.get();
+		check(first != second && first.part != second.part && first.part != null,
+				"a fresh prototype and fresh dependencies at each get()" + mode);
+		check(first.factory == second.factory && first.factory == injector.getInstance(Factory.class) && Factory.created == 1,
+				"singleton dependencies of prototypes are shared" + mode);
+		check(cached(machines) == null, "prototypes are not cached" + mode);
+
+		var fast = injector.getProvider(Engine.class, FastEngine.class.getAnnotation(Fast.class));
+		var byName = injector.getProvider(Engine.class, named);
+		check(fast.get() instanceof FastEngine && fast.get() != fast.get(), "marker qualifiers are resolved" + mode);
+		check(byName.get() instanceof NamedEngine && byName.get() != byName.get() && byName.get() != fixed,
+				"@Named qualifiers are resolved" + mode);
+		var fixedProvider = injector.getProvider(Engine.class, Qualifiers.named("fixed"));
+		check(fixedProvider.get() == fixed && cached(fixedProvider) == fixed, "qualified objects are returned as they are" + mode);
+
+		var sharedProvider = injector.getProvider(Engine.class, shared);
+		check(cached(sharedProvider) == null, "a singleton not created yet is not cached" + mode);
+		var engine = sharedProvider.get();
+		check(engine instanceof SharedEngine && cached(sharedProvider) == engine && sharedProvider.get() == engine
+				&& injector.getInstance(SharedEngine.class) == engine, "a singleton is cached after the first get()" + mode);
+
+		var workers = injector.getProvider(Worker.class);
+		var worker = workers.get();
+		var other = new AtomicReference<Worker>();
+		var thread = new Thread(() -> other.set(workers.get()));
+		thread.start();
+		thread.join();
+		check(worker == workers.get() && other.get() != null && other.get() != worker,
+				"scoped classes go through the scope at each get()" + mode);
+		check(cached(workers) == null, "scoped instances are not cached" + mode);
+	}
+
+	/**
+	 * @return the instance cached by the provider
+	 */
+	private static Object cached(Provider<?> provider) throws ReflectiveOperationException {
+		var field = PreparedProvider.class.getDeclaredField("instance");
+		field.setAccessible(true);
+		return field.get(provider);
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+		System.out.println("ok: " + message);
+	}
+
+}
@@ -0,0 +1,84 @@
+package iockids;
+
+import javax.inject.Named;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Proxy;
+import java.util.Objects;
+
+/**
+ * 在代码中直接构造限定器，无需从类或成员变量上反射读取，主要供生成的代码使用
+ */
+public final class Qualifiers {
+
+	private Qualifiers() {
+	}
+
+	/**
+	 * @param value the name
+	 * @return an instance of @Named(value) which equals to the one read by reflection
+	 */
+	public static Named named(String value) {
+		return new NamedImpl(value);
+	}
+
+	/**
+	 * @param type a qualifier without members, such as @Blue
+	 * @return an instance of the qualifier which equals to the one read by reflection
+	 */
+	static Annotation marker(Class<? extends Annotation> type) {
+		// 没有成员的注解按约定：同类型即相等，hashCode为0
+		return (Annotation) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "annotationType":
+					return type;
+				case "hashCode":
+					return 0;
+				case "equals":
+					return type.isInstance(args[0]);
+				case "toString":
+					return "@" + type.getName() + "()";
+				default:
+					throw new UnsupportedOperationException(method.toString());
+			}
+		});
+	}
+
+	private static final class NamedImpl implements Named {
+
+		private final String value;
+
+		NamedImpl(String value) {
+			this.value = Objects.requireNonNull(value);
+		}
+
+		@Override
+		public String value() {
+			return value;
+		}
+
+		@Override
+		public Class<? extends Annotation> annotationType() {
+			return Named.class;
+		}
+
+		/**
+		 * 按java.lang.annotation.Annotation的约定计算，保证与反射得到的@Named实例相等
+		 */
+		@Override
+		public int hashCode() {
+			return (127 * "value".hashCode()) ^ value.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Named && value.equals(((Named) o).value());
+		}
+
+		@Override
+		public String toString() {
+			return "@" + Named.class.getName() + "(\"" + value + "\")";
+		}
+
+	}
+
+}
@@ -0,0 +1,53 @@
+package iockids;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * 请求作用域，在同一线程的enter()和exit()之间，每个类一个对象
+ * 每个线程的槽位数组在多次请求之间复用，exit()只清空数组，进入和退出作用域不分配对象
+ */
+public final class RequestScope extends SlotScope {
+
+	private final ThreadLocal<Instances> instances = ThreadLocal.withInitial(Instances::new);
+
+	/**
+	 * start a request on the current thread
+	 */
+	public void enter() {
+		var instances = this.instances.get();
+		if (instances.active) {
+			throw new InjectException("request scope is already entered on thread " + Thread.currentThread().getName());
+		}
+		instances.active = true;
+	}
+
+	/**
+	 * end the request of the current thread, dropping all its instances
+	 */
+	public void exit() {
+		var instances = this.instances.get();
+		if (!instances.active) {
+			throw new InjectException("request scope is not entered on thread " + Thread.currentThread().getName());
+		}
+		Arrays.fill(instances.values, null);
+		instances.active = false;
+	}
+
+	/**
+	 * @return whether the current thread is in a request
+	 */
+	public boolean isActive() {
+		return instances.get().active;
+	}
+
+	@Override
+	public <T> T scope(int id, Class<T> type, Supplier<? extends T> unscoped) {
+		var instances = this.instances.get();
+		if (!instances.active) {
+			throw new InjectException("request scope is not entered, cannot create " + type.getCanonicalName());
+		}
+		return get(instances, id, unscoped);
+	}
+
+}
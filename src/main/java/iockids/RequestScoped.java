@@ -0,0 +1,18 @@
+package iockids;
+
+import javax.inject.Scope;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 在RequestScope.enter()和exit()之间每个线程一个对象，需通过Injector.bindScope()绑定
+ */
+@Scope
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.FIELD})
+public @interface RequestScoped {
+}
@@ -0,0 +1,139 @@
+package iockids;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 一次getInstance()或injectMembers()调用的解析上下文，只在调用线程的栈上传递，不同线程之间互不可见
+ * 记录本次调用中正在创建的类，用于发现循环依赖和暴露早期对象:
+ * 1. 构造器尚未返回，值为类本身
+ * 2. 构造器已返回、正在注入成员变量，值为早期对象
+ * 同时记录当前的嵌套深度和正在创建的对象的Key，供JFR事件使用；开启解析树记录时还记录当前节点和依赖的引入方式
+ */
+final class ResolutionContext {
+
+	private final Map<Class<?>, Object> earlyInstances = new HashMap<>();
+
+	private int depth;
+
+	private Key key;
+
+	private ResolutionTrace.Node traceNode;
+
+	private ResolutionTrace.Edge via = ResolutionTrace.Edge.ROOT;
+
+	private ResolutionStack stack;
+
+	/**
+	 * enter the creation of a dependency
+	 * @param key the qualified key the object is created for, null if unqualified
+	 * @return the depth of the created object
+	 */
+	int enter(Key key) {
+		this.key = key;
+		return ++depth;
+	}
+
+	/**
+	 * leave the creation entered at the given depth
+	 * @param depth the value returned by enter()
+	 * @param outer the key of the enclosing creation
+	 */
+	void exit(int depth, Key outer) {
+		this.depth = depth - 1;
+		this.key = outer;
+	}
+
+	/**
+	 * @return the depth of the object being created, 0 if none
+	 */
+	int depth() {
+		return depth;
+	}
+
+	/**
+	 * @return the qualified key of the object being created, null if unqualified or none
+	 */
+	Key key() {
+		return key;
+	}
+
+	/**
+	 * @param via how the next dependency is introduced, by createFromParameter or createFromField
+	 */
+	void via(ResolutionTrace.Edge via) {
+		this.via = via;
+	}
+
+	/**
+	 * @return how the dependency being resolved is introduced
+	 */
+	ResolutionTrace.Edge via() {
+		return via;
+	}
+
+	/**
+	 * @param node the node of the object being created in the resolution trace
+	 */
+	void traceNode(ResolutionTrace.Node node) {
+		this.traceNode = node;
+	}
+
+	/**
+	 * @return the node of the object being created, null if none or not tracing
+	 */
+	ResolutionTrace.Node traceNode() {
+		return traceNode;
+	}
+
+	/**
+	 * @return the work stack of the iterative resolver, created at the first call
+	 */
+	ResolutionStack stack() {
+		var stack = this.stack;
+		if (stack == null) {
+			stack = new ResolutionStack(this);
+			this.stack = stack;
+		}
+		return stack;
+	}
+
+	/**
+	 * @param clazz the class whose constructor is about to be called
+	 */
+	void constructing(Class<?> clazz) {
+		earlyInstances.put(clazz, clazz);
+	}
+
+	/**
+	 * @param clazz the class whose constructor has returned
+	 * @param early the instance whose members are not injected yet
+	 */
+	void constructed(Class<?> clazz, Object early) {
+		earlyInstances.put(clazz, early);
+	}
+
+	/**
+	 * @param clazz the class whose instance is fully injected
+	 */
+	void finished(Class<?> clazz) {
+		earlyInstances.remove(clazz);
+	}
+
+	/**
+	 * @param clazz the class being created in this resolution
+	 * @return whether the constructor of clazz is still running
+	 */
+	boolean isConstructing(Class<?> clazz) {
+		return earlyInstances.get(clazz) == clazz;
+	}
+
+	/**
+	 * @param clazz the class being created in this resolution
+	 * @return the early instance, or null if clazz is not being created or its constructor is still running
+	 */
+	Object early(Class<?> clazz) {
+		var o = earlyInstances.get(clazz);
+		return o == clazz ? null : o;
+	}
+}
@@ -0,0 +1,77 @@
+package iockids;
+
+import javax.inject.Inject;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * 检查早期对象只在一次解析（一次getInstance()或injectMembers()）内可见:
+ * 1. 普通对象成员变量的循环依赖在同一次解析内使用早期对象
+ * 2. 多个线程同时解析时各自得到自己的对象树，不会拿到其他线程的早期对象
+ * 递归和迭代两种解析方式各运行一次，运行main()，不一致时抛出AssertionError
+ */
+public class ResolutionContextTest {
+
+	static class Parent {
+
+		@Inject
+		Child child;
+	}
+
+	static class Child {
+
+		@Inject
+		Parent parent;
+	}
+
+	public static void main(String[] args) throws Exception {
+		for (var iterative : new boolean[] {false, true}) {
+			var resolver = iterative ? "iterative" : "recursive";
+			var injector = new Injector(false).useIterativeResolver(iterative);
+
+			var parent = injector.getInstance(Parent.class);
+			check(parent.child.parent == parent, resolver + ": early instance is used within one resolution");
+			check(injector.getInstance(Parent.class) != parent, resolver + ": a new resolution creates new objects");
+
+			var existing = new Parent();
+			injector.injectMembers(existing);
+			check(existing.child.parent.child == existing.child, resolver + ": injectMembers() resolves the cycle within its resolution");
+
+			var threads = new Thread[8];
+			var parents = new Parent[threads.length];
+			var barrier = new CyclicBarrier(threads.length);
+			for (int i = 0; i < threads.length; i++) {
+				var index = i;
+				threads[i] = new Thread(() -> {
+					try {
+						barrier.await();
+					} catch (Exception e) {
+						return;
+					}
+					for (int j = 0; j < 1000; j++) {
+						var p = injector.getInstance(Parent.class);
+						if (p.child.parent != p) {
+							return;
+						}
+						parents[index] = p;
+					}
+				});
+				threads[i].start();
+			}
+			var isolated = true;
+			for (int i = 0; i < threads.length; i++) {
+				threads[i].join();
+				isolated &= parents[i] != null;
+			}
+			check(isolated, resolver + ": concurrent resolutions do not share early instances");
+		}
+		System.out.println("ResolutionContextTest passed");
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+		System.out.println("ok: " + message);
+	}
+
+}
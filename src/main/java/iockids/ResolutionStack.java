@@ -0,0 +1,633 @@
+package iockids;
+
+import java.lang.annotation.Annotation;
+import java.util.function.Supplier;
+
+/**
+ * 迭代的解析引擎（Injector.useIterativeResolver(true)），以显式的工作栈代替createNew -> createFromConstructor ->
+ * createFromParameter -> createNew和injectMembers -> createFromField的互相递归，解析深度只受堆大小限制:
+ * 1. 每个正在创建的对象为一个栈帧，依次解析构造器参数、调用构造器、注入成员变量；
+ *    需要创建依赖时压入新的栈帧并返回主循环，依赖创建完成后交给下方栈帧的当前参数或成员变量
+ * 2. 单例的创建槽、限定器、早期对象、作用域、运行统计、解析树和JFR事件与递归实现一致；
+ *    单例由注册它的injector创建，栈帧记录所属的injector，其依赖也在该injector中查找
+ * 3. 栈帧对象随栈数组复用，每次解析（ResolutionContext）一个栈；作用域的创建函数在同一个栈上嵌套运行主循环
+ * 4. 抛出异常时从栈顶依次释放栈帧：未完成的单例创建槽置为失败，等待成员变量的栈帧像递归实现一样包装异常
+ */
+final class ResolutionStack {
+
+	/**
+	 * returned by push() when a frame is pushed and the value is delivered later
+	 */
+	private static final Object PENDING = new Object();
+
+	private static final int PROTOTYPE = 0;
+
+	private static final int SINGLETON = 1;
+
+	/**
+	 * injecting the members of an instance created elsewhere
+	 */
+	private static final int MEMBERS = 2;
+
+	private final ResolutionContext context;
+
+	private Frame[] frames = new Frame[16];
+
+	private int size;
+
+	ResolutionStack(ResolutionContext context) {
+		this.context = context;
+	}
+
+	/**
+	 * an object being created, reused by the later frames at the same height
+	 */
+	private static final class Frame {
+
+		int kind;
+
+		/**
+		 * the injector creating the object, whose bindings are used for its dependencies
+		 */
+		Injector injector;
+
+		InjectionPlan<?> plan;
+
+		Object[] params;
+
+		/**
+		 * the index of the next constructor parameter
+		 */
+		int param;
+
+		/**
+		 * the constructed instance, null while resolving constructor parameters
+		 */
+		Object instance;
+
+		/**
+		 * the index of the next field
+		 */
+		int field;
+
+		/**
+		 * whether a frame above creates the value of field - 1
+		 */
+		boolean waitingField;
+
+		SingletonSlot slot;
+
+		InjectorMetrics metrics;
+
+		long start;
+
+		/**
+		 * whether the frame entered a createNew: the depth and key are restored and the trace node exits on pop
+		 */
+		boolean entered;
+
+		/**
+		 * the qualified key the object is created for, null if unqualified
+		 */
+		Key key;
+
+		int depth;
+
+		Key outer;
+
+		ResolutionTrace trace;
+
+		ResolutionTrace.Node node;
+
+		InjectEvents.Create create;
+
+		InjectEvents.Construct construct;
+
+		InjectEvents.InjectMembers members;
+
+		void clear() {
+			injector = null;
+			plan = null;
+			params = null;
+			instance = null;
+			waitingField = false;
+			slot = null;
+			metrics = null;
+			entered = false;
+			key = null;
+			outer = null;
+			trace = null;
+			node = null;
+			create = null;
+			construct = null;
+			members = null;
+		}
+	}
+
+	/**
+	 * the iterative counterpart of createNew
+	 * @param injector the injector asked for
+	 * @param clazz Class type for creating new instance
+	 * @param key the qualified key the instance is created for, null if unqualified
+	 * @return the instance
+	 */
+	Object createNew(Injector injector, Class<?> clazz, Key key) {
+		var base = size;
+		var o = push(injector, clazz, key);
+		return o == PENDING ? run(base) : o;
+	}
+
+	/**
+	 * the iterative counterpart of createPrototype
+	 * @param injector the injector asked for
+	 * @param plan the injection plan of a class which is not a singleton
+	 * @return new instance
+	 */
+	Object createPrototype(Injector injector, InjectionPlan<?> plan) {
+		var base = size;
+		pushPrototype(injector, plan);
+		return run(base);
+	}
+
+	/**
+	 * the iterative counterpart of injectMembers
+	 * @param injector the injector asked for
+	 * @param plan the injection plan of the instance's class
+	 * @param instance an instance whose fields waiting for injection
+	 */
+	void injectMembers(Injector injector, InjectionPlan<?> plan, Object instance) {
+		var base = size;
+		var frame = pushFrame(MEMBERS, injector, plan);
+		beginMembers(frame, instance);
+		run(base);
+	}
+
+	/**
+	 * resolve a dependency, pushing a frame if it must be created
+	 * @return the dependency, or PENDING if a frame is pushed
+	 */
+	private Object dependency(Injector injector, Class<?> declaringClazz, Class<?> type, Key[] keys,
+							  ResolutionTrace.Edge via) {
+		context.via(via);
+		if (keys.length > 0) {
+			var found = injector.qualifiedInstanceOf(declaringClazz, type, keys);
+			if (found != null) {
+				var trace = injector.trace;
+				if (trace != null) {
+					trace.cached(context, type, keys[0], via);
+				}
+				return found;
+			}
+			var key = injector.qualifiedBindingOf(declaringClazz, type, keys);
+			if (key != null) {
+				return push(injector, injector.qualifiedClassOf(key), key);
+			}
+		}
+		return push(injector, type, null);
+	}
+
+	/**
+	 * resolve a dependency in a nested run of the main loop, called by scopes
+	 */
+	private Object nested(Injector injector, Class<?> declaringClazz, Class<?> type, Key[] keys,
+						  ResolutionTrace.Edge via) {
+		var base = size;
+		var o = dependency(injector, declaringClazz, type, keys, via);
+		return o == PENDING ? run(base) : o;
+	}
+
+	/**
+	 * the steps of createNew before the constructor
+	 * @return the instance, or PENDING if a frame is pushed
+	 */
+	private Object push(Injector injector, Class<?> clazz, Key key) {
+		// 已创建的单例无锁读取
+		var o = injector.singletonOf(clazz);
+		var trace = injector.trace;
+		if (o != null) {
+			InjectEvents.singletonLookup(clazz, key, context.depth() + 1, true);
+			if (trace != null) {
+				trace.cached(context, clazz, key, context.via());
+			}
+			return o;
+		}
+		var create = new InjectEvents.Create();
+		if (create.isEnabled()) {
+			create.begin();
+		} else {
+			create = null;
+		}
+		var node = trace == null ? null : trace.enter(context, clazz, key);
+		var outer = context.key();
+		var depth = context.enter(key);
+		try {
+			var plan = injector.planOf(clazz);
+			plan.constructor();
+			Frame frame = null;
+			if (plan.singleton || injector.isSingletonClass(clazz)) {
+				// 单例由注册它的injector创建
+				var owner = injector;
+				while (owner.parent != null && !owner.isLocalSingletonClass(clazz)) {
+					owner = owner.parent;
+				}
+				var slot = owner.singletonSlots.computeIfAbsent(clazz, SingletonSlot::new);
+				o = slot.acquire(owner.waitsFor);
+				if (o == null) {
+					var completed = false;
+					try {
+						// 成为所有者之前可能已有其他线程创建完成或手动放入
+						o = owner.singletonOf(clazz);
+						InjectEvents.singletonLookup(clazz, key, context.depth(), o != null);
+						if (o != null) {
+							slot.complete(o);
+							owner.singletonSlots.remove(clazz, slot);
+						} else {
+							frame = pushFrame(SINGLETON, owner, plan);
+							frame.slot = slot;
+							frame.metrics = owner.metrics;
+							frame.start = frame.metrics == null ? 0 : frame.metrics.start(true);
+						}
+						completed = true;
+					} finally {
+						if (!completed) {
+							slot.fail();
+						}
+					}
+				}
+			} else if (plan.scope != null) {
+				// 带有作用域注解的类，由作用域决定是否创建
+				o = scoped(injector, plan.scope, Key.of(clazz).id, clazz, () -> {
+					var base = size;
+					pushPrototype(injector, plan);
+					return run(base);
+				});
+			} else {
+				frame = pushPrototype(injector, plan);
+			}
+			if (frame != null) {
+				frame.entered = true;
+				frame.key = key;
+				frame.depth = depth;
+				frame.outer = outer;
+				frame.trace = trace;
+				frame.node = node;
+				frame.create = create;
+				return PENDING;
+			}
+		} catch (Throwable e) {
+			context.exit(depth, outer);
+			if (node != null) {
+				trace.exit(context, node);
+			}
+			throw e;
+		}
+		context.exit(depth, outer);
+		if (node != null) {
+			trace.exit(context, node);
+		}
+		commit(create, clazz, key, depth);
+		return o;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Object scoped(Injector injector, Class<? extends Annotation> annotation, int id, Class<?> clazz,
+								 Supplier<Object> unscoped) {
+		return injector.scopeOf(annotation).scope(id, (Class<Object>) clazz, unscoped);
+	}
+
+	private Frame pushPrototype(Injector injector, InjectionPlan<?> plan) {
+		var frame = pushFrame(PROTOTYPE, injector, plan);
+		frame.metrics = injector.metrics;
+		frame.start = frame.metrics == null ? 0 : frame.metrics.start(false);
+		context.constructing(plan.type); // 早期对象尚未创建
+		return frame;
+	}
+
+	private Frame pushFrame(int kind, Injector injector, InjectionPlan<?> plan) {
+		if (size == frames.length) {
+			var grown = new Frame[size * 2];
+			System.arraycopy(frames, 0, grown, 0, size);
+			frames = grown;
+		}
+		var frame = frames[size];
+		if (frame == null) {
+			frame = new Frame();
+			frames[size] = frame;
+		}
+		size++;
+		frame.kind = kind;
+		frame.injector = injector;
+		frame.plan = plan;
+		if (kind != MEMBERS) {
+			frame.params = new Object[plan.parameterTypes.length];
+			frame.param = 0;
+			var construct = new InjectEvents.Construct();
+			if (construct.isEnabled()) {
+				construct.begin();
+				frame.construct = construct;
+			}
+		}
+		return frame;
+	}
+
+	/**
+	 * the main loop, runs until the frames above base are all popped
+	 * @param base the height of the stack when the value asked for is pushed
+	 * @return the value of the frame at base
+	 */
+	private Object run(int base) {
+		try {
+			while (true) {
+				var frame = frames[size - 1];
+				if (frame.instance == null && !construct(frame)) {
+					continue;
+				}
+				if (!injectMembers(frame)) {
+					continue;
+				}
+				var o = pop(frame);
+				if (size == base) {
+					return o;
+				}
+				deliver(frames[size - 1], o);
+			}
+		} catch (Throwable e) {
+			throw unwind(base, e);
+		}
+	}
+
+	/**
+	 * resolve the constructor parameters and call the constructor, see createFromConstructor
+	 * @return whether the instance is constructed, false if a frame is pushed for a parameter
+	 */
+	private boolean construct(Frame frame) {
+		var plan = frame.plan;
+		var injector = frame.injector;
+		var params = frame.params;
+		while (frame.param < params.length) {
+			var i = frame.param++;
+			var type = plan.parameterTypes[i];
+			// Provider<T>和Lazy<T>在get()时才解析，不会形成循环依赖
+			if (InjectionPlan.isProvider(type)) {
+				params[i] = injector.providerOf(plan.type, type, plan.parameterProvided[i], plan.parameterKeys[i]);
+				continue;
+			}
+			// 循环依赖对象尚未构建早期引用，此处循环依赖无法解决
+			var slot = injector.singletonSlots.get(type);
+			if (context.isConstructing(type) || slot != null && slot.isConstructing()) {
+				throw new InjectException(String.format("circular dependency on constructor , the root class is %s",
+						plan.type.getCanonicalName()));
+			}
+			// 循环依赖对象已经构建早期对象
+			var early = context.early(type);
+			if (early != null) {
+				params[i] = early;
+				continue;
+			}
+			var o = dependency(injector, plan.type, type, plan.parameterKeys[i], ResolutionTrace.Edge.PARAMETER);
+			if (o == PENDING) {
+				return false;
+			}
+			params[i] = o;
+		}
+		Object target;
+		try {
+			target = plan.instantiator(injector.backend).newInstance(params);
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new InjectException("create instance from constructor error", e);
+		}
+		frame.params = null;
+		var construct = frame.construct;
+		if (construct != null) {
+			construct.end();
+			if (construct.shouldCommit()) {
+				construct.type = plan.type;
+				construct.qualifier = InjectEvents.qualifierOf(context.key());
+				construct.depth = context.depth();
+				construct.parameters = params.length;
+				construct.commit();
+			}
+			frame.construct = null;
+		}
+		if (frame.kind == SINGLETON) {
+			// 循环依赖的成员变量通过创建槽获得早期对象
+			frame.slot.publishEarly(target);
+		} else {
+			context.constructed(plan.type, target); // 早期对象创建成功
+		}
+		beginMembers(frame, target);
+		return true;
+	}
+
+	private void beginMembers(Frame frame, Object instance) {
+		frame.instance = instance;
+		frame.field = 0;
+		var members = new InjectEvents.InjectMembers();
+		if (members.isEnabled()) {
+			members.begin();
+			frame.members = members;
+		}
+	}
+
+	/**
+	 * inject the fields one by one, see injectMembers
+	 * @return whether all fields are injected, false if a frame is pushed for a field
+	 */
+	private boolean injectMembers(Frame frame) {
+		var plan = frame.plan;
+		var injector = frame.injector;
+		var instance = frame.instance;
+		var fields = plan.fields;
+		while (frame.field < fields.length) {
+			var point = fields[frame.field++];
+			try {
+				var accessor = point.accessor(injector.backend);
+				if (point.singleton && accessor.get(instance) != null) {
+					// 该成员变量为单例且已经被构造器创建（于目标对象初始化时），跳过
+					continue;
+				}
+				Class<?> clazz = point.type;
+				Key key = point.key;
+				if (InjectionPlan.isProvider(clazz)) {
+					accessor.set(instance, injector.providerOf(plan.type, clazz, point.provided, point.keys));
+					continue;
+				}
+				if (context.isConstructing(clazz)) {
+					throw new InjectException("circle dependent from constructor param" +
+							instance.getClass().getSimpleName() + " asking for" + clazz.getSimpleName() + "in building");
+				}
+				Object obj = context.early(clazz);
+				// 成员变量带有作用域注解，对象在作用域内共享，不放入单例和分类单例队列
+				if (obj == null && point.scope != null) {
+					var id = (key != null ? key : Key.of(clazz)).id;
+					obj = scoped(injector, point.scope, id, clazz,
+							() -> nested(injector, plan.type, clazz, point.keys, ResolutionTrace.Edge.FIELD));
+					accessor.set(instance, obj);
+					continue;
+				}
+				if (obj == null) {
+					obj = injector.singletonOf(clazz);
+					if (obj != null) {
+						InjectEvents.singletonLookup(clazz, key, context.depth() + 1, true);
+					}
+				}
+				if (obj == null && key != null) {
+					obj = injector.qualifiedOf(key);
+				}
+				var trace = injector.trace;
+				if (obj != null && trace != null) {
+					trace.cached(context, clazz, key, ResolutionTrace.Edge.FIELD);
+				}
+				if (obj == null) {
+					obj = dependency(injector, plan.type, clazz, point.keys, ResolutionTrace.Edge.FIELD);
+					if (obj == PENDING) {
+						frame.waitingField = true;
+						return false;
+					}
+				}
+				setField(frame, point, obj);
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw fieldError(frame, point, e);
+			}
+		}
+		return true;
+	}
+
+	private void setField(Frame frame, InjectionPlan.InjectableField point, Object obj) throws Throwable {
+		var injector = frame.injector;
+		// 将生成的实例放入singletonInstances队列，并发时以先放入的为准
+		if (point.singleton) {
+			var existing = injector.putSingletonIfAbsent(point.type, obj);
+			if (existing != null) {
+				obj = existing;
+			}
+		}
+		// 将生成的实例放入qualifiedInstances队列，并发时以先放入的为准
+		if (point.key != null) {
+			var existing = injector.putQualifiedIfAbsent(point.key, obj);
+			if (existing != null) {
+				obj = existing;
+			}
+		}
+		point.accessor(injector.backend).set(frame.instance, obj);
+	}
+
+	private static InjectException fieldError(Frame frame, InjectionPlan.InjectableField point, Throwable e) {
+		return new InjectException(
+				String.format("set field for %s@%s error", frame.instance.getClass().getCanonicalName(), point.name), e);
+	}
+
+	/**
+	 * hand the value of the frame just popped to the parameter or field the frame below is waiting for
+	 */
+	private void deliver(Frame frame, Object o) throws Throwable {
+		if (frame.instance == null) {
+			frame.params[frame.param - 1] = o;
+			return;
+		}
+		frame.waitingField = false;
+		var point = frame.plan.fields[frame.field - 1];
+		try {
+			setField(frame, point, o);
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw fieldError(frame, point, e);
+		}
+	}
+
+	/**
+	 * the steps after injecting the members, see createPrototype and createSingleton
+	 * @return the instance of the frame
+	 */
+	private Object pop(Frame frame) {
+		var plan = frame.plan;
+		var clazz = plan.type;
+		var o = frame.instance;
+		var members = frame.members;
+		if (members != null) {
+			members.end();
+			if (members.shouldCommit()) {
+				members.type = clazz;
+				members.qualifier = InjectEvents.qualifierOf(context.key());
+				members.depth = context.depth();
+				members.fields = plan.fields.length;
+				members.commit();
+			}
+		}
+		if (frame.kind == SINGLETON) {
+			var injector = frame.injector;
+			var existing = injector.putSingletonIfAbsent(clazz, o);
+			if (existing != null) {
+				o = existing;
+			}
+			if (frame.metrics != null) {
+				frame.metrics.created(clazz, true, frame.start);
+			}
+			frame.slot.complete(o);
+			injector.singletonSlots.remove(clazz, frame.slot);
+		} else if (frame.kind == PROTOTYPE) {
+			context.finished(clazz);
+			if (frame.metrics != null) {
+				frame.metrics.created(clazz, false, frame.start);
+			}
+		}
+		if (frame.entered) {
+			context.exit(frame.depth, frame.outer);
+			if (frame.node != null) {
+				frame.trace.exit(context, frame.node);
+			}
+			commit(frame.create, clazz, frame.key, frame.depth);
+		}
+		frame.clear();
+		size--;
+		return o;
+	}
+
+	private static void commit(InjectEvents.Create create, Class<?> clazz, Key key, int depth) {
+		if (create == null) {
+			return;
+		}
+		create.end();
+		if (create.shouldCommit()) {
+			create.type = clazz;
+			create.qualifier = InjectEvents.qualifierOf(key);
+			create.depth = depth;
+			create.commit();
+		}
+	}
+
+	/**
+	 * release the frames above base from the top, like the finally blocks of the recursive implementation
+	 * @return the exception to be thrown
+	 */
+	private RuntimeException unwind(int base, Throwable e) {
+		while (size > base) {
+			var frame = frames[--size];
+			if (frame.waitingField && !(e instanceof Error)) {
+				e = fieldError(frame, frame.plan.fields[frame.field - 1], e);
+			}
+			if (frame.kind == SINGLETON) {
+				frame.slot.fail();
+			}
+			if (frame.entered) {
+				context.exit(frame.depth, frame.outer);
+				if (frame.node != null) {
+					frame.trace.exit(context, frame.node);
+				}
+			}
+			frame.clear();
+		}
+		if (e instanceof Error) {
+			throw (Error) e;
+		}
+		if (e instanceof RuntimeException) {
+			return (RuntimeException) e;
+		}
+		return new InjectException("resolution error", e);
+	}
+}
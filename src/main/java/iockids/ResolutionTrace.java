@@ -0,0 +1,495 @@
+package iockids;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * injector实际走过的解析树，通过Injector.enableResolutionTrace()开启，用于分析启动耗时:
+ * 1. 每次创建对象（getInstance()请求的对象或其依赖）为一个节点，记录是通过构造器参数还是成员变量引入的，以及总耗时和自身耗时
+ *    （总耗时减去创建依赖的耗时）；已创建的单例和分类单例作为缓存节点记录，只有依赖关系没有耗时
+ * 2. 关键路径：依赖链上自身耗时之和最大的一条链，缓存节点连接到创建该单例的节点（可能在另一棵树中，例如eagerInit()的其他线程）
+ *    所有节点自身耗时之和与关键路径耗时之比，即并行提前创建单例最多能带来的加速
+ * 3. toDot()按Key合并节点导出Graphviz图，关键路径标红；toJson()导出完整的解析树
+ * 开启期间每次创建都会记录，应只在启动阶段开启，就绪后调用Injector.disableResolutionTrace()
+ */
+public final class ResolutionTrace {
+
+	/**
+	 * how a dependency is introduced to the object depending on it
+	 */
+	public enum Edge {
+		/**
+		 * asked by getInstance(), a provider or eagerInit()
+		 */
+		ROOT,
+		/**
+		 * a constructor parameter, resolved by createFromParameter
+		 */
+		PARAMETER,
+		/**
+		 * a field, resolved by createFromField
+		 */
+		FIELD
+	}
+
+	private final long startedAt = System.nanoTime();
+
+	/**
+	 * completed trees, added when the root is created
+	 */
+	private final Queue<Node> roots = new ConcurrentLinkedQueue<>();
+
+	ResolutionTrace() {
+	}
+
+	/**
+	 * @param context the resolution context of this call
+	 * @param type the class being created
+	 * @param key the qualified key the instance is created for, null if unqualified
+	 * @return the node, to be passed to exit()
+	 */
+	Node enter(ResolutionContext context, Class<?> type, Key key) {
+		var parent = context.traceNode();
+		var node = new Node(type, key, parent == null ? Edge.ROOT : context.via(), parent, false, System.nanoTime());
+		if (parent != null) {
+			parent.children.add(node);
+		}
+		context.traceNode(node);
+		return node;
+	}
+
+	/**
+	 * @param context the resolution context of this call
+	 * @param node the node returned by enter()
+	 */
+	void exit(ResolutionContext context, Node node) {
+		node.end = System.nanoTime();
+		context.traceNode(node.parent);
+		if (node.parent == null) {
+			roots.add(node);
+		}
+	}
+
+	/**
+	 * record a dependency on a created singleton or qualified object, ignored outside of a creation
+	 * @param context the resolution context of this call
+	 * @param type the type asked for
+	 * @param key the qualified key asked for, null if unqualified
+	 * @param edge how the dependency is introduced
+	 */
+	void cached(ResolutionContext context, Class<?> type, Key key, Edge edge) {
+		var parent = context.traceNode();
+		if (parent == null) {
+			return;
+		}
+		var now = System.nanoTime();
+		var node = new Node(type, key, edge, parent, true, now);
+		node.end = now;
+		parent.children.add(node);
+	}
+
+	/**
+	 * @return the completed trees in the order their roots are created
+	 */
+	public List<Node> getRoots() {
+		return new ArrayList<>(roots);
+	}
+
+	/**
+	 * drop all recorded trees
+	 */
+	public void clear() {
+		roots.clear();
+	}
+
+	/**
+	 * @return the sum of the total time of all trees, i.e. the time of creating them in a single thread
+	 */
+	public long getTotalNanos() {
+		var total = 0L;
+		for (var root : roots) {
+			total += root.getTotalNanos();
+		}
+		return total;
+	}
+
+	/**
+	 * @return the sum of the self time along the critical path, i.e. the least time of creating all trees in parallel
+	 */
+	public long getCriticalPathNanos() {
+		var total = 0L;
+		for (var node : criticalPath()) {
+			total += node.getSelfNanos();
+		}
+		return total;
+	}
+
+	/**
+	 * @return the chain of creations whose self time adds up to the most, from the object depending on the others
+	 */
+	public List<Node> criticalPath() {
+		var roots = getRoots();
+		var creators = creators(roots);
+		Map<Node, Long> lengths = new IdentityHashMap<>();
+		Map<Node, Node> next = new IdentityHashMap<>();
+		Set<Node> visiting = Collections.newSetFromMap(new IdentityHashMap<>());
+		Node first = null;
+		var longest = -1L;
+		for (var root : roots) {
+			var length = length(root, creators, lengths, next, visiting);
+			if (length > longest) {
+				longest = length;
+				first = root;
+			}
+		}
+		List<Node> path = new ArrayList<>();
+		for (var node = first; node != null; node = next.get(node)) {
+			path.add(node);
+		}
+		return path;
+	}
+
+	/**
+	 * @return key -> the first node creating an object for it
+	 */
+	private static Map<Key, Node> creators(List<Node> roots) {
+		Map<Key, Node> creators = new HashMap<>();
+		var stack = new ArrayDeque<Node>(roots);
+		while (!stack.isEmpty()) {
+			var node = stack.pop();
+			if (node.cached) {
+				continue;
+			}
+			creators.putIfAbsent(node.key(), node);
+			creators.putIfAbsent(Key.of(node.type), node);
+			stack.addAll(node.children);
+		}
+		return creators;
+	}
+
+	/**
+	 * walk the dependencies in post-order with an explicit stack, so that long chains don't overflow the thread stack
+	 * @return the self time of the node plus the longest length among its dependencies
+	 */
+	private static long length(Node root, Map<Key, Node> creators, Map<Node, Long> lengths, Map<Node, Node> next,
+							   Set<Node> visiting) {
+		var known = lengths.get(root);
+		if (known != null) {
+			return known;
+		}
+		Deque<PathFrame> stack = new ArrayDeque<>();
+		visiting.add(root);
+		stack.push(new PathFrame(root));
+		var result = 0L;
+		while (!stack.isEmpty()) {
+			var frame = stack.peek();
+			if (frame.children.hasNext()) {
+				var child = frame.children.next();
+				// 缓存节点连接到创建该对象的节点，正在计算的节点说明存在（成员变量的）循环依赖，跳过
+				var dependency = child.cached ? creators.get(child.key()) : child;
+				if (dependency == null || visiting.contains(dependency)) {
+					continue;
+				}
+				var length = lengths.get(dependency);
+				if (length == null) {
+					visiting.add(dependency);
+					stack.push(new PathFrame(dependency));
+				} else {
+					frame.offer(dependency, length);
+				}
+				continue;
+			}
+			// 所有依赖都已计算，得到本节点的长度并交给上一层
+			stack.pop();
+			var node = frame.node;
+			visiting.remove(node);
+			if (frame.longestDependency != null) {
+				next.put(node, frame.longestDependency);
+			}
+			var length = node.getSelfNanos() + frame.longest;
+			lengths.put(node, length);
+			var parent = stack.peek();
+			if (parent != null) {
+				parent.offer(node, length);
+			} else {
+				result = length;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * a node whose dependencies are being walked by length()
+	 */
+	private static final class PathFrame {
+
+		final Node node;
+
+		final Iterator<Node> children;
+
+		long longest;
+
+		Node longestDependency;
+
+		PathFrame(Node node) {
+			this.node = node;
+			this.children = node.children.iterator();
+		}
+
+		void offer(Node dependency, long length) {
+			if (length > longest) {
+				longest = length;
+				longestDependency = dependency;
+			}
+		}
+	}
+
+	/**
+	 * export the trees merged by key as a Graphviz digraph, the critical path is drawn in red
+	 * @return the DOT source
+	 */
+	public String toDot() {
+		Set<Key> critical = new HashSet<>();
+		Set<String> criticalEdges = new HashSet<>();
+		Key previous = null;
+		for (var node : criticalPath()) {
+			critical.add(node.key());
+			if (previous != null) {
+				criticalEdges.add(previous.id + "->" + node.key().id);
+			}
+			previous = node.key();
+		}
+		Map<Key, long[]> vertices = new LinkedHashMap<>();
+		// 边 -> 是否都是缓存节点（虚线）
+		Map<String, Boolean> edges = new LinkedHashMap<>();
+		var stack = new ArrayDeque<Node>(getRoots());
+		while (!stack.isEmpty()) {
+			var node = stack.pop();
+			var key = node.key();
+			var stats = vertices.computeIfAbsent(key, (k) -> new long[3]);
+			if (!node.cached) {
+				// 创建次数，自身耗时，总耗时
+				stats[0]++;
+				stats[1] += node.getSelfNanos();
+				stats[2] += node.getTotalNanos();
+			}
+			for (var child : node.children) {
+				var childKey = child.key();
+				var edge = String.format("  %s -> %s [label=\"%s\"%s", quote(key.toString()),
+						quote(childKey.toString()), child.edge.name().toLowerCase(Locale.ROOT),
+						criticalEdges.contains(key.id + "->" + childKey.id) ? ", color=red, penwidth=2" : "");
+				edges.merge(edge, child.cached, Boolean::logicalAnd);
+				stack.push(child);
+			}
+		}
+		var dot = new StringBuilder();
+		dot.append("digraph resolution {\n");
+		dot.append("  rankdir=LR;\n");
+		dot.append("  node [shape=box, fontname=\"monospace\"];\n");
+		for (var entry : vertices.entrySet()) {
+			var key = entry.getKey();
+			var stats = entry.getValue();
+			var label = stats[0] == 0 ? key + "\ncached"
+					: String.format(Locale.ROOT, "%s\nx%d, self %s, total %s", key, stats[0], millis(stats[1]), millis(stats[2]));
+			dot.append(String.format("  %s [label=%s%s];\n", quote(key.toString()), quote(label),
+					critical.contains(key) ? ", color=red, penwidth=2" : ""));
+		}
+		for (var edge : edges.entrySet()) {
+			dot.append(edge.getKey()).append(edge.getValue() ? ", style=dashed];\n" : "];\n");
+		}
+		dot.append("}\n");
+		return dot.toString();
+	}
+
+	/**
+	 * export the trees and the critical path as JSON
+	 * @return the JSON document
+	 */
+	public String toJson() {
+		var json = new StringBuilder();
+		json.append("{\"totalNanos\":").append(getTotalNanos());
+		var path = criticalPath();
+		var pathNanos = 0L;
+		for (var node : path) {
+			pathNanos += node.getSelfNanos();
+		}
+		json.append(",\"criticalPathNanos\":").append(pathNanos);
+		json.append(",\"criticalPath\":[");
+		for (int i = 0; i < path.size(); i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append(quote(path.get(i).key().toString()));
+		}
+		json.append("],\"roots\":[");
+		var first = true;
+		for (var root : roots) {
+			if (!first) {
+				json.append(',');
+			}
+			first = false;
+			appendJson(json, root);
+		}
+		json.append("]}");
+		return json.toString();
+	}
+
+	private void appendJson(StringBuilder json, Node node) {
+		json.append("{\"type\":").append(quote(node.getType()));
+		if (node.getQualifier() != null) {
+			json.append(",\"qualifier\":").append(quote(node.getQualifier()));
+		}
+		json.append(",\"edge\":\"").append(node.edge.name().toLowerCase(Locale.ROOT)).append('"');
+		json.append(",\"cached\":").append(node.cached);
+		json.append(",\"thread\":").append(quote(node.thread));
+		json.append(",\"startNanos\":").append(node.start - startedAt);
+		json.append(",\"totalNanos\":").append(node.getTotalNanos());
+		json.append(",\"selfNanos\":").append(node.getSelfNanos());
+		if (!node.children.isEmpty()) {
+			json.append(",\"children\":[");
+			for (int i = 0; i < node.children.size(); i++) {
+				if (i > 0) {
+					json.append(',');
+				}
+				appendJson(json, node.children.get(i));
+			}
+			json.append(']');
+		}
+		json.append('}');
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f ms", nanos / 1e6);
+	}
+
+	/**
+	 * @return the string quoted and escaped for both DOT and JSON
+	 */
+	private static String quote(String s) {
+		var quoted = new StringBuilder(s.length() + 2).append('"');
+		for (int i = 0; i < s.length(); i++) {
+			var c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\');
+			}
+			if (c == '\n') {
+				quoted.append("\\n");
+			} else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	/**
+	 * a creation, or a dependency on a created object, in the resolution tree
+	 * 节点只由创建它的线程修改，所在的树创建完成后才对其他线程可见
+	 */
+	public static final class Node {
+
+		final Class<?> type;
+
+		/**
+		 * the qualified key the object is created for, null if unqualified
+		 */
+		final Key key;
+
+		final Edge edge;
+
+		final Node parent;
+
+		final boolean cached;
+
+		final String thread = Thread.currentThread().getName();
+
+		final long start;
+
+		long end;
+
+		final List<Node> children = new ArrayList<>();
+
+		Node(Class<?> type, Key key, Edge edge, Node parent, boolean cached, long start) {
+			this.type = type;
+			this.key = key;
+			this.edge = edge;
+			this.parent = parent;
+			this.cached = cached;
+			this.start = start;
+		}
+
+		Key key() {
+			return key != null ? key : Key.of(type);
+		}
+
+		/**
+		 * @return the name of the class created, or the type asked for if cached
+		 */
+		public String getType() {
+			return type.getName();
+		}
+
+		/**
+		 * @return the qualifier, null if unqualified
+		 */
+		public String getQualifier() {
+			return key == null || key.qualifier == null ? null : key.qualifier.toString();
+		}
+
+		public Edge getEdge() {
+			return edge;
+		}
+
+		/**
+		 * @return whether the object is a created singleton or qualified object
+		 */
+		public boolean isCached() {
+			return cached;
+		}
+
+		public String getThread() {
+			return thread;
+		}
+
+		/**
+		 * @return the time of creating the object with its dependencies
+		 */
+		public long getTotalNanos() {
+			return end - start;
+		}
+
+		/**
+		 * @return the time of creating the object without the time of creating its dependencies
+		 */
+		public long getSelfNanos() {
+			var self = getTotalNanos();
+			for (var child : children) {
+				self -= child.getTotalNanos();
+			}
+			return Math.max(self, 0);
+		}
+
+		public List<Node> getChildren() {
+			return Collections.unmodifiableList(children);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s (self %s, total %s)", key(), millis(getSelfNanos()), millis(getTotalNanos()));
+		}
+	}
+}
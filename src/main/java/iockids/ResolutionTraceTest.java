@@ -0,0 +1,61 @@
+package iockids;
+
+import javax.inject.Inject;
+
+/**
+ * 检查解析树的关键路径:
+ * 1. 关键路径沿自身耗时之和最大的依赖链
+ * 2. 很深的依赖链（十万层）也能计算，不会栈溢出
+ * 运行main()，不一致时抛出AssertionError
+ */
+public class ResolutionTraceTest {
+
+	static class Slow {
+
+		Slow() throws InterruptedException {
+			Thread.sleep(50);
+		}
+	}
+
+	static class Fast {
+	}
+
+	static class Top {
+
+		@Inject
+		Fast fast;
+
+		@Inject
+		Top(Slow slow) {
+		}
+	}
+
+	public static void main(String[] args) {
+		var injector = new Injector(false).enableResolutionTrace();
+		injector.getInstance(Top.class);
+		var path = injector.getResolutionTrace().criticalPath();
+		check(path.size() == 2 && path.get(0).getType().equals(Top.class.getName())
+				&& path.get(1).getType().equals(Slow.class.getName()), "critical path follows the slowest dependency");
+
+		var trace = new ResolutionTrace();
+		var context = new ResolutionContext();
+		var depth = 100_000;
+		var nodes = new ResolutionTrace.Node[depth];
+		for (int i = 0; i < depth; i++) {
+			nodes[i] = trace.enter(context, i % 2 == 0 ? Slow.class : Fast.class, null);
+		}
+		for (int i = depth - 1; i >= 0; i--) {
+			trace.exit(context, nodes[i]);
+		}
+		check(trace.criticalPath().size() == depth, "critical path of a chain of " + depth + " creations");
+		System.out.println("ResolutionTraceTest passed");
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+		System.out.println("ok: " + message);
+	}
+
+}
@@ -0,0 +1,136 @@
+package iockids;
+
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 检查迭代解析和递归解析的结果一致，以及迭代解析不受线程栈大小限制:
+ * 运行时编译一条3000层的构造器依赖链（deep.C0依赖deep.C1……最后一个为单例），在栈很小的线程中分别解析
+ * 运行main()，不一致时抛出AssertionError
+ */
+public class ResolverTest {
+
+	private static final int DEPTH = 3000;
+
+	public static void main(String[] args) throws Exception {
+		var dir = Files.createTempDirectory("iockids-deep");
+		try {
+			run(compileChain(dir));
+		} finally {
+			try (var files = Files.walk(dir)) {
+				files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+			}
+		}
+		System.out.println("ResolverTest passed");
+	}
+
+	private static void run(ClassLoader loader) throws Exception {
+		// 较浅的一段两种方式都能解析
+		var shallow = loader.loadClass("deep.C" + (DEPTH - 100));
+		var recursive = new Injector(false).useIterativeResolver(false);
+		var iterative = new Injector(false).useIterativeResolver(true);
+		check(lengthOf(recursive.getInstance(shallow)) == 100 && lengthOf(iterative.getInstance(shallow)) == 100,
+				"both resolvers create the whole chain");
+		var leaf = loader.loadClass("deep.C" + (DEPTH - 1));
+		check(last(iterative.getInstance(shallow)) == iterative.getInstance(leaf)
+				&& last(iterative.getInstance(shallow)) == last(iterative.getInstance(shallow)),
+				"the singleton at the end of the chain is shared");
+
+		var root = loader.loadClass("deep.C0");
+		var results = new Object[2];
+		var small = new Thread(null, () -> {
+			results[0] = resultOf(() -> new Injector(false).useIterativeResolver(false).getInstance(root));
+			results[1] = resultOf(() -> new Injector(false).useIterativeResolver(true).getInstance(root));
+		}, "small-stack", 256 * 1024);
+		small.start();
+		small.join();
+		check(results[0] instanceof StackOverflowError
+				|| results[0] instanceof InjectException && hasCause((Throwable) results[0], StackOverflowError.class),
+				"recursive resolver overflows a small thread stack on " + DEPTH + " levels");
+		check(!(results[1] instanceof Throwable) && lengthOf(results[1]) == DEPTH,
+				"iterative resolver creates " + DEPTH + " levels on the same stack");
+	}
+
+	/**
+	 * generate and compile classes deep.C0 ... deep.C(DEPTH - 1), each taking the next one in its constructor
+	 */
+	private static ClassLoader compileChain(Path dir) throws IOException {
+		var compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			throw new AssertionError("a JDK is needed to compile the chain");
+		}
+		var source = Files.createDirectories(dir.resolve("deep"));
+		List<String> options = new ArrayList<>(List.of("-d", dir.toString(), "-cp", System.getProperty("java.class.path")));
+		for (int i = 0; i < DEPTH; i++) {
+			var file = source.resolve("C" + i + ".java");
+			if (i == DEPTH - 1) {
+				Files.writeString(file, "package deep; @javax.inject.Singleton public class C" + i
+						+ " { public final Object next = null; }");
+			} else {
+				Files.writeString(file, "package deep; public class C" + i + " { public final Object next; "
+						+ "@javax.inject.Inject public C" + i + "(C" + (i + 1) + " next) { this.next = next; } }");
+			}
+			options.add(file.toString());
+		}
+		if (compiler.run(null, null, null, options.toArray(new String[0])) != 0) {
+			throw new AssertionError("failed to compile the chain");
+		}
+		return new URLClassLoader(new URL[] {dir.toUri().toURL()}, ResolverTest.class.getClassLoader());
+	}
+
+	private static int lengthOf(Object o) {
+		var length = 0;
+		for (; o != null; o = next(o)) {
+			length++;
+		}
+		return length;
+	}
+
+	private static Object last(Object o) {
+		while (next(o) != null) {
+			o = next(o);
+		}
+		return o;
+	}
+
+	private static Object next(Object o) {
+		try {
+			return o.getClass().getField("next").get(o);
+		} catch (ReflectiveOperationException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static Object resultOf(Supplier<Object> supplier) {
+		try {
+			return supplier.get();
+		} catch (Throwable e) {
+			return e;
+		}
+	}
+
+	private static boolean hasCause(Throwable e, Class<? extends Throwable> type) {
+		for (; e != null; e = e.getCause()) {
+			if (type.isInstance(e)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+		System.out.println("ok: " + message);
+	}
+
+}
@@ -0,0 +1,126 @@
+package iockids;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * 检查作用域注解在类和成员变量上的语义:
+ * 1. @RequestScoped在enter()和exit()之间每个线程一个对象，未绑定或未进入作用域时报错
+ * 2. @ThreadScoped（默认绑定）每个线程一个对象
+ * 3. 槽位编号紧凑且稳定，槽位表的大小与全局的Key编号无关
+ * 三种InjectBackend和两种解析方式各运行一次，运行main()，不一致时抛出AssertionError
+ */
+public class ScopeTest {
+
+	@RequestScoped
+	static class Request {
+	}
+
+	@ThreadScoped
+	static class PerThread {
+	}
+
+	static class Plain {
+	}
+
+	static class Handler {
+
+		final Request request;
+
+		@Inject
+		Request sameRequest;
+
+		@Inject
+		@RequestScoped
+		Plain plain;
+
+		@Inject
+		@RequestScoped
+		Plain samePlain;
+
+		@Inject
+		Handler(Request request) {
+			this.request = request;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		for (var backend : InjectBackend.values()) {
+			for (var iterative : new boolean[] {false, true}) {
+				run(backend + (iterative ? " iterative" : " recursive"),
+						new Injector(false).useBackend(backend).useIterativeResolver(iterative));
+			}
+		}
+		slots();
+		System.out.println("ScopeTest passed");
+	}
+
+	private static void run(String name, Injector injector) throws InterruptedException {
+		check(failsWith(() -> injector.getInstance(Request.class)), name + ": unbound scope is rejected");
+		var requests = new RequestScope();
+		injector.bindScope(RequestScoped.class, requests);
+		check(failsWith(() -> injector.getInstance(Request.class)), name + ": scope not entered is rejected");
+		check(failsWith(() -> injector.bindScope(Singleton.class, requests)), name + ": @Singleton cannot be bound");
+
+		requests.enter();
+		var first = injector.getInstance(Handler.class);
+		check(first.request == first.sameRequest && first.request == injector.getInstance(Request.class),
+				name + ": one scoped class instance per request");
+		check(first.plain == first.samePlain && first.plain != injector.getInstance(Plain.class),
+				name + ": scoped fields share one instance per request, unscoped lookups do not");
+		requests.exit();
+		check(!requests.isActive(), name + ": exit() ends the request");
+
+		requests.enter();
+		var second = injector.getInstance(Handler.class);
+		check(second.request != first.request && second.plain != first.plain, name + ": a new request has new instances");
+		requests.exit();
+
+		var mine = injector.getInstance(PerThread.class);
+		var other = new Object[1];
+		var thread = new Thread(() -> other[0] = injector.getInstance(PerThread.class));
+		thread.start();
+		thread.join();
+		check(mine == injector.getInstance(PerThread.class) && mine == injector.getProvider(PerThread.class).get(),
+				name + ": one @ThreadScoped instance per thread");
+		check(other[0] != null && other[0] != mine, name + ": other threads get their own instance");
+	}
+
+	private static void slots() throws ReflectiveOperationException {
+		// 全局的Key编号很大时，作用域的槽位表只取决于它用到的绑定数量
+		var high = 0;
+		for (int i = 0; i < 10_000; i++) {
+			high = Key.of(Plain.class, Qualifiers.named("plain" + i)).id;
+		}
+		var scope = new RequestScope();
+		check(scope.slotOf(high) == 0 && scope.slotOf(high) == 0, "the first binding gets slot 0");
+		var field = SlotScope.class.getDeclaredField("slots");
+		field.setAccessible(true);
+		check(((int[]) field.get(scope)).length <= 16, "slot table is not sized by the highest key id " + high);
+		var distinct = true;
+		for (int i = 0; i < 1000; i++) {
+			distinct &= scope.slotOf(high - 1000 + i) == i + 1;
+		}
+		for (int i = 0; i < 1000; i++) {
+			distinct &= scope.slotOf(high - 1000 + i) == i + 1;
+		}
+		check(distinct, "slots are compact and stable for many bindings");
+	}
+
+	private static boolean failsWith(Runnable runnable) {
+		try {
+			runnable.run();
+			return false;
+		} catch (InjectException e) {
+			return true;
+		}
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+		System.out.println("ok: " + message);
+	}
+
+}
@@ -0,0 +1,120 @@
+package iockids;
+
+import java.util.Map;
+
+/**
+ * 单例的创建槽，保证同一个单例只被创建一次:
+ * 1. 第一个到达的线程成为所有者并负责创建，其他线程只在该槽上等待，不同单例之间互不阻塞
+ * 2. 所有者在构造完成、注入成员变量之前发布早期对象
+ * 3. 等待前先登记到等待关系表（线程 -> 等待的槽），再沿着"所有者正在等待的槽的所有者"查找，
+ *    回到当前线程即为循环等待：所有者已发布早期对象时直接使用早期对象，否则为构造器循环依赖
+ * 先登记后检查，两个线程同时形成环时至少有一个能发现，因此无需全局锁
+ */
+final class SingletonSlot {
+
+	final Class<?> type;
+
+	private volatile Thread owner;
+
+	private volatile Object early;
+
+	private volatile Object instance;
+
+	SingletonSlot(Class<?> type) {
+		this.type = type;
+	}
+
+	/**
+	 *
+	 * @param waitsFor the waits-for table shared by all slots of an injector
+	 * @return the instance (or the early instance when waiting would deadlock), or null if the current thread becomes
+	 *         the owner and must create the instance
+	 */
+	Object acquire(Map<Thread, SingletonSlot> waitsFor) {
+		var current = Thread.currentThread();
+		synchronized (this) {
+			while (true) {
+				if (instance != null) {
+					return instance;
+				}
+				if (owner == null) {
+					owner = current;
+					return null;
+				}
+				if (owner == current) {
+					return earlyOrThrow();
+				}
+				waitsFor.put(current, this);
+				try {
+					if (closesCycle(waitsFor, current)) {
+						return earlyOrThrow();
+					}
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InjectException("interrupted while waiting for singleton " + type.getCanonicalName(), e);
+				} finally {
+					waitsFor.remove(current);
+				}
+			}
+		}
+	}
+
+	private boolean closesCycle(Map<Thread, SingletonSlot> waitsFor, Thread current) {
+		var thread = owner;
+		// 等待关系中的每个线程至多经过一次
+		for (int i = 0, n = waitsFor.size(); thread != null && i <= n; i++) {
+			if (thread == current) {
+				return true;
+			}
+			var slot = waitsFor.get(thread);
+			if (slot == null) {
+				return false;
+			}
+			thread = slot.owner;
+		}
+		return false;
+	}
+
+	private Object earlyOrThrow() {
+		var o = early;
+		if (o == null) {
+			throw new InjectException(
+					String.format("circular dependency on constructor , the root class is %s", type.getCanonicalName()));
+		}
+		return o;
+	}
+
+	/**
+	 * @return whether the current thread is still running the constructor of this singleton
+	 */
+	boolean isConstructing() {
+		return owner == Thread.currentThread() && early == null;
+	}
+
+	/**
+	 * the owner publishes the constructed instance before injecting its members
+	 */
+	void publishEarly(Object o) {
+		early = o;
+	}
+
+	/**
+	 * the owner publishes the fully injected instance and wakes up the waiting threads
+	 */
+	synchronized void complete(Object o) {
+		instance = o;
+		early = null;
+		owner = null;
+		notifyAll();
+	}
+
+	/**
+	 * the owner failed to create the instance, one of the waiting threads will try again
+	 */
+	synchronized void fail() {
+		early = null;
+		owner = null;
+		notifyAll();
+	}
+}
@@ -0,0 +1,168 @@
+package iockids;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 检查单例在并发getInstance()下只创建一次，以及两个线程互相等待对方的单例时不会死锁:
+ * 1. 成员变量的循环依赖，发现循环等待后使用对方已发布的早期对象
+ * 2. 构造器的循环依赖，两个线程都得到InjectException
+ * 递归和迭代两种解析方式各运行一次，运行main()，不一致或超时时抛出AssertionError
+ */
+public class SingletonSlotTest {
+
+	private static CyclicBarrier barrier;
+
+	private static void await() {
+		try {
+			barrier.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Singleton
+	static class Slow {
+
+		static final AtomicInteger created = new AtomicInteger();
+
+		Slow() throws InterruptedException {
+			created.incrementAndGet();
+			Thread.sleep(50);
+		}
+	}
+
+	@Singleton
+	static class FieldA {
+
+		@Inject
+		FieldB b;
+
+		FieldA() {
+			// 两个线程都成为各自单例的所有者之后才开始注入成员变量
+			await();
+		}
+	}
+
+	@Singleton
+	static class FieldB {
+
+		@Inject
+		FieldA a;
+
+		FieldB() {
+			await();
+		}
+	}
+
+	static class Gate {
+
+		Gate() {
+			await();
+		}
+	}
+
+	@Singleton
+	static class ConstructorA {
+
+		@Inject
+		ConstructorA(Gate gate, ConstructorB b) {
+		}
+	}
+
+	@Singleton
+	static class ConstructorB {
+
+		@Inject
+		ConstructorB(Gate gate, ConstructorA a) {
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		for (var iterative : new boolean[] {false, true}) {
+			var resolver = iterative ? "iterative" : "recursive";
+
+			var injector = new Injector(false).useIterativeResolver(iterative);
+			Slow.created.set(0);
+			var start = new CountDownLatch(1);
+			var results = new Object[8];
+			var threads = new Thread[results.length];
+			for (int i = 0; i < threads.length; i++) {
+				var index = i;
+				threads[i] = new Thread(() -> {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					results[index] = injector.getInstance(Slow.class);
+				});
+				threads[i].start();
+			}
+			start.countDown();
+			join(threads);
+			check(Slow.created.get() == 1, resolver + ": concurrent getInstance() creates the singleton once");
+			var same = true;
+			for (var result : results) {
+				same &= result == results[0];
+			}
+			check(same, resolver + ": all threads get the same singleton");
+
+			var fields = new Injector(false).useIterativeResolver(iterative);
+			barrier = new CyclicBarrier(2);
+			var pair = new Object[2];
+			join(new Thread(() -> pair[0] = fields.getInstance(FieldA.class)),
+					new Thread(() -> pair[1] = fields.getInstance(FieldB.class)));
+			var a = (FieldA) pair[0];
+			var b = (FieldB) pair[1];
+			check(a != null && b != null, resolver + ": waiting for each other on fields does not deadlock");
+			check(a.b == b && b.a == a, resolver + ": early instances are used across threads");
+
+			var constructors = new Injector(false).useIterativeResolver(iterative);
+			barrier = new CyclicBarrier(2);
+			var errors = new Throwable[2];
+			join(new Thread(() -> errors[0] = errorOf(() -> constructors.getInstance(ConstructorA.class))),
+					new Thread(() -> errors[1] = errorOf(() -> constructors.getInstance(ConstructorB.class))));
+			check(errors[0] instanceof InjectException && errors[1] instanceof InjectException,
+					resolver + ": waiting for each other on constructors fails instead of deadlock");
+		}
+		System.out.println("SingletonSlotTest passed");
+	}
+
+	private static Throwable errorOf(Runnable runnable) {
+		try {
+			runnable.run();
+			return null;
+		} catch (Throwable e) {
+			return e;
+		}
+	}
+
+	private static void join(Thread... threads) throws InterruptedException {
+		for (var thread : threads) {
+			if (thread.getState() == Thread.State.NEW) {
+				thread.start();
+			}
+		}
+		for (var thread : threads) {
+			thread.join(10_000);
+			if (thread.isAlive()) {
+				throw new AssertionError("deadlock, thread " + thread.getName() + " is still running");
+			}
+		}
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+		System.out.println("ok: " + message);
+	}
+
+}
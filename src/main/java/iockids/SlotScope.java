@@ -0,0 +1,125 @@
+package iockids;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * 按槽位保存对象的作用域的基类:
+ * 1. 每个绑定编号在第一次使用时分配一个紧凑的槽位编号（0, 1, 2...），此后只读；
+ *    绑定编号 -> 槽位编号 为本作用域的开放寻址表，大小只取决于本作用域用到的绑定数量，与全局的Key数量无关
+ * 2. 作用域内的对象保存在按槽位编号索引的数组中，数组长度即该作用域用到的类的个数，不使用哈希表
+ */
+abstract class SlotScope implements InjectScope {
+
+	private static final Object[] NO_VALUES = new Object[0];
+
+	/**
+	 * open addressing table of (binding id + 1, slot) pairs, 0 for an empty entry, copied on write, at most half full
+	 */
+	private volatile int[] slots = new int[8];
+
+	private int count;
+
+	/**
+	 * the instances of a scope on one thread
+	 */
+	static final class Instances {
+
+		Object[] values = NO_VALUES;
+
+		boolean active;
+
+	}
+
+	/**
+	 * @param id a binding id
+	 * @return the slot assigned to the binding
+	 */
+	final int slotOf(int id) {
+		var slot = find(slots, id);
+		return slot >= 0 ? slot : assign(id);
+	}
+
+	/**
+	 * @return the slot of the binding in the table, -1 if none
+	 */
+	private static int find(int[] slots, int id) {
+		var mask = (slots.length >> 1) - 1;
+		for (int i = hash(id) & mask; ; i = (i + 1) & mask) {
+			var entry = slots[i << 1];
+			if (entry == id + 1) {
+				return slots[(i << 1) + 1];
+			}
+			if (entry == 0) {
+				return -1;
+			}
+		}
+	}
+
+	private static int hash(int id) {
+		// 绑定编号是连续分配的，打散后再取低位
+		var h = id * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private synchronized int assign(int id) {
+		var slots = this.slots;
+		var slot = find(slots, id);
+		if (slot >= 0) {
+			return slot;
+		}
+		slot = count++;
+		// 复制后再发布，读取方无锁读到的总是完整的表
+		var capacity = slots.length >> 1;
+		var copy = count * 2 > capacity ? new int[slots.length << 1] : Arrays.copyOf(slots, slots.length);
+		if (copy.length != slots.length) {
+			for (int i = 0; i < capacity; i++) {
+				if (slots[i << 1] != 0) {
+					put(copy, slots[i << 1] - 1, slots[(i << 1) + 1]);
+				}
+			}
+		}
+		put(copy, id, slot);
+		this.slots = copy;
+		return slot;
+	}
+
+	private static void put(int[] slots, int id, int slot) {
+		var mask = (slots.length >> 1) - 1;
+		var i = hash(id) & mask;
+		while (slots[i << 1] != 0) {
+			i = (i + 1) & mask;
+		}
+		slots[i << 1] = id + 1;
+		slots[(i << 1) + 1] = slot;
+	}
+
+	/**
+	 *
+	 * @param instances the instances of the current scope
+	 * @param id the binding id
+	 * @param unscoped creates a new instance
+	 * @return the instance in the slot of id, created at the first call
+	 */
+	@SuppressWarnings("unchecked")
+	final <T> T get(Instances instances, int id, Supplier<? extends T> unscoped) {
+		var slot = slotOf(id);
+		var values = instances.values;
+		if (slot < values.length && values[slot] != null) {
+			return (T) values[slot];
+		}
+		// 创建时可能递归创建同一作用域的其他对象，数组可能已被扩容
+		T t = unscoped.get();
+		values = instances.values;
+		if (slot >= values.length) {
+			values = Arrays.copyOf(values, Math.max(slot + 1, count));
+			instances.values = values;
+		}
+		if (values[slot] != null) {
+			return (T) values[slot];
+		}
+		values[slot] = t;
+		return t;
+	}
+
+}
@@ -0,0 +1,147 @@
+package iockids;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Qualifier;
+import javax.inject.Singleton;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 检查注入图快照的写入和恢复:
+ * 1. 恢复的注入计划与反射解析的一致，只对读取快照的injector及其子injector生效
+ * 2. @Named和没有成员的限定器可以保存，带其他限定器的类不保存注入计划，写入和读取时都作为输出参数返回，不输出到stderr
+ * 3. 指纹不一致或快照损坏时不使用快照
+ * 运行main()，不一致时抛出AssertionError
+ */
+public class SnapshotTest {
+
+	@Qualifier
+	@Retention(RetentionPolicy.RUNTIME)
+	@interface Blue {
+	}
+
+	@Qualifier
+	@Retention(RetentionPolicy.RUNTIME)
+	@interface Level {
+		int value();
+	}
+
+	interface Paint {
+	}
+
+	@Blue
+	static class BluePaint implements Paint {
+	}
+
+	@Named("red")
+	static class RedPaint implements Paint {
+	}
+
+	@Singleton
+	static class Config {
+	}
+
+	@Singleton
+	static class Painter {
+
+		final Paint red;
+
+		@Inject
+		@Blue
+		Paint blue;
+
+		@Inject
+		Config config;
+
+		@Inject
+		Painter(@Named("red") Paint red) {
+			this.red = red;
+		}
+	}
+
+	static class Graded {
+
+		@Inject
+		@Level(1)
+		Paint paint;
+	}
+
+	public static void main(String[] args) throws Exception {
+		var file = Files.createTempFile("iockids", ".snapshot");
+		try {
+			List<Class<?>> classes = List.of(Painter.class, Graded.class);
+			List<Class<?>> skipped = new ArrayList<>();
+			var err = System.err;
+			var output = new ByteArrayOutputStream();
+			System.setErr(new PrintStream(output, true));
+			try {
+				GraphSnapshot.write(file, 42, "iockids", classes, new Injector(false), skipped);
+			} finally {
+				System.setErr(err);
+			}
+			check(skipped.equals(List.of(Graded.class)) && output.size() == 0,
+					"classes left out of the snapshot are returned when writing, nothing is printed");
+
+			var injector = new Injector(false);
+			skipped.clear();
+			check(classes.equals(GraphSnapshot.read(file, 42, "iockids", Painter.class.getClassLoader(), injector, skipped)),
+					"scanned classes are restored");
+			check(skipped.equals(List.of(Graded.class)), "classes left out of the snapshot are returned when reading");
+			var reflected = new Injector(false).planOf(Painter.class);
+			var restored = injector.planOf(Painter.class);
+			check(restored != reflected && describe(restored).equals(describe(reflected)),
+					"restored plan is the same as the reflected one");
+			check(injector.createChild().planOf(Painter.class) == restored, "child injectors use the restored plan");
+			check(new Injector(false).planOf(Painter.class) == reflected, "other injectors still use the reflected plan");
+			check(injector.planOf(Graded.class) == new Injector(false).planOf(Graded.class),
+					"plans with qualifiers having members are not saved");
+
+			injector.registerQualifiedClass(Paint.class, BluePaint.class).registerQualifiedClass(Paint.class, RedPaint.class);
+			var painter = injector.getInstance(Painter.class);
+			check(painter.blue instanceof BluePaint && painter.red instanceof RedPaint,
+					"marker and @Named qualifiers are resolved by the restored plan");
+			check(painter.config == injector.getInstance(Config.class), "singleton fields are resolved by the restored plan");
+
+			skipped.clear();
+			check(GraphSnapshot.read(file, 43, "iockids", Painter.class.getClassLoader(), new Injector(false), skipped) == null
+					&& skipped.isEmpty(), "snapshot of another classpath is ignored");
+			check(GraphSnapshot.read(file, 42, "demo", Painter.class.getClassLoader(), new Injector(false), skipped) == null,
+					"snapshot of another package is ignored");
+			var bytes = Files.readAllBytes(file);
+			Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+			var broken = new Injector(false);
+			check(GraphSnapshot.read(file, 42, "iockids", Painter.class.getClassLoader(), broken, skipped) == null
+					&& broken.planOf(Painter.class) == reflected && skipped.isEmpty(),
+					"broken snapshot is ignored and restores nothing");
+		} finally {
+			Files.deleteIfExists(file);
+		}
+		System.out.println("SnapshotTest passed");
+	}
+
+	private static String describe(InjectionPlan<?> plan) {
+		var text = new StringBuilder().append(plan.singleton).append(' ').append(plan.scope).append(' ')
+				.append(Arrays.toString(plan.parameterTypes)).append(Arrays.toString(plan.parameterProvided))
+				.append(Arrays.deepToString(plan.parameterKeys));
+		for (var field : plan.fields) {
+			text.append(" | ").append(field.name).append(' ').append(field.type).append(' ').append(field.provided)
+					.append(' ').append(field.scope).append(' ').append(field.singleton).append(Arrays.toString(field.keys));
+		}
+		return text.toString();
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+		System.out.println("ok: " + message);
+	}
+
+}
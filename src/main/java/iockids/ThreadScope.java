@@ -0,0 +1,24 @@
+package iockids;
+
+import java.util.function.Supplier;
+
+/**
+ * 线程作用域，每个线程一个对象，直到该线程调用clear()
+ */
+public final class ThreadScope extends SlotScope {
+
+	private final ThreadLocal<Instances> instances = ThreadLocal.withInitial(Instances::new);
+
+	@Override
+	public <T> T scope(int id, Class<T> type, Supplier<? extends T> unscoped) {
+		return get(instances.get(), id, unscoped);
+	}
+
+	/**
+	 * drop all instances of the current thread
+	 */
+	public void clear() {
+		instances.remove();
+	}
+
+}
@@ -0,0 +1,113 @@
+package iockids;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * 检查validate()一次报告依赖图中的问题:
+ * 1. 构造器循环依赖（demo包中的demo.Ia、demo.Ib，以及三个类的环）
+ * 2. 没有绑定的接口
+ * 3. 没有问题时给出依赖在前的解析顺序
+ * 运行main()，不一致时抛出AssertionError
+ */
+public class ValidateTest {
+
+	interface Missing {
+	}
+
+	static class P {
+
+		@Inject
+		P(Q q) {
+		}
+	}
+
+	static class Q {
+
+		@Inject
+		Q(R r) {
+		}
+	}
+
+	static class R {
+
+		@Inject
+		R(P p) {
+		}
+	}
+
+	static class Broken {
+
+		@Inject
+		Missing missing;
+	}
+
+	@Singleton
+	static class Leaf {
+	}
+
+	@Singleton
+	static class Middle {
+
+		@Inject
+		Middle(Leaf leaf) {
+		}
+	}
+
+	static class Top {
+
+		@Inject
+		Middle middle;
+
+		@Inject
+		Top(Leaf leaf) {
+		}
+	}
+
+	@Singleton
+	static class Late {
+	}
+
+	public static void main(String[] args) {
+		var demo = new Injector(false);
+		demo.scanInit("demo");
+		var message = messageOf(demo);
+		check(message != null && message.contains("circular dependency on constructor among")
+				&& message.contains("demo.Ia") && message.contains("demo.Ib"), "cycle of demo.Ia and demo.Ib is reported");
+
+		message = messageOf(new Injector(false), P.class, Broken.class);
+		check(message != null && message.contains("circular dependency on constructor among")
+				&& message.contains(P.class.getCanonicalName()) && message.contains(Q.class.getCanonicalName())
+				&& message.contains(R.class.getCanonicalName()), "cycle of three constructors is reported");
+		check(message.contains("no binding for " + Missing.class.getCanonicalName()),
+				"problems other than cycles are reported together");
+
+		var injector = new Injector(false).validate(Top.class);
+		var order = injector.getResolutionOrder();
+		check(order.indexOf(Leaf.class) < order.indexOf(Middle.class) && order.indexOf(Middle.class) < order.indexOf(Top.class),
+				"dependencies come first in the resolution order " + order);
+		injector.registerSingletonClass(Late.class);
+		check(injector.getResolutionOrder() == null, "registering a binding invalidates the order");
+		System.out.println("ValidateTest passed");
+	}
+
+	/**
+	 * @return the message of the InjectException thrown by validate(), null if valid
+	 */
+	private static String messageOf(Injector injector, Class<?>... roots) {
+		try {
+			injector.validate(roots);
+			return null;
+		} catch (InjectException e) {
+			return e.getMessage();
+		}
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+		System.out.println("ok: " + message);
+	}
+
+}
@@ -0,0 +1,209 @@
+package utils;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 直接从class文件的字节中读取类上的注解（RuntimeVisibleAnnotations），不加载该类，也不依赖ASM
+ * 只解析常量池和类的属性表，成员变量和方法只跳过
+ */
+public class ClassHeader {
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private final String className;
+
+    private final List<String> annotations;
+
+    private ClassHeader(String className, List<String> annotations) {
+        this.className = className;
+        this.annotations = annotations;
+    }
+
+    /**
+     * 从类加载器中读取某个类的class文件
+     * @param loader 类加载器
+     * @param className 类的完整名称
+     * @return 类头信息，class文件不存在或无法解析时为null
+     */
+    public static ClassHeader read(ClassLoader loader, String className) {
+        try (InputStream in = loader.getResourceAsStream(className.replace('.', '/') + ".class")) {
+            if (in == null) {
+                return null;
+            }
+            return read(in);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param in class文件的输入流
+     * @return 类头信息
+     * @throws IOException 不是合法的class文件
+     */
+    public static ClassHeader read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != 0xCAFEBABE) {
+            throw new IOException("not a class file");
+        }
+        data.readUnsignedShort();
+        data.readUnsignedShort();
+        // 1. 常量池，只保留UTF8和CONSTANT_Class
+        int count = data.readUnsignedShort();
+        String[] utf8s = new String[count];
+        int[] classes = new int[count];
+        for (int i = 1; i < count; i++) {
+            int tag = data.readUnsignedByte();
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    utf8s[i] = data.readUTF();
+                    break;
+                case CONSTANT_CLASS:
+                    classes[i] = data.readUnsignedShort();
+                    break;
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    skip(data, 2);
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    skip(data, 3);
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    skip(data, 8);
+                    // 占用两个常量池位置
+                    i++;
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                default:
+                    if (tag < 1 || tag > CONSTANT_PACKAGE) {
+                        throw new IOException("unknown constant pool tag " + tag);
+                    }
+                    // Fieldref, Methodref, InterfaceMethodref, NameAndType等均为4个字节
+                    skip(data, 4);
+                    break;
+            }
+        }
+        // 2. 类名，跳过父类、接口、成员变量和方法
+        data.readUnsignedShort();
+        String className = utf8s[classes[data.readUnsignedShort()]].replace('/', '.');
+        data.readUnsignedShort();
+        skip(data, 2 * data.readUnsignedShort());
+        skipMembers(data);
+        skipMembers(data);
+        // 3. 类的属性表中的RuntimeVisibleAnnotations
+        List<String> annotations = Collections.emptyList();
+        int attributes = data.readUnsignedShort();
+        for (int i = 0; i < attributes; i++) {
+            String name = utf8s[data.readUnsignedShort()];
+            int length = data.readInt();
+            if (!"RuntimeVisibleAnnotations".equals(name)) {
+                skip(data, length);
+                continue;
+            }
+            int num = data.readUnsignedShort();
+            annotations = new ArrayList<>(num);
+            for (int j = 0; j < num; j++) {
+                annotations.add(typeName(utf8s[data.readUnsignedShort()]));
+                skipElementValuePairs(data);
+            }
+        }
+        return new ClassHeader(className, annotations);
+    }
+
+    private static void skip(DataInputStream data, int n) throws IOException {
+        // 压缩的jar条目可能一次跳过的字节数不足
+        while (n > 0) {
+            int skipped = data.skipBytes(n);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            n -= skipped;
+        }
+    }
+
+    private static void skipMembers(DataInputStream data) throws IOException {
+        int count = data.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            skip(data, 6);
+            int attributes = data.readUnsignedShort();
+            for (int j = 0; j < attributes; j++) {
+                skip(data, 2);
+                skip(data, data.readInt());
+            }
+        }
+    }
+
+    private static void skipElementValuePairs(DataInputStream data) throws IOException {
+        int pairs = data.readUnsignedShort();
+        for (int i = 0; i < pairs; i++) {
+            skip(data, 2);
+            skipElementValue(data);
+        }
+    }
+
+    private static void skipElementValue(DataInputStream data) throws IOException {
+        int tag = data.readUnsignedByte();
+        switch (tag) {
+            case 'e':
+                skip(data, 4);
+                break;
+            case '@':
+                skip(data, 2);
+                skipElementValuePairs(data);
+                break;
+            case '[':
+                int values = data.readUnsignedShort();
+                for (int i = 0; i < values; i++) {
+                    skipElementValue(data);
+                }
+                break;
+            default:
+                // 基本类型、String和Class均为一个常量池下标
+                skip(data, 2);
+                break;
+        }
+    }
+
+    /**
+     * @param descriptor 如 Ljavax/inject/Named;
+     * @return 如 javax.inject.Named
+     */
+    private static String typeName(String descriptor) {
+        return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return 类上运行时可见的注解的完整名称
+     */
+    public List<String> getAnnotations() {
+        return annotations;
+    }
+}
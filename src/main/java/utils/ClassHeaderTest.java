@@ -0,0 +1,89 @@
+package utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 检查ClassHeader从class文件中读到的类名和注解与反射得到的一致
+ * 覆盖各种常量池条目（long/double占两个位置、invokedynamic、MethodHandle等）和各种注解元素值
+ * 运行main()，不一致时抛出AssertionError
+ */
+public class ClassHeaderTest {
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Marker {
+
+        String value() default "";
+
+        int[] numbers() default {};
+
+        Class<?> type() default Object.class;
+
+        TimeUnit unit() default TimeUnit.SECONDS;
+
+        Retention nested() default @Retention(RetentionPolicy.CLASS);
+    }
+
+    @interface Invisible {
+    }
+
+    @Deprecated
+    @Invisible
+    @Marker(value = "constants", numbers = {1, 2}, type = String[].class, unit = TimeUnit.DAYS,
+            nested = @Retention(RetentionPolicy.RUNTIME))
+    static class Constants {
+
+        static final long BIG = 1L << 40;
+
+        static final double PI = Math.PI;
+
+        final Supplier<String> supplier = () -> "lambda" + BIG + PI;
+
+        final Supplier<List<String>> reference = ArrayList::new;
+
+        float ratio = 0.5f;
+
+        String text = "text";
+    }
+
+    static class Plain {
+    }
+
+    public static void main(String[] args) throws IOException {
+        ClassLoader loader = ClassHeaderTest.class.getClassLoader();
+        Class<?>[] classes = {Constants.class, Plain.class, Marker.class, ClassHeaderTest.class, Scanner.class,
+                TimeUnit.class, String.class, Deprecated.class};
+        for (Class<?> clazz : classes) {
+            ClassHeader header = ClassHeader.read(loader, clazz.getName());
+            check(header != null, "read " + clazz.getName());
+            check(clazz.getName().equals(header.getClassName()), "class name of " + clazz.getName());
+            List<String> expected = new ArrayList<>();
+            for (Annotation annotation : clazz.getDeclaredAnnotations()) {
+                expected.add(annotation.annotationType().getName());
+            }
+            check(expected.equals(header.getAnnotations()), "annotations of " + clazz.getName() + " " + expected);
+        }
+        check(ClassHeader.read(loader, "utils.NoSuchClass") == null, "missing class file");
+        try {
+            ClassHeader.read(new ByteArrayInputStream(new byte[] {0, 1, 2, 3}));
+            check(false, "invalid class file is rejected");
+        } catch (IOException e) {
+            check(true, "invalid class file is rejected");
+        }
+        System.out.println("ClassHeaderTest passed");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+        System.out.println("ok: " + message);
+    }
+}
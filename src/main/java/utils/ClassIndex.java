@@ -0,0 +1,153 @@
+package utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译期生成的类索引（META-INF/iockids/class-index，由iockids-processor生成）
+ * 有索引的classpath条目（目录或jar）直接从索引读取类名，Scanner无需再遍历
+ */
+public class ClassIndex {
+
+    public static final String LOCATION = "META-INF/iockids/class-index";
+
+    /**
+     * 有索引的classpath条目
+     */
+    private final Set<String> roots = new HashSet<>();
+
+    /**
+     * 类的完整名称 -> 类上的注解名称
+     */
+    private final Map<String, List<String>> classes = new LinkedHashMap<>();
+
+    private ClassIndex() {
+    }
+
+    /**
+     * 读取类加载器中的所有类索引
+     * @param loader 类加载器
+     * @return 类索引，没有索引时为空
+     */
+    public static ClassIndex load(ClassLoader loader) {
+        ClassIndex index = new ClassIndex();
+        try {
+            Enumeration<URL> urls = loader.getResources(LOCATION);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                index.read(url);
+                index.roots.add(rootOf(url, LOCATION));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return index;
+    }
+
+    private void read(URL url) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // 不以制表符开头的行为包名，分组仅为了便于阅读
+                if (!line.startsWith("\t")) {
+                    continue;
+                }
+                String[] parts = line.trim().split(" ");
+                List<String> annotations = new ArrayList<>(parts.length - 1);
+                for (int i = 1; i < parts.length; i++) {
+                    annotations.add(parts[i]);
+                }
+                classes.put(parts[0], annotations);
+            }
+        }
+    }
+
+    /**
+     * 获取资源所在的classpath条目
+     * @param url 资源的URL
+     * @param resourcePath 资源在classpath条目中的路径
+     * @return 目录路径或jar文件路径
+     */
+    public static String rootOf(URL url, String resourcePath) {
+        String path = url.getPath();
+        if (url.getProtocol().equals("jar")) {
+            path = path.substring(0, path.indexOf("!"));
+            return path.substring(path.indexOf("/"));
+        }
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        if (!resourcePath.isEmpty() && path.endsWith(resourcePath)) {
+            path = path.substring(0, path.length() - resourcePath.length());
+        }
+        return path.endsWith("/") ? path : path + "/";
+    }
+
+    /**
+     * @param root 目录路径或jar文件路径
+     * @return 该classpath条目是否有索引
+     */
+    public boolean isIndexed(String root) {
+        return roots.contains(root);
+    }
+
+    public boolean isEmpty() {
+        return roots.isEmpty();
+    }
+
+    /**
+     * 获取某包下所有类
+     * @param packageName 包名
+     * @param childPackage 是否包括子包
+     * @return 类的完整名称
+     */
+    public List<String> getClassNames(String packageName, boolean childPackage) {
+        List<String> classNames = new ArrayList<>();
+        for (String className : classes.keySet()) {
+            if (inPackage(className, packageName, childPackage)) {
+                classNames.add(className);
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * @param className 类的完整名称
+     * @param packageName 包名
+     * @param childPackage 是否包括子包
+     * @return 该类是否在该包中
+     */
+    static boolean inPackage(String className, String packageName, boolean childPackage) {
+        int index = className.lastIndexOf('.');
+        String myPackageName = index == -1 ? "" : className.substring(0, index);
+        return myPackageName.equals(packageName)
+                || childPackage && (packageName.isEmpty() || myPackageName.startsWith(packageName + "."));
+    }
+
+    /**
+     * @param className 类的完整名称
+     * @return 该类是否在索引中
+     */
+    public boolean contains(String className) {
+        return classes.containsKey(className);
+    }
+
+    /**
+     * @param className 类的完整名称
+     * @return 类上的注解名称，不在索引中时为空
+     */
+    public List<String> getAnnotations(String className) {
+        return classes.getOrDefault(className, Collections.emptyList());
+    }
+}
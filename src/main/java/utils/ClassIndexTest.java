@@ -0,0 +1,184 @@
+package utils;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * 用javax.tools编译fixture源码并运行iockids-processor的ClassIndexProcessor，检查类索引:
+ * 1. 索引按包列出所有类（包括嵌套类）和类上的注解
+ * 2. 带索引的目录和jar直接从索引读取，不再遍历：索引之外的类不会被扫描到
+ * 3. 从索引读到的类名、按注解筛选的类与删除索引后完整扫描的结果一致
+ * 需先构建iockids-processor（cd iockids-processor && mvn compile），处理器的classpath默认为iockids-processor/target/classes，
+ * 可通过-Diockids.processor.path指定；运行main()，不一致时抛出AssertionError
+ */
+public class ClassIndexTest {
+
+    private static final Map<String, String> SOURCES = Map.of(
+            "indexed/Service", "package indexed; @javax.inject.Singleton public class Service {"
+                    + " @javax.inject.Named(\"inner\") public static class Inner {} }",
+            "indexed/Plain", "package indexed; public class Plain {}",
+            "indexed/sub/Child", "package indexed.sub; @javax.inject.Singleton @Deprecated public class Child {}");
+
+    private static final String STRAY = "package indexed; @javax.inject.Singleton public class Stray {}";
+
+    public static void main(String[] args) throws Exception {
+        Path temp = Files.createTempDirectory("iockids-class-index");
+        try {
+            run(temp);
+        } finally {
+            try (Stream<Path> files = Files.walk(temp)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+        System.out.println("ClassIndexTest passed");
+    }
+
+    private static void run(Path temp) throws Exception {
+        Path indexed = compile(temp.resolve("src"), temp.resolve("indexed"), SOURCES, true);
+        Path index = indexed.resolve(ClassIndex.LOCATION);
+        check(Files.isRegularFile(index), "the processor writes " + ClassIndex.LOCATION);
+
+        try (URLClassLoader loader = loaderOf(indexed)) {
+            ClassIndex classIndex = ClassIndex.load(loader);
+            check(classIndex.isIndexed(ClassIndex.rootOf(indexed.toUri().toURL(), "")), "the directory is indexed");
+            check(new HashSet<>(classIndex.getClassNames("indexed", true)).equals(
+                    Set.of("indexed.Service", "indexed.Service$Inner", "indexed.Plain", "indexed.sub.Child")),
+                    "all classes are listed, including nested ones");
+            check(classIndex.getClassNames("indexed", false).size() == 3, "child packages can be left out");
+            check(classIndex.getAnnotations("indexed.sub.Child").equals(List.of("javax.inject.Singleton", "java.lang.Deprecated"))
+                    && classIndex.getAnnotations("indexed.Plain").isEmpty(), "annotations of the classes are listed");
+        }
+
+        // 删除索引后Scanner完整遍历目录
+        Path scanned = temp.resolve("scanned");
+        copy(indexed, scanned);
+        Files.delete(scanned.resolve(ClassIndex.LOCATION));
+        Set<String> fullScan = classNames(scanned);
+        check(fullScan.size() == 4, "a full scan finds all classes " + fullScan);
+        check(classNames(indexed).equals(fullScan), "the index returns the same classes as a full scan");
+        check(singletons(indexed).equals(singletons(scanned)) && singletons(indexed).size() == 2,
+                "the index filters the same classes by annotation as a full scan");
+
+        // 索引之外的类只有遍历才能找到
+        Path stray = compile(temp.resolve("stray-src"), temp.resolve("stray"), Map.of("indexed/Stray", STRAY), false);
+        Files.copy(stray.resolve("indexed/Stray.class"), indexed.resolve("indexed/Stray.class"));
+        Files.copy(stray.resolve("indexed/Stray.class"), scanned.resolve("indexed/Stray.class"));
+        check(classNames(scanned).contains("indexed.Stray"), "a full scan finds the class added later");
+        check(classNames(indexed).equals(fullScan) && !singletons(indexed).contains("indexed.Stray"),
+                "an indexed directory is not walked");
+
+        Path jar = temp.resolve("indexed.jar");
+        writeJar(jar, indexed);
+        check(classNames(jar).equals(fullScan), "an indexed jar returns the same classes and is not walked");
+    }
+
+    private static Path compile(Path source, Path output, Map<String, String> sources, boolean index) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new AssertionError("a JDK is needed to run the processor");
+        }
+        Files.createDirectories(output);
+        List<String> options = new ArrayList<>(List.of("-d", output.toString(), "-cp", System.getProperty("java.class.path")));
+        if (index) {
+            Path processor = Path.of(System.getProperty("iockids.processor.path", "iockids-processor/target/classes"));
+            if (!Files.isDirectory(processor.resolve("iockids/processor"))) {
+                throw new AssertionError("iockids-processor is not built at " + processor.toAbsolutePath());
+            }
+            options.addAll(List.of("-processorpath", processor.toString(), "-processor", "iockids.processor.ClassIndexProcessor"));
+        } else {
+            options.add("-proc:none");
+        }
+        for (Map.Entry<String, String> entry : sources.entrySet()) {
+            Path file = source.resolve(entry.getKey() + ".java");
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, entry.getValue());
+            options.add(file.toString());
+        }
+        if (compiler.run(null, null, null, options.toArray(new String[0])) != 0) {
+            throw new AssertionError("failed to compile the fixtures");
+        }
+        return output;
+    }
+
+    private static URLClassLoader loaderOf(Path root) throws IOException {
+        return new URLClassLoader(new URL[] {root.toUri().toURL()}, ClassIndexTest.class.getClassLoader());
+    }
+
+    /**
+     * 以root为上下文类加载器的classpath调用Scanner
+     */
+    private static <T> T scan(Path root, Supplier<T> scanning) throws IOException {
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        try (URLClassLoader loader = loaderOf(root)) {
+            thread.setContextClassLoader(loader);
+            return scanning.get();
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    private static Set<String> classNames(Path root) throws IOException {
+        return scan(root, () -> new HashSet<>(Scanner.getClassName("indexed")));
+    }
+
+    private static Set<String> singletons(Path root) throws IOException {
+        return scan(root, () -> {
+            Set<String> names = new HashSet<>();
+            for (Class<?> clazz : Scanner.getClassesWithAnnotation("indexed", true, javax.inject.Singleton.class)) {
+                names.add(clazz.getName());
+            }
+            return names;
+        });
+    }
+
+    private static void copy(Path from, Path to) throws IOException {
+        try (Stream<Path> files = Files.walk(from)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                Path target = to.resolve(from.relativize(path).toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.copy(path, target);
+                }
+            }
+        }
+    }
+
+    private static void writeJar(Path jar, Path root) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar));
+             Stream<Path> files = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(path)) {
+                    out.putNextEntry(new JarEntry(root.relativize(path).toString().replace('\\', '/')));
+                    Files.copy(path, (OutputStream) out);
+                    out.closeEntry();
+                }
+            }
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+        System.out.println("ok: " + message);
+    }
+
+}
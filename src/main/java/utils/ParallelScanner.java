@@ -0,0 +1,196 @@
+package utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 基于java.nio.file的classpath扫描引擎，Scanner的默认实现
+ * 每个classpath条目（目录或jar）为一个任务，在ForkJoinPool上并行遍历，jar通过zipfs打开
+ * 每个任务只写自己的结果列表，最后按条目顺序合并，无需加锁；所有目录流和jar文件系统均在遍历后关闭
+ */
+public class ParallelScanner {
+
+    private static volatile ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * 设置扫描使用的线程池，默认为ForkJoinPool.commonPool()
+     * @param forkJoinPool 线程池
+     */
+    public static void setPool(ForkJoinPool forkJoinPool) {
+        pool = forkJoinPool;
+    }
+
+    /**
+     * 并行扫描多个classpath条目
+     * @param roots 目录或jar文件
+     * @param packagePath 包路径，如 demo/mvc
+     * @param childPackage 是否遍历子包
+     * @return 类的完整名称，按条目顺序排列
+     */
+    public static List<String> scan(List<Path> roots, String packagePath, boolean childPackage) {
+        List<String> classNames = new ArrayList<>();
+        for (List<String> names : map(roots, (root) -> scanRoot(root, packagePath, childPackage))) {
+            classNames.addAll(names);
+        }
+        return classNames;
+    }
+
+    /**
+     * 对每个classpath条目并行执行任务
+     * @param roots 目录或jar文件
+     * @param task 任务
+     * @return 各条目的结果，按条目顺序排列
+     */
+    public static <R> List<R> map(List<Path> roots, Function<Path, R> task) {
+        if (roots.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<RootTask<R>> tasks = new ArrayList<>(roots.size());
+        for (Path root : roots) {
+            tasks.add(new RootTask<>(root, task));
+        }
+        return pool.invoke(new RecursiveTask<List<R>>() {
+            @Override
+            protected List<R> compute() {
+                invokeAll(tasks);
+                List<R> results = new ArrayList<>(tasks.size());
+                for (RootTask<R> task : tasks) {
+                    results.add(task.join());
+                }
+                return results;
+            }
+        });
+    }
+
+    /**
+     * 扫描单个classpath条目
+     * @param root 目录或jar文件
+     * @param packagePath 包路径，如 demo/mvc
+     * @param childPackage 是否遍历子包
+     * @return 类的完整名称
+     */
+    public static List<String> scanRoot(Path root, String packagePath, boolean childPackage) {
+        List<String> classNames = new ArrayList<>();
+        visit(root, packagePath, childPackage, (className, file) -> classNames.add(className));
+        return classNames;
+    }
+
+    /**
+     * 扫描整个classpath条目，并读取每个类上的注解
+     * @param root 目录或jar文件
+     * @return 类的完整名称 -> 类上的注解名称，按路径顺序排列
+     */
+    public static Map<String, List<String>> scanHeaders(Path root) {
+        Map<String, List<String>> classes = new LinkedHashMap<>();
+        visit(root, "", true, (className, file) -> {
+            try (InputStream in = Files.newInputStream(file)) {
+                classes.put(className, ClassHeader.read(in).getAnnotations());
+            } catch (IOException ignored) {
+                // 不是合法的class文件
+            }
+        });
+        return classes;
+    }
+
+    private static void visit(Path root, String packagePath, boolean childPackage, BiConsumer<String, Path> visitor) {
+        ScanEvent event = new ScanEvent();
+        event.begin();
+        int classes = 0;
+        boolean jar = false;
+        try {
+            if (Files.isDirectory(root)) {
+                classes = walk(root, packagePath, childPackage, visitor);
+            } else if (Files.isRegularFile(root)) {
+                jar = true;
+                try (FileSystem fileSystem = FileSystems.newFileSystem(root, (ClassLoader) null)) {
+                    classes = walk(fileSystem.getPath("/"), packagePath, childPackage, visitor);
+                }
+            }
+        } catch (IOException | UncheckedIOException | UnsupportedOperationException e) {
+            // 损坏或不是zip格式的条目，跳过
+            e.printStackTrace();
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.root = root.toString();
+            event.jar = jar;
+            event.packagePath = packagePath;
+            event.classes = classes;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return 遍历到的类的个数
+     */
+    private static int walk(Path root, String packagePath, boolean childPackage, BiConsumer<String, Path> visitor) throws IOException {
+        Path start = packagePath.isEmpty() ? root : root.resolve(packagePath);
+        if (!Files.isDirectory(start)) {
+            return 0;
+        }
+        int[] classes = new int[1];
+        try (Stream<Path> paths = Files.walk(start, childPackage ? Integer.MAX_VALUE : 1)) {
+            paths.filter((path) -> path.getFileName() != null && path.getFileName().toString().endsWith(".class"))
+                    .forEachOrdered((path) -> {
+                        String className = toClassName(root.relativize(path));
+                        if (className != null) {
+                            visitor.accept(className, path);
+                            classes[0]++;
+                        }
+                    });
+        }
+        return classes[0];
+    }
+
+    /**
+     * @param relative class文件相对于classpath条目的路径
+     * @return 类的完整名称，module-info、package-info和META-INF下的文件返回null
+     */
+    private static String toClassName(Path relative) {
+        StringBuilder className = new StringBuilder();
+        for (Path name : relative) {
+            if (className.length() > 0) {
+                className.append('.');
+            }
+            className.append(name.toString());
+        }
+        String result = className.substring(0, className.length() - ".class".length());
+        if (result.startsWith("META-INF.") || result.indexOf('-') != -1) {
+            return null;
+        }
+        return result;
+    }
+
+    private static class RootTask<R> extends RecursiveTask<R> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path root;
+
+        private final Function<Path, R> task;
+
+        RootTask(Path root, Function<Path, R> task) {
+            this.root = root;
+            this.task = task;
+        }
+
+        @Override
+        protected R compute() {
+            return task.apply(root);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * 检查并行扫描引擎:
+ * 1. 对目录和jar（有无目录条目）并行扫描的结果与逐个条目顺序扫描（File和JarFile）的结果一致，包括是否遍历子包
+ * 2. 结果按条目顺序合并，与线程池大小无关；Scanner经由类加载器扫描的结果也一致
+ * 3. 扫描后不再持有jar的文件句柄（通过/proc/self/fd检查），jar被替换后重新扫描得到新的内容
+ * 运行main()，不一致时抛出AssertionError
+ */
+public class ParallelScannerTest {
+
+    private static final List<String> CLASSES = List.of("fixture/One.class", "fixture/Two$Inner.class",
+            "fixture/sub/Three.class", "fixture/sub/deep/Four.class", "other/Five.class", "module-info.class");
+
+    public static void main(String[] args) throws Exception {
+        Path temp = Files.createTempDirectory("iockids-parallel-scan");
+        try {
+            run(temp);
+        } finally {
+            try (Stream<Path> files = Files.walk(temp)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+        System.out.println("ParallelScannerTest passed");
+    }
+
+    private static void run(Path temp) throws Exception {
+        List<Path> roots = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Path dir = temp.resolve("classes" + i);
+            for (String name : CLASSES) {
+                write(dir, "r" + i + "/" + name);
+            }
+            roots.add(dir);
+            Path jar = temp.resolve("lib" + i + ".jar");
+            writeJar(jar, "j" + i + "/", i % 2 == 0);
+            roots.add(jar);
+        }
+
+        for (String packagePath : List.of("", "r0/fixture", "j1/fixture", "j2/fixture/sub")) {
+            for (boolean childPackage : List.of(true, false)) {
+                List<String> sequential = new ArrayList<>();
+                for (Path root : roots) {
+                    sequential.addAll(sequentialScan(root, packagePath, childPackage));
+                }
+                List<String> parallel = ParallelScanner.scan(roots, packagePath, childPackage);
+                check(new HashSet<>(parallel).equals(new HashSet<>(sequential)) && parallel.size() == sequential.size(),
+                        "parallel scan of \"" + packagePath + "\" (child packages: " + childPackage + ") finds "
+                                + parallel.size() + " classes, the same as a sequential scan");
+            }
+        }
+
+        List<String> expected = new ArrayList<>();
+        for (Path root : roots) {
+            expected.addAll(ParallelScanner.scanRoot(root, "", true));
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelScanner.setPool(pool);
+            check(ParallelScanner.scan(roots, "", true).equals(expected), "results are merged in the order of the roots");
+        } finally {
+            ParallelScanner.setPool(ForkJoinPool.commonPool());
+            pool.shutdown();
+        }
+
+        // 同一个包分布在多个目录和jar中，Scanner通过类加载器找到所有条目
+        List<Path> shared = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Path dir = temp.resolve("shared" + i);
+            for (String name : CLASSES) {
+                write(dir, name.replace("fixture/", "fixture/d" + i + "/"));
+            }
+            shared.add(dir);
+            Path jar = temp.resolve("shared" + i + ".jar");
+            writeJar(jar, "", true);
+            shared.add(jar);
+        }
+        Set<String> reference = new HashSet<>();
+        for (Path root : shared) {
+            reference.addAll(sequentialScan(root, "fixture", true));
+        }
+        check(new HashSet<>(scannerClassNames(shared)).equals(reference),
+                "Scanner finds the same classes as a sequential scan of every root");
+
+        Path jar = temp.resolve("lib0.jar");
+        if (Files.isDirectory(Path.of("/proc/self/fd"))) {
+            FileSystem fileSystem = FileSystems.newFileSystem(jar, (ClassLoader) null);
+            check(isOpen(jar), "an open jar file system is seen in /proc/self/fd");
+            fileSystem.close();
+            check(!isOpen(jar), "closed jar file systems are released");
+            for (Path root : roots) {
+                if (isOpen(root)) {
+                    throw new AssertionError("handle of " + root + " is still open after scanning");
+                }
+            }
+            check(true, "no jar is left open after scanning");
+        }
+        writeJar(jar, "replaced/", true);
+        List<String> replaced = ParallelScanner.scanRoot(jar, "", true);
+        check(new HashSet<>(replaced).equals(new HashSet<>(sequentialScan(jar, "", true))) && replaced.contains("replaced.fixture.One"),
+                "a replaced jar is scanned again with its new content");
+    }
+
+    /**
+     * 逐个条目顺序扫描，目录通过File遍历，jar通过JarFile遍历
+     */
+    private static List<String> sequentialScan(Path root, String packagePath, boolean childPackage) throws IOException {
+        List<String> classNames = new ArrayList<>();
+        String prefix = packagePath.isEmpty() ? "" : packagePath + "/";
+        if (Files.isDirectory(root)) {
+            listFiles(root.toFile(), prefix, childPackage, classNames);
+            return classNames;
+        }
+        try (JarFile jarFile = new JarFile(root.toFile())) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (name.startsWith(prefix) && (childPackage || name.indexOf('/', prefix.length()) == -1)) {
+                    addClass(name, classNames);
+                }
+            }
+        }
+        return classNames;
+    }
+
+    private static void listFiles(File root, String path, boolean childPackage, List<String> classNames) {
+        File[] files = new File(root, path).listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                if (childPackage) {
+                    listFiles(root, path + file.getName() + "/", true, classNames);
+                }
+            } else {
+                addClass(path + file.getName(), classNames);
+            }
+        }
+    }
+
+    private static void addClass(String name, List<String> classNames) {
+        if (name.endsWith(".class") && !name.startsWith("META-INF/") && !name.contains("-")) {
+            classNames.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+        }
+    }
+
+    private static List<String> scannerClassNames(List<Path> roots) throws IOException {
+        URL[] urls = new URL[roots.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = roots.get(i).toUri().toURL();
+        }
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        try (URLClassLoader loader = new URLClassLoader(urls, null)) {
+            thread.setContextClassLoader(loader);
+            return Scanner.getClassName("fixture");
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    /**
+     * @return 当前进程是否打开了该文件
+     */
+    private static boolean isOpen(Path file) throws IOException {
+        Path real = file.toRealPath();
+        try (Stream<Path> fds = Files.list(Path.of("/proc/self/fd"))) {
+            return fds.anyMatch(fd -> {
+                try {
+                    return Files.readSymbolicLink(fd).equals(real);
+                } catch (IOException | UnsupportedOperationException e) {
+                    // 列出后已关闭的句柄
+                    return false;
+                }
+            });
+        }
+    }
+
+    private static void write(Path root, String name) throws IOException {
+        Path file = root.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[] {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE});
+    }
+
+    /**
+     * @param prefix 所有类的路径前缀
+     * @param directories 是否写入目录条目，没有目录条目时类加载器无法找到包
+     */
+    private static void writeJar(Path jar, String prefix, boolean directories) throws IOException {
+        Set<String> written = new HashSet<>();
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry("META-INF/versions/9/fixture/Hidden.class"));
+            out.closeEntry();
+            for (String name : CLASSES) {
+                String path = prefix + name;
+                for (int i = path.indexOf('/'); directories && i != -1; i = path.indexOf('/', i + 1)) {
+                    if (written.add(path.substring(0, i + 1))) {
+                        out.putNextEntry(new JarEntry(path.substring(0, i + 1)));
+                        out.closeEntry();
+                    }
+                }
+                out.putNextEntry(new JarEntry(path));
+                out.write(new byte[] {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE});
+                out.closeEntry();
+            }
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+        System.out.println("ok: " + message);
+    }
+
+}
@@ -0,0 +1,286 @@
+package utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * 持久化的扫描结果缓存，每个classpath条目（目录或jar）保存一份完整的类名和类上的注解
+ * 条目以路径、大小、修改时间（以及可选的内容哈希）为指纹，指纹不变时直接使用缓存，只重新扫描变化的条目
+ * 目录的大小为其中所有文件大小之和，修改时间为其中所有文件和子目录的最大修改时间
+ * 缓存文件先写入临时文件再原子替换，进程中途退出也不会留下不完整的缓存
+ */
+public class ScanCache {
+
+    private static final int MAGIC = 0x494F4353;
+
+    private static final int VERSION = 1;
+
+    private final Path file;
+
+    /**
+     * 是否计算内容哈希，修改时间不可靠（如构建工具固定了jar中的时间戳）时开启
+     */
+    private final boolean hashing;
+
+    /**
+     * classpath条目的绝对路径 -> 扫描结果
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 加载后重新扫描和移除的条目数，与已写入缓存文件时的值不同即需要写回
+     */
+    private final AtomicInteger changes = new AtomicInteger();
+
+    private int savedChanges;
+
+    private ScanCache(Path file, boolean hashing) {
+        this.file = file;
+        this.hashing = hashing;
+    }
+
+    /**
+     * 读取缓存文件，文件不存在或已损坏时为空缓存
+     * @param file 缓存文件
+     * @param hashing 是否计算内容哈希
+     * @return 扫描结果缓存
+     */
+    public static ScanCache load(Path file, boolean hashing) {
+        ScanCache cache = new ScanCache(file, hashing);
+        if (Files.isRegularFile(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                cache.read(in);
+            } catch (IOException | RuntimeException e) {
+                // 版本不同或已损坏，丢弃后重新扫描
+                cache.entries.clear();
+            }
+        }
+        return cache;
+    }
+
+    private void read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            return;
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String path = in.readUTF();
+            long size = in.readLong();
+            long modified = in.readLong();
+            long hash = in.readLong();
+            int classCount = in.readInt();
+            Map<String, List<String>> classes = new LinkedHashMap<>();
+            for (int j = 0; j < classCount; j++) {
+                String className = in.readUTF();
+                int annotationCount = in.readUnsignedShort();
+                List<String> annotations = new ArrayList<>(annotationCount);
+                for (int k = 0; k < annotationCount; k++) {
+                    annotations.add(in.readUTF());
+                }
+                classes.put(className, annotations);
+            }
+            entries.put(path, new Entry(size, modified, hash, classes));
+        }
+    }
+
+    /**
+     * 获取某个classpath条目中的所有类，指纹变化时重新扫描
+     * @param root 目录或jar文件
+     * @return 类的完整名称 -> 类上的注解名称
+     */
+    public Map<String, List<String>> get(Path root) {
+        String path = root.toAbsolutePath().toString();
+        Entry fingerprint;
+        try {
+            fingerprint = fingerprint(root, hashing);
+        } catch (IOException | UncheckedIOException e) {
+            // 无法读取的条目不缓存
+            if (entries.remove(path) != null) {
+                changes.incrementAndGet();
+            }
+            return ParallelScanner.scanHeaders(root);
+        }
+        Entry cached = entries.get(path);
+        if (cached != null && cached.matches(fingerprint)) {
+            return cached.classes;
+        }
+        Entry scanned = new Entry(fingerprint.size, fingerprint.modified, fingerprint.hash, ParallelScanner.scanHeaders(root));
+        entries.put(path, scanned);
+        changes.incrementAndGet();
+        return scanned.classes;
+    }
+
+    /**
+     * 计算某个classpath条目的指纹
+     * @param root 目录或jar文件
+     * @param hashing 是否计算内容哈希
+     * @return 由大小、修改时间和内容哈希组成的指纹
+     * @throws IOException 条目不存在或无法读取
+     */
+    static long fingerprintOf(Path root, boolean hashing) throws IOException {
+        Entry entry = fingerprint(root, hashing);
+        return (entry.size * 31 + entry.modified) * 31 + entry.hash;
+    }
+
+    private static Entry fingerprint(Path root, boolean hashing) throws IOException {
+        if (!Files.isDirectory(root)) {
+            BasicFileAttributes attributes = Files.readAttributes(root, BasicFileAttributes.class);
+            long hash = 0;
+            if (hashing) {
+                CRC32 crc = new CRC32();
+                update(crc, root);
+                hash = crc.getValue();
+            }
+            return new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), hash, null);
+        }
+        long[] sizeAndModified = new long[2];
+        CRC32 crc = hashing ? new CRC32() : null;
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                // 增删或重命名文件会修改所在目录的修改时间
+                sizeAndModified[1] = Math.max(sizeAndModified[1], attributes.lastModifiedTime().toMillis());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) throws IOException {
+                sizeAndModified[0] += attributes.size();
+                sizeAndModified[1] = Math.max(sizeAndModified[1], attributes.lastModifiedTime().toMillis());
+                if (crc != null && path.getFileName().toString().endsWith(".class")) {
+                    crc.update(root.relativize(path).toString().getBytes());
+                    update(crc, path);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return new Entry(sizeAndModified[0], sizeAndModified[1], crc == null ? 0 : crc.getValue(), null);
+    }
+
+    private static void update(CRC32 crc, Path path) throws IOException {
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(path)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, n);
+            }
+        }
+    }
+
+    /**
+     * @return 加载后重新扫描和移除的条目数
+     */
+    int changes() {
+        return changes.get();
+    }
+
+    /**
+     * @param root 目录或jar文件
+     * @return 是否有该条目的缓存
+     */
+    boolean contains(Path root) {
+        return entries.containsKey(root.toAbsolutePath().toString());
+    }
+
+    /**
+     * 有重新扫描或已不存在的条目时写回缓存文件，已不存在的条目被移除
+     * 写入成功后才记为已保存，写入失败时下次save()仍会重试；写入期间其他线程重新扫描的条目留到下次写回
+     */
+    public synchronized void save() {
+        Iterator<String> paths = entries.keySet().iterator();
+        while (paths.hasNext()) {
+            if (!Files.exists(Path.of(paths.next()))) {
+                paths.remove();
+                changes.incrementAndGet();
+            }
+        }
+        int current = changes.get();
+        if (current == savedChanges) {
+            return;
+        }
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    write(out);
+                }
+                try {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+                savedChanges = current;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        Map<String, Entry> snapshot = new LinkedHashMap<>(entries);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(snapshot.size());
+        for (Map.Entry<String, Entry> item : snapshot.entrySet()) {
+            Entry entry = item.getValue();
+            out.writeUTF(item.getKey());
+            out.writeLong(entry.size);
+            out.writeLong(entry.modified);
+            out.writeLong(entry.hash);
+            out.writeInt(entry.classes.size());
+            for (Map.Entry<String, List<String>> clazz : entry.classes.entrySet()) {
+                out.writeUTF(clazz.getKey());
+                out.writeShort(clazz.getValue().size());
+                for (String annotation : clazz.getValue()) {
+                    out.writeUTF(annotation);
+                }
+            }
+        }
+    }
+
+    private static class Entry {
+
+        private final long size;
+
+        private final long modified;
+
+        private final long hash;
+
+        private final Map<String, List<String>> classes;
+
+        Entry(long size, long modified, long hash, Map<String, List<String>> classes) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.classes = classes;
+        }
+
+        boolean matches(Entry fingerprint) {
+            return size == fingerprint.size && modified == fingerprint.modified && hash == fingerprint.hash;
+        }
+    }
+}
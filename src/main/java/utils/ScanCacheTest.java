@@ -0,0 +1,116 @@
+package utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * 检查扫描结果缓存:
+ * 1. 重启后读取缓存文件，指纹不变的目录和jar不重新扫描，结果与第一次扫描一致
+ * 2. 目录或jar变化时只重新扫描该条目
+ * 3. 已删除的条目在写回时被移除
+ * 4. 写入缓存文件失败后，下次save()仍会写回
+ * 运行main()，不一致时抛出AssertionError
+ */
+public class ScanCacheTest {
+
+    public static void main(String[] args) throws IOException {
+        Path temp = Files.createTempDirectory("iockids-scan-cache");
+        try {
+            run(temp);
+        } finally {
+            try (Stream<Path> files = Files.walk(temp)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+        System.out.println("ScanCacheTest passed");
+    }
+
+    private static void run(Path temp) throws IOException {
+        Path dir = temp.resolve("classes");
+        copyClass(dir, ClassHeader.class);
+        Path jar = temp.resolve("lib.jar");
+        writeJar(jar, ScanMetrics.class);
+        Path file = temp.resolve("scan.cache");
+
+        ScanCache cold = ScanCache.load(file, false);
+        Map<String, List<String>> dirClasses = cold.get(dir);
+        Map<String, List<String>> jarClasses = cold.get(jar);
+        check(dirClasses.containsKey(ClassHeader.class.getName()) && jarClasses.containsKey(ScanMetrics.class.getName()),
+                "directories and jars are scanned");
+        check(cold.changes() == 2, "a cold cache scans every entry");
+        cold.save();
+        check(Files.isRegularFile(file), "cache file is written");
+
+        ScanCache warm = ScanCache.load(file, false);
+        check(warm.get(dir).equals(dirClasses) && warm.get(jar).equals(jarClasses),
+                "a warm restart returns the same classes");
+        check(warm.changes() == 0, "a warm restart scans nothing");
+
+        writeJar(jar, ScanMetrics.class, ScanEvent.class);
+        check(warm.get(jar).containsKey(ScanEvent.class.getName()) && warm.changes() == 1, "a changed jar is rescanned");
+        copyClass(dir, ClassIndex.class);
+        check(warm.get(dir).containsKey(ClassIndex.class.getName()) && warm.changes() == 2,
+                "a changed directory is rescanned");
+        warm.save();
+        ScanCache restarted = ScanCache.load(file, false);
+        check(restarted.get(jar).containsKey(ScanEvent.class.getName()) && restarted.get(dir).containsKey(ClassIndex.class.getName())
+                && restarted.changes() == 0, "rescanned entries are saved");
+
+        Files.delete(jar);
+        check(restarted.contains(jar), "a deleted jar is still cached before saving");
+        restarted.save();
+        check(!ScanCache.load(file, false).contains(jar), "deleted entries are removed when saving");
+
+        // 缓存文件所在目录无法创建时写入失败，之后恢复仍会写回
+        Path blocker = temp.resolve("blocker");
+        Files.createFile(blocker);
+        Path blocked = blocker.resolve("scan.cache");
+        ScanCache failing = ScanCache.load(blocked, false);
+        failing.get(dir);
+        System.out.println("(a stack trace of the expected save failure follows)");
+        failing.save();
+        check(!Files.exists(blocked), "saving into a missing directory fails");
+        Files.delete(blocker);
+        failing.save();
+        check(Files.isRegularFile(blocked) && ScanCache.load(blocked, false).contains(dir),
+                "the cache is saved after a failed save");
+    }
+
+    private static void copyClass(Path dir, Class<?> clazz) throws IOException {
+        String name = clazz.getName().replace('.', '/') + ".class";
+        Path target = dir.resolve(name);
+        Files.createDirectories(target.getParent());
+        try (InputStream in = ScanCacheTest.class.getClassLoader().getResourceAsStream(name)) {
+            Files.copy(in, target);
+        }
+    }
+
+    private static void writeJar(Path jar, Class<?>... classes) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (Class<?> clazz : classes) {
+                String name = clazz.getName().replace('.', '/') + ".class";
+                out.putNextEntry(new JarEntry(name));
+                try (InputStream in = ScanCacheTest.class.getClassLoader().getResourceAsStream(name)) {
+                    in.transferTo(out);
+                }
+                out.closeEntry();
+            }
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+        System.out.println("ok: " + message);
+    }
+
+}
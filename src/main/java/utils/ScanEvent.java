@@ -0,0 +1,30 @@
+package utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 遍历一个classpath条目（目录或jar）的JFR事件，每个条目一个事件，持续时间即遍历耗时
+ * 未开启记录时begin()和shouldCommit()都是空操作，事件对象经逃逸分析后不会分配
+ */
+@Name("iockids.Scan")
+@Label("Classpath Scan")
+@Description("Walking a directory or a jar of the classpath")
+@Category({"IocKids", "Scanning"})
+final class ScanEvent extends Event {
+
+    @Label("Root")
+    String root;
+
+    @Label("Jar")
+    boolean jar;
+
+    @Label("Package Path")
+    String packagePath;
+
+    @Label("Classes")
+    int classes;
+}
@@ -0,0 +1,82 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Scanner的扫描耗时统计（进程内累计），每次列出某包下的类名时记录一次
+ * 扫描本身耗时在毫秒级以上，统计的开销可以忽略，因此总是开启
+ */
+public final class ScanMetrics {
+
+    private static final LongAdder SCANS = new LongAdder();
+
+    private static final LongAdder NANOS = new LongAdder();
+
+    private static final LongAdder CLASSES = new LongAdder();
+
+    private static final AtomicLong LAST_NANOS = new AtomicLong();
+
+    private static final AtomicLong MAX_NANOS = new AtomicLong();
+
+    private ScanMetrics() {
+    }
+
+    /**
+     * @param nanos 本次扫描耗时
+     * @param classes 本次扫描到的类的个数
+     */
+    static void record(long nanos, int classes) {
+        SCANS.increment();
+        NANOS.add(nanos);
+        CLASSES.add(classes);
+        LAST_NANOS.set(nanos);
+        MAX_NANOS.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * @return 扫描次数
+     */
+    public static long getScanCount() {
+        return SCANS.sum();
+    }
+
+    /**
+     * @return 所有扫描的总耗时（纳秒）
+     */
+    public static long getScanNanos() {
+        return NANOS.sum();
+    }
+
+    /**
+     * @return 最近一次扫描的耗时（纳秒）
+     */
+    public static long getLastScanNanos() {
+        return LAST_NANOS.get();
+    }
+
+    /**
+     * @return 耗时最长的一次扫描（纳秒）
+     */
+    public static long getMaxScanNanos() {
+        return MAX_NANOS.get();
+    }
+
+    /**
+     * @return 所有扫描到的类的个数之和
+     */
+    public static long getScannedClasses() {
+        return CLASSES.sum();
+    }
+
+    /**
+     * 清空统计
+     */
+    public static void reset() {
+        SCANS.reset();
+        NANOS.reset();
+        CLASSES.reset();
+        LAST_NANOS.set(0);
+        MAX_NANOS.set(0);
+    }
+}
@@ -1,13 +1,21 @@
 package utils;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.lang.annotation.Annotation;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.Map;
+import java.util.function.Predicate;
 
 /**
  * @author Cai2yy
@@ -16,6 +24,57 @@ import java.util.jar.JarFile;
 
 public class Scanner {
 
+    /**
+     * 扫描结果缓存，默认由系统属性iockids.scan.cache指定缓存文件，iockids.scan.cache.hash开启内容哈希
+     */
+    private static volatile ScanCache cache = defaultCache();
+
+    private static ScanCache defaultCache() {
+        String file = System.getProperty("iockids.scan.cache");
+        if (file == null || file.isEmpty()) {
+            return null;
+        }
+        return ScanCache.load(Paths.get(file), Boolean.getBoolean("iockids.scan.cache.hash"));
+    }
+
+    /**
+     * 启用扫描结果缓存，重启后只重新扫描变化的目录和jar
+     * @param file 缓存文件，为null时关闭缓存
+     */
+    public static void setCache(Path file) {
+        setCache(file, false);
+    }
+
+    /**
+     * @param file 缓存文件，为null时关闭缓存
+     * @param hashing 是否以内容哈希作为指纹的一部分
+     */
+    public static void setCache(Path file, boolean hashing) {
+        cache = file == null ? null : ScanCache.load(file, hashing);
+    }
+
+    /**
+     * 获取classpath的指纹，由每个条目（目录或jar）的路径、大小和修改时间组成，任一条目增删或变化时指纹随之变化
+     * @param hashing 是否以内容哈希作为指纹的一部分
+     * @return 指纹
+     */
+    public static long getClasspathFingerprint(boolean hashing) {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        long fingerprint = 17;
+        for (URL url : getURLs(loader)) {
+            Path root = toPath(url.getPath());
+            long entry;
+            try {
+                entry = ScanCache.fingerprintOf(root, hashing);
+            } catch (IOException | UncheckedIOException e) {
+                // 不存在的条目也参与指纹，之后出现时指纹随之变化
+                entry = -1;
+            }
+            fingerprint = (fingerprint * 31 + root.toAbsolutePath().toString().hashCode()) * 31 + entry;
+        }
+        return fingerprint;
+    }
+
     /**
      * 获取某包下（包括该包的所有子包）所有类
      * @param packageName 包名
@@ -48,132 +107,203 @@ public class Scanner {
     }
 
     /**
-     * 获取某包下（包括该包的所有子包）所有类
+     * 获取某包下带有某种注解的类，该注解本身需被metaAnnotation标记（如被@Qualifier标记的@Named）
+     * 通过解析class文件（或类索引）筛选，不会加载和初始化不匹配的类，匹配的类只加载不初始化
      * @param packageName 包名
-     * @return 类的完整名称
+     * @param childPackage 是否遍历子包
+     * @param metaAnnotation 元注解
+     * @return 匹配的类
      */
-    public static List<String> getClassName(String packageName) {
-        return getClassName(packageName, true);
+    public static List<Class<?>> getClassesWithMetaAnnotation(String packageName, boolean childPackage,
+                                                              Class<? extends Annotation> metaAnnotation) {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        return getClasses(loader, packageName, childPackage, metaAnnotated(loader, metaAnnotation));
     }
 
     /**
-     * 获取某包下所有类
+     * 获取某包下带有annotation，或带有被metaAnnotation标记的注解的类，只遍历一次classpath
      * @param packageName 包名
      * @param childPackage 是否遍历子包
-     * @return 类的完整名称
+     * @param annotation 注解
+     * @param metaAnnotation 元注解
+     * @return 匹配的类
      */
-    public static List<String> getClassName(String packageName, boolean childPackage) {
-        List<String> fileNames = null;
+    public static List<Class<?>> getClassesWithAnnotation(String packageName, boolean childPackage,
+                                                          Class<? extends Annotation> annotation,
+                                                          Class<? extends Annotation> metaAnnotation) {
         ClassLoader loader = Thread.currentThread().getContextClassLoader();
-        String packagePath = packageName.replace(".", "/");
-        URL url = loader.getResource(packagePath);
-        if (url != null) {
-            String type = url.getProtocol();
-            if (type.equals("file")) {
-                fileNames = getClassNameByFile(url.getPath(), null, childPackage);
-            } else if (type.equals("jar")) {
-                fileNames = getClassNameByJar(url.getPath(), childPackage);
-            }
-        } else {
-            fileNames = getClassNameByJars(((URLClassLoader) loader).getURLs(), packagePath, childPackage);
-        }
-        return fileNames;
+        String annotationName = annotation.getName();
+        Predicate<String> metaAnnotated = metaAnnotated(loader, metaAnnotation);
+        return getClasses(loader, packageName, childPackage, (name) -> name.equals(annotationName) || metaAnnotated.test(name));
     }
 
     /**
-     * 从项目文件获取某包下所有类
-     * @param filePath 文件路径
-     * @param className 类名集合
+     * @return 按注解的完整名称判断该注解是否被metaAnnotation标记，结果按注解缓存
+     */
+    private static Predicate<String> metaAnnotated(ClassLoader loader, Class<? extends Annotation> metaAnnotation) {
+        String metaName = metaAnnotation.getName();
+        Map<String, Boolean> matched = new HashMap<>();
+        return (annotation) -> matched.computeIfAbsent(annotation, (name) -> {
+            ClassHeader header = ClassHeader.read(loader, name);
+            return header != null && header.getAnnotations().contains(metaName);
+        });
+    }
+
+    /**
+     * 获取某包下带有某种注解的类
+     * 通过解析class文件（或类索引）筛选，不会加载和初始化不匹配的类，匹配的类只加载不初始化
+     * @param packageName 包名
      * @param childPackage 是否遍历子包
-     * @return 类的完整名称
+     * @param annotation 注解
+     * @return 匹配的类
      */
-    private static List<String> getClassNameByFile(String filePath, List<String> className, boolean childPackage) {
-        List<String> myClassName = new ArrayList<String>();
-        File file = new File(filePath);
-        File[] childFiles = file.listFiles();
-        for (File childFile : childFiles) {
-            if (childFile.isDirectory()) {
-                if (childPackage) {
-                    myClassName.addAll(getClassNameByFile(childFile.getPath(), myClassName, childPackage));
-                }
+    public static List<Class<?>> getClassesWithAnnotation(String packageName, boolean childPackage,
+                                                          Class<? extends Annotation> annotation) {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        String annotationName = annotation.getName();
+        return getClasses(loader, packageName, childPackage, annotationName::equals);
+    }
+
+    /**
+     * @param annotationFilter 按注解的完整名称筛选，类上任一注解匹配即可
+     */
+    private static List<Class<?>> getClasses(ClassLoader loader, String packageName, boolean childPackage,
+                                             Predicate<String> annotationFilter) {
+        ClassIndex index = ClassIndex.load(loader);
+        Map<String, List<String>> cached = new HashMap<>();
+        List<Class<?>> classes = new ArrayList<>();
+        for (String className : getClassName(loader, index, packageName, childPackage, cached)) {
+            List<String> annotations;
+            if (index.contains(className)) {
+                annotations = index.getAnnotations(className);
+            } else if (cached.containsKey(className)) {
+                annotations = cached.get(className);
             } else {
-                String childFilePath = childFile.getPath();
-                if (childFilePath.endsWith(".class")) {
-                    childFilePath = childFilePath.substring(childFilePath.indexOf("\\classes") + 9, childFilePath.lastIndexOf("."));
-                    childFilePath = childFilePath.replace("\\", ".");
-                    myClassName.add(childFilePath);
+                ClassHeader header = ClassHeader.read(loader, className);
+                if (header == null) {
+                    continue;
+                }
+                annotations = header.getAnnotations();
+            }
+            for (String annotation : annotations) {
+                if (annotationFilter.test(annotation)) {
+                    try {
+                        classes.add(Class.forName(className, false, loader));
+                    } catch (ClassNotFoundException | LinkageError ignored) {
+                    }
+                    break;
                 }
             }
         }
+        return classes;
+    }
 
-        return myClassName;
+    /**
+     * 获取某包下（包括该包的所有子包）所有类
+     * @param packageName 包名
+     * @return 类的完整名称
+     */
+    public static List<String> getClassName(String packageName) {
+        return getClassName(packageName, true);
     }
 
     /**
-     * 从jar获取某包下所有类
-     * @param jarPath jar文件路径
+     * 获取某包下所有类，先读取编译期生成的类索引，只遍历没有索引的classpath条目
+     * @param packageName 包名
      * @param childPackage 是否遍历子包
      * @return 类的完整名称
      */
-    private static List<String> getClassNameByJar(String jarPath, boolean childPackage) {
-        List<String> myClassName = new ArrayList<String>();
-        String[] jarInfo = jarPath.split("!");
-        String jarFilePath = jarInfo[0].substring(jarInfo[0].indexOf("/"));
-        String packagePath = jarInfo[1].substring(1);
+    public static List<String> getClassName(String packageName, boolean childPackage) {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        return getClassName(loader, ClassIndex.load(loader), packageName, childPackage, new HashMap<>());
+    }
+
+    /**
+     * @param cached 输出参数，从扫描缓存中读到的类上的注解
+     */
+    private static List<String> getClassName(ClassLoader loader, ClassIndex index, String packageName, boolean childPackage,
+                                             Map<String, List<String>> cached) {
+        long start = System.nanoTime();
+        List<String> fileNames = listClassNames(loader, index, packageName, childPackage, cached);
+        ScanMetrics.record(System.nanoTime() - start, fileNames.size());
+        return fileNames;
+    }
+
+    private static List<String> listClassNames(ClassLoader loader, ClassIndex index, String packageName, boolean childPackage,
+                                               Map<String, List<String>> cached) {
+        List<String> fileNames = index.getClassNames(packageName, childPackage);
+        String packagePath = packageName.replace(".", "/");
+        List<Path> roots = new ArrayList<>();
+        boolean found = false;
         try {
-            JarFile jarFile = new JarFile(jarFilePath);
-            Enumeration<JarEntry> entrys = jarFile.entries();
-            while (entrys.hasMoreElements()) {
-                JarEntry jarEntry = entrys.nextElement();
-                String entryName = jarEntry.getName();
-                if (entryName.endsWith(".class")) {
-                    if (childPackage) {
-                        if (entryName.startsWith(packagePath)) {
-                            entryName = entryName.replace("/", ".").substring(0, entryName.lastIndexOf("."));
-                            myClassName.add(entryName);
-                        }
-                    } else {
-                        int index = entryName.lastIndexOf("/");
-                        String myPackagePath;
-                        if (index != -1) {
-                            myPackagePath = entryName.substring(0, index);
-                        } else {
-                            myPackagePath = entryName;
-                        }
-                        if (myPackagePath.equals(packagePath)) {
-                            entryName = entryName.replace("/", ".").substring(0, entryName.lastIndexOf("."));
-                            myClassName.add(entryName);
-                        }
-                    }
+            Enumeration<URL> urls = loader.getResources(packagePath);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                found = true;
+                String root = ClassIndex.rootOf(url, packagePath);
+                if (!index.isIndexed(root)) {
+                    roots.add(toPath(root));
                 }
             }
-        } catch (Exception e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
-        return myClassName;
-    }
-
-    /**
-     * 从所有jar中搜索该包，并获取该包下所有类
-     * @param urls URL集合
-     * @param packagePath 包路径
-     * @param childPackage 是否遍历子包
-     * @return 类的完整名称
-     */
-    private static List<String> getClassNameByJars(URL[] urls, String packagePath, boolean childPackage) {
-        List<String> myClassName = new ArrayList<String>();
-        if (urls != null) {
-            for (int i = 0; i < urls.length; i++) {
-                URL url = urls[i];
+        // 包不在任何目录中，从所有jar中搜索该包
+        if (!found) {
+            for (URL url : getURLs(loader)) {
                 String urlPath = url.getPath();
                 // 不必搜索classes文件夹
-                if (urlPath.endsWith("classes/")) {
+                if (urlPath.endsWith("classes/") || index.isIndexed(urlPath)) {
                     continue;
                 }
-                String jarPath = urlPath + "!/" + packagePath;
-                myClassName.addAll(getClassNameByJar(jarPath, childPackage));
+                roots.add(toPath(urlPath));
+            }
+        }
+        ScanCache scanCache = cache;
+        if (scanCache == null) {
+            fileNames.addAll(ParallelScanner.scan(roots, packagePath, childPackage));
+            return fileNames;
+        }
+        for (Map<String, List<String>> classes : ParallelScanner.map(roots, scanCache::get)) {
+            for (Map.Entry<String, List<String>> entry : classes.entrySet()) {
+                if (ClassIndex.inPackage(entry.getKey(), packageName, childPackage)) {
+                    fileNames.add(entry.getKey());
+                    cached.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        scanCache.save();
+        return fileNames;
+    }
+
+    /**
+     * @param root URL中的路径（已编码）
+     * @return 文件路径
+     */
+    private static Path toPath(String root) {
+        return Paths.get(URI.create("file:" + root));
+    }
+
+    /**
+     * 获取类加载器的classpath，JDK9以后的应用类加载器不再是URLClassLoader
+     * @param loader 类加载器
+     * @return URL集合
+     */
+    private static URL[] getURLs(ClassLoader loader) {
+        if (loader instanceof URLClassLoader) {
+            return ((URLClassLoader) loader).getURLs();
+        }
+        String[] paths = System.getProperty("java.class.path", "").split(File.pathSeparator);
+        List<URL> urls = new ArrayList<>();
+        for (String path : paths) {
+            if (path.isEmpty()) {
+                continue;
+            }
+            try {
+                urls.add(new File(path).toURI().toURL());
+            } catch (MalformedURLException ignored) {
             }
         }
-        return myClassName;
+        return urls.toArray(new URL[0]);
     }
 }